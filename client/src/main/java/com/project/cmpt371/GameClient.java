@@ -0,0 +1,1017 @@
+package com.project.cmpt371;
+
+import com.project.cmpt371.server.LoopbackConnection;
+import com.project.cmpt371.server.Teams;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.image.Image;
+import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.Stop;
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.stage.Stage;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameClient class represents the client-side application for the Team Box Conquest game.
+ * It handles the connection to the server, displays the game board, and manages user interactions.
+ * Players can claim squares on the grid by pressing and holding them, chat with other players,
+ * and view team information and scores.
+ */
+public class GameClient extends Application {
+    /** Default server IP address */
+    public static String serverIP = "localhost";
+    
+    /** Default server port */
+    public static int serverPort = 12345;
+    
+    /** Player's name, set from the launcher */
+    public static String playerName = "";
+    
+    /** Player's selected team color, set from the launcher */
+    public static String teamColor = "TEAM_A";
+    
+    /** In-memory connection to a server in this JVM for the next client started, set by the launcher for the host (null to use TCP) */
+    public static LoopbackConnection loopbackConnection;
+    
+    /** True to watch the match read-only from the server's spectator port instead of playing */
+    public static boolean spectating;
+    
+    /** Server port spectators connect to */
+    public static int spectatorPort = 12347;
+    
+    /** Lobby connection already upgraded to a game connection for the next client started, set by the launcher (null to connect) */
+    public static Socket lobbySocket;
+
+    /** Interval between client PING messages used for the latency display (milliseconds) */
+    private static final int PING_INTERVAL_MS = 2000;
+    
+    /** How long the server may send nothing before the connection is treated as lost (milliseconds) */
+    private static final int SERVER_TIMEOUT_MS = 10000;
+    
+    /** Number of reconnection attempts after the connection drops */
+    private static final int RECONNECT_ATTEMPTS = 5;
+    
+    /** Delay before each reconnection attempt (milliseconds) */
+    private static final int RECONNECT_DELAY_MS = 1000;
+    
+    /**
+     * How long after a drop RESUME is retried before joining again (milliseconds): the server's
+     * idle timeout, until which it may not have noticed the drop, plus its default 30 s resume grace
+     */
+    private static final int RESUME_WINDOW_MS = 40000;
+    
+    /** Socket for connection to the server, or null when connected in-process */
+    private Socket socket;
+    
+    /** In-memory connection to the server in this JVM, or null when connected over TCP */
+    private LoopbackConnection loopback;
+    
+    /** Input stream for receiving messages from the server */
+    private DataInputStream inputStream;
+    
+    /** Output stream for sending messages to the server */
+    private DataOutputStream outputStream;
+    
+    /** Map of grid coordinates to Rectangle UI elements */
+    private Map<String, Rectangle> gridSquares;
+    
+    /** Number of rows on the game grid, set by the server's BOARD_CONFIG */
+    private volatile int rows = 10;
+    
+    /** Number of columns on the game grid, set by the server's BOARD_CONFIG */
+    private volatile int cols = 10;
+    
+    /** Current ownership state of each square on the board */
+    private String[][] boardState;
+    
+    /** Tracks which teams are currently holding each square */
+    private List<String>[][] heldState;
+    
+    /** The team assigned to this client by the server */
+    private String assignedTeam;
+    
+    /** Text element for displaying game status messages */
+    private Text gameInfo;
+    
+    /** Container of the team score boxes */
+    private HBox scoreBox;
+    
+    /** Text element for each team's score, indexed by team ordinal */
+    private final List<Text> scoreTexts = new ArrayList<>();
+    
+    /** Container of the team player lists */
+    private VBox teamListBox;
+    
+    /** TextArea listing each team's players, indexed by team ordinal */
+    private final List<TextArea> teamLists = new ArrayList<>();
+    
+    /** TextArea for displaying chat messages */
+    private TextArea chatArea;
+    
+    /** TextField for entering chat messages */
+    private TextField chatInput;
+    
+    /** Flag to control the message listening thread */
+    private boolean isRunning = true;
+    
+    /** The main application window */
+    private Stage primaryStage;
+    
+    /** The game board scene, shown again after the win screen */
+    private Scene gameScene;
+    
+    /** The grid container for the game board */
+    private GridPane gridPane;
+    
+    /** Text element showing the measured round-trip and hold latency */
+    private Text latencyText;
+    
+    /** Most recent round-trip time to the server in milliseconds (-1 until measured) */
+    private volatile long lastRttMillis = -1;
+    
+    /** Most recent time from mouse press to the server's HOLD_START broadcast in milliseconds (-1 until measured) */
+    private volatile long lastHoldMillis = -1;
+    
+    /** Token issued with the team assignment, used to resume the session after a dropped connection */
+    private volatile String resumeToken;
+    
+    /** Highest sequence number of the server events received, sent when resuming */
+    private volatile long lastSeq;
+    
+    /** True while reconnecting, so no PING reaches a new connection before its handshake */
+    private volatile boolean reconnecting;
+    
+    /** Address of the server's hot standby, tried when the server cannot be reached, or null */
+    private volatile String standbyIP;
+    
+    /** Port of the server's hot standby */
+    private volatile int standbyPort;
+    
+    /** Time each square was pressed by this player, used to time the server's HOLD_START echo (0 if not pending) */
+    private long[][] holdPressedAt;
+
+    /**
+     * Initializes the client application, connects to the server, and sets up the UI.
+     *
+     * @param primaryStage The primary stage provided by the JavaFX framework
+     * @throws Exception If connection to the server fails
+     */
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        this.primaryStage = primaryStage;
+        
+        // Connect to the server, unless the launcher already connected us to the server in this JVM
+        primaryStage.getIcons().add(new Image(String.valueOf(getClass().getResource("/Images/icon.png"))));
+        loopback = loopbackConnection;
+        loopbackConnection = null;
+        if (loopback == null) {
+            // Reuse the launcher's lobby connection if there is one
+            int port = spectating ? spectatorPort : serverPort;
+            socket = lobbySocket != null ? lobbySocket : new Socket(serverIP, port);
+            lobbySocket = null;
+            socket.setSoTimeout(SERVER_TIMEOUT_MS);
+            System.out.println("Client " + playerName + " connected to " + serverIP + ":" + port);
+            
+            // Set up data streams
+            inputStream = new DataInputStream(socket.getInputStream());
+            outputStream = new DataOutputStream(socket.getOutputStream());
+        } else {
+            System.out.println("Client " + playerName + " connected to the in-process server");
+        }
+        
+        // Configure window size
+        primaryStage.setWidth(1100);
+        primaryStage.setHeight(1040);
+        primaryStage.setFullScreen(true);
+
+        // Start with the default board until the server sends its BOARD_CONFIG
+        allocateBoard(rows, cols);
+
+        // Set up the UI components
+        setupUI();
+
+        // Spectators only receive: no handshake, no chat and no latency measurement
+        if (spectating) {
+            gameInfo.setText("Spectating");
+            chatInput.setDisable(true);
+            new Thread(this::listenForMessages).start();
+            return;
+        }
+
+        // Send player information to the server
+        sendToServer("PLAYER_INFO " + playerName + " " + teamColor);
+
+        // Start a separate thread for listening to server messages
+        new Thread(this::listenForMessages).start();
+
+        // Start a background thread that periodically measures round-trip time
+        Thread pingThread = new Thread(this::pingServer);
+        pingThread.setDaemon(true);
+        pingThread.start();
+    }
+
+    /**
+     * Sends a message to the server.
+     * Synchronized because the UI thread and the ping thread both write to the same stream.
+     *
+     * @param message The message to send
+     * @throws IOException If sending fails
+     */
+    private synchronized void sendToServer(String message) throws IOException {
+        if (loopback != null) {
+            loopback.sendToServer(message);
+            return;
+        }
+        outputStream.writeUTF(message);
+        outputStream.flush();
+    }
+
+    /**
+     * Waits for the next message from the server.
+     *
+     * @return The message
+     * @throws IOException If the connection is lost
+     */
+    private String readFromServer() throws IOException {
+        return loopback != null ? loopback.takeFromServer() : inputStream.readUTF();
+    }
+
+    /**
+     * Closes the connection to the server.
+     */
+    private void closeConnection() {
+        if (loopback != null) {
+            loopback.close();
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Periodically sends a PING carrying the current time to the server.
+     * The server echoes it back as PONG and the round-trip time is shown in the latency display.
+     * This method runs in a separate thread.
+     */
+    private void pingServer() {
+        try {
+            while (isRunning) {
+                try {
+                    if (!reconnecting) {
+                        sendToServer("PING " + System.nanoTime());
+                    }
+                } catch (IOException e) {
+                    // Connection lost - the listener thread reconnects
+                }
+                Thread.sleep(PING_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tells the server this player is leaving on purpose and closes the connection,
+     * so the server releases the team slot instead of keeping it for a resume.
+     */
+    private void leaveServer() {
+        isRunning = false;
+        try {
+            sendToServer("LEAVE");
+        } catch (IOException e) {
+            // Already disconnected
+        }
+        closeConnection();
+    }
+
+    /**
+     * Reconnects after the connection dropped. Resumes the session with the resume token if the
+     * server still holds it, which only replays the missed events; otherwise joins again with
+     * PLAYER_INFO and receives the full state. Pings are held back until the handshake is sent.
+     *
+     * @return true if reconnected, false if every attempt failed (or the server ran in this JVM)
+     */
+    private boolean reconnect() {
+        if (loopback != null) {
+            // The in-process connection only ends when the server itself is gone
+            return false;
+        }
+        reconnecting = true;
+        try {
+            return reconnectUntilJoined();
+        } finally {
+            reconnecting = false;
+        }
+    }
+
+    /**
+     * Connects again and sends RESUME, or PLAYER_INFO once the session can no longer be resumed.
+     *
+     * @return true if reconnected, false if every attempt failed
+     */
+    private boolean reconnectUntilJoined() {
+        long resumeDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESUME_WINDOW_MS);
+        for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS && isRunning; attempt++) {
+            int currentAttempt = attempt;
+            Platform.runLater(() -> gameInfo.setText("Connection lost, reconnecting (" + currentAttempt + "/" +
+                    RECONNECT_ATTEMPTS + ")..."));
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+                Socket newSocket = new Socket(serverIP, spectating ? spectatorPort : serverPort);
+                newSocket.setSoTimeout(SERVER_TIMEOUT_MS);
+                DataInputStream newInput = new DataInputStream(newSocket.getInputStream());
+                DataOutputStream newOutput = new DataOutputStream(newSocket.getOutputStream());
+                synchronized (this) {
+                    socket = newSocket;
+                    inputStream = newInput;
+                    outputStream = newOutput;
+                }
+                if (spectating) {
+                    // The spectator stream starts with a fresh keyframe
+                    Platform.runLater(() -> gameInfo.setText("Spectating"));
+                    return true;
+                }
+                if (resumeToken != null) {
+                    sendToServer("RESUME " + resumeToken + " " + lastSeq);
+                    String reply = inputStream.readUTF();
+                    if (reply.startsWith("RESUMED")) {
+                        System.out.println("Client " + playerName + " resumed session after seq " + lastSeq);
+                        String[] parts = reply.split(" ");
+                        Platform.runLater(() -> gameInfo.setText("Playing as " + parts[2] + " on " +
+                                Teams.displayName(Teams.ordinal(parts[1])) + " Team"));
+                        return true;
+                    }
+                    newSocket.close();
+                    attempt--;
+                    if (System.nanoTime() - resumeDeadline >= 0) {
+                        // The session has expired on the server - join again on a new connection
+                        resumeToken = null;
+                    }
+                    // Otherwise the server has not suspended the old session yet; a PLAYER_INFO
+                    // would be answered NAME_IN_USE, so keep resuming until the grace period is over
+                    continue;
+                }
+                lastSeq = 0;
+                sendToServer("PLAYER_INFO " + playerName + " " + teamColor);
+                return true;
+            } catch (IOException e) {
+                System.out.println("Client " + playerName + " reconnect attempt " + attempt + " failed: " +
+                        e.getMessage());
+                if (standbyIP != null && !spectating) {
+                    // Try the other server next; the standby takes over once the primary's heartbeat stops
+                    String failedIP = serverIP;
+                    int failedPort = serverPort;
+                    serverIP = standbyIP;
+                    serverPort = standbyPort;
+                    standbyIP = failedIP;
+                    standbyPort = failedPort;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Refreshes the latency display with the most recent measurements.
+     * Must be called on the JavaFX application thread.
+     */
+    private void updateLatencyText() {
+        String rtt = lastRttMillis < 0 ? "--" : lastRttMillis + " ms";
+        String hold = lastHoldMillis < 0 ? "--" : lastHoldMillis + " ms";
+        latencyText.setText("Ping: " + rtt + " | Hold: " + hold);
+    }
+
+    /**
+     * Sets up the user interface, including the game grid, team lists, and chat components.
+     */
+    private void setupUI() {
+        // Initialize grid components
+        gridSquares = new HashMap<>();
+        gridPane = new GridPane();
+        gridPane.getStyleClass().add("grid-pane");
+        buildGrid();
+
+        // Set up score displays, one per team once the server reports them
+        scoreBox = new HBox(20);
+        scoreBox.setAlignment(Pos.CENTER);
+
+        // Set up latency display
+        latencyText = new Text("Ping: -- | Hold: --");
+        latencyText.setId("latencyText");
+
+        // Create top section with scores
+        HBox topBox = new HBox(20, scoreBox, latencyText);
+        topBox.setAlignment(Pos.CENTER);
+        topBox.setPadding(new Insets(15));
+
+        // Create game info text
+        gameInfo = new Text("Connecting to server, please wait...");
+        gameInfo.setId("gameInfo");
+
+        // Wrap grid in a container for styling
+        StackPane gridContainer = new StackPane(gridPane);
+        gridContainer.getStyleClass().add("grid-container");
+        gridContainer.setMaxWidth(600);
+        gridContainer.setMaxHeight(600);
+
+        // Create center section with game info and grid
+        VBox centerBox = new VBox(15, gameInfo, gridContainer);
+        centerBox.setAlignment(Pos.CENTER);
+
+        // Set up team lists, scrolling when there are many teams
+        teamListBox = new VBox(15);
+        ScrollPane teamScroll = new ScrollPane(teamListBox);
+        teamScroll.setFitToWidth(true);
+        showTeams(2);
+
+        // Create leave game button
+        Button leaveButton = new Button("Leave Game");
+        leaveButton.setOnAction(e -> {
+            leaveServer();
+            primaryStage.close();
+        });
+
+        // Create right sidebar with team info and leave button
+        VBox rightBox = new VBox(15, teamScroll, leaveButton);
+        rightBox.setAlignment(Pos.TOP_CENTER);
+        rightBox.setPadding(new Insets(15));
+        rightBox.setPrefWidth(200);
+        rightBox.setMaxWidth(200);
+
+        // Set up chat components
+        Label chatLabel = new Label("Chat");
+        chatLabel.getStyleClass().add("chat-header");
+
+        chatArea = new TextArea();
+        chatArea.setId("chatArea");
+        chatArea.setEditable(false);
+
+        chatInput = new TextField();
+        chatInput.setPromptText("Type a message...");
+        chatInput.setOnAction(e -> {
+            String message = chatInput.getText().trim();
+            if (!message.isEmpty()) {
+                try {
+                    sendToServer("CHAT " + message);
+                    chatInput.clear();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+
+        // Create chat section
+        VBox chatBox = new VBox(10, chatLabel, chatArea, chatInput);
+        chatBox.setPadding(new Insets(15));
+        chatBox.setMaxHeight(200);
+
+        // Assemble main layout
+        BorderPane root = new BorderPane();
+        root.setTop(topBox);
+        root.setCenter(centerBox);
+        root.setRight(rightBox);
+        root.setBottom(chatBox);
+
+        // Create scene and add styling
+        gameScene = new Scene(root, 800, 600);
+        gameScene.getStylesheets().add(getClass().getResource("/css/client-style.css").toExternalForm());
+        primaryStage.setTitle("Team Box Conquest - " + playerName);
+        primaryStage.setScene(gameScene);
+        
+        // Handle window close event
+        primaryStage.setOnCloseRequest(event -> leaveServer());
+        
+        // Show the window
+        primaryStage.show();
+    }
+
+    /**
+     * Allocates the client's copy of the board for the given dimensions, with every square unclaimed.
+     *
+     * @param rows Number of rows
+     * @param cols Number of columns
+     */
+    private void allocateBoard(int rows, int cols) {
+        boardState = new String[rows][cols];
+        heldState = new ArrayList[rows][cols];
+        holdPressedAt = new long[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                boardState[row][col] = "UNCLAIMED";
+                heldState[row][col] = new ArrayList<>();
+            }
+        }
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Creates the grid squares for the current board dimensions, replacing any existing ones.
+     * Squares shrink on large boards so the grid keeps about the same size on screen.
+     */
+    private void buildGrid() {
+        gridSquares.clear();
+        gridPane.getChildren().clear();
+        double size = Math.min(50, 500.0 / Math.max(rows, cols));
+        gridPane.setVgap(size < 20 ? 1 : 5);
+        gridPane.setHgap(size < 20 ? 1 : 5);
+
+        // Create grid squares
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                String key = row + "," + col;
+
+                // Create a square for this grid position
+                Rectangle square = new Rectangle(size, size, Color.LIGHTGRAY);
+                square.setStroke(Color.BLACK);
+                square.getStyleClass().add("grid-square");
+
+                // Store square reference and add to grid
+                gridSquares.put(key, square);
+                gridPane.add(square, col, row);
+            }
+        }
+        if (assignedTeam != null) {
+            attachSquareHandlers();
+        }
+    }
+
+    /**
+     * Sets up interaction handlers for grid squares based on the player's assigned team.
+     * This is called after receiving team assignment from the server.
+     */
+    private void setupInteractions() {
+        attachSquareHandlers();
+
+        // Apply team-specific styling to the grid
+        gridPane.getStyleClass().add(teamStyle(assignedTeam, "grid"));
+
+        // Update window title with player name and team
+        primaryStage.setTitle("Team Box Conquest - " + playerName + " (" +
+                Teams.displayName(Teams.ordinal(assignedTeam)) + " Team)");
+    }
+
+    /**
+     * Attaches the press, release and hover handlers to every grid square.
+     */
+    private void attachSquareHandlers() {
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                final int finalRow = row;
+                final int finalCol = col;
+                String key = finalRow + "," + finalCol;
+                Rectangle square = gridSquares.get(key);
+
+                // Mouse press handler - start holding a square
+                square.setOnMousePressed(event -> {
+                    // Allow interaction with any unclaimed block
+                    if (event.isPrimaryButtonDown() && "UNCLAIMED".equals(boardState[finalRow][finalCol])) {
+                        try {
+                            holdPressedAt[finalRow][finalCol] = System.nanoTime();
+                            sendToServer("HOLD_START " + finalRow + " " + finalCol);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+
+                // Mouse release handler - stop holding a square
+                square.setOnMouseReleased(event -> {
+                    try {
+                        holdPressedAt[finalRow][finalCol] = 0;
+                        sendToServer("HOLD_END " + finalRow + " " + finalCol);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+
+                // Mouse enter handler - show team-specific cursor on hover
+                square.setOnMouseEntered(event -> {
+                    if ("UNCLAIMED".equals(boardState[finalRow][finalCol])) {
+                        square.getStyleClass().add(teamStyle(assignedTeam, "cursor"));
+                    }
+                });
+
+                // Mouse exit handler - remove cursor styling
+                square.setOnMouseExited(event -> {
+                    square.getStyleClass().remove(teamStyle(assignedTeam, "cursor"));
+                });
+            }
+        }
+    }
+
+    /**
+     * Listens for messages from the server in a loop and processes them accordingly.
+     * This method runs in a separate thread.
+     */
+    private void listenForMessages() {
+        while (isRunning) {
+            try {
+                while (isRunning) {
+                    handleServerMessage(readFromServer());
+                }
+            } catch (IOException e) {
+                if (!isRunning) {
+                    return;
+                }
+                System.out.println("Client " + playerName + " disconnected: " + e.getMessage());
+                if (!reconnect()) {
+                    isRunning = false;
+                    Platform.runLater(() -> gameInfo.setText("Disconnected from server."));
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes one message from the server.
+     * Numbered events ("SEQ n message") are unwrapped and the highest number seen is kept for resuming.
+     * Chat and roster messages travel in a lower-priority lane and are not numbered.
+     *
+     * @param message The message to process
+     * @throws IOException If a reply to the server fails
+     */
+    private void handleServerMessage(String message) throws IOException {
+        if (message.startsWith("SEQ ")) {
+            int space = message.indexOf(' ', 4);
+            lastSeq = Math.max(lastSeq, Long.parseLong(message.substring(4, space)));
+            message = message.substring(space + 1);
+        }
+        if (!message.startsWith("PING") && !message.startsWith("PONG")) {
+            System.out.println("Client " + playerName + " received: " + message);
+        }
+
+        // Process message based on its type
+        if (message.startsWith("TEAM_ASSIGNMENT")) {
+            // Handle team assignment message
+            String[] parts = message.split(" ");
+            assignedTeam = parts[1];
+            String assignedName = parts[2];
+            resumeToken = parts.length > 3 ? parts[3] : null;
+            Platform.runLater(() -> {
+                gameInfo.setText("Playing as " + assignedName + " on " +
+                        Teams.displayName(Teams.ordinal(assignedTeam)) + " Team");
+                setupInteractions();
+            });
+        } else if (message.startsWith("BOARD_CONFIG")) {
+            // Handle board dimensions; resize the grid if they differ from the current one
+            String[] parts = message.split(" ");
+            int newRows = Integer.parseInt(parts[1]);
+            int newCols = Integer.parseInt(parts[2]);
+            if (newRows != rows || newCols != cols) {
+                allocateBoard(newRows, newCols);
+                Platform.runLater(this::buildGrid);
+            }
+        } else if (message.startsWith("GAME_STATE")) {
+            // Handle game state update message
+            String[] state = message.split(" ");
+            for (int i = 1, row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++, i++) {
+                    boardState[row][col] = state[i];
+                    final int finalRow = row;
+                    final int finalCol = col;
+                    Platform.runLater(() -> updateBoard(finalRow, finalCol));
+                }
+            }
+        } else if (message.startsWith("INITIAL_HELD_STATE")) {
+            // Handle initial held state message
+            String[] state = message.split(" ");
+            for (int i = 1, row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++, i++) {
+                    String holding = state[i];
+                    heldState[row][col].clear();
+                    if (!"NONE".equals(holding)) {
+                        heldState[row][col].addAll(Arrays.asList(holding.split(",")));
+                    }
+                    final int finalRow = row;
+                    final int finalCol = col;
+                    Platform.runLater(() -> updateBoard(finalRow, finalCol));
+                }
+            }
+        } else if (message.startsWith("HOLD_START")) {
+            // Handle hold start message
+            String[] parts = message.split(" ");
+            int row = Integer.parseInt(parts[1]);
+            int col = Integer.parseInt(parts[2]);
+            String team = parts[3];
+            if (!heldState[row][col].contains(team)) {
+                heldState[row][col].add(team);
+            }
+            // Time our own press until the server's broadcast arrives
+            long pressedAt = holdPressedAt[row][col];
+            if (pressedAt != 0 && team.equals(assignedTeam)) {
+                holdPressedAt[row][col] = 0;
+                lastHoldMillis = (System.nanoTime() - pressedAt) / 1_000_000;
+                Platform.runLater(this::updateLatencyText);
+            }
+            Platform.runLater(() -> updateBoard(row, col));
+        } else if (message.startsWith("HOLD_END")) {
+            // Handle hold end message
+            String[] parts = message.split(" ");
+            int row = Integer.parseInt(parts[1]);
+            int col = Integer.parseInt(parts[2]);
+            String team = parts[3];
+            heldState[row][col].remove(team);
+            Platform.runLater(() -> updateBoard(row, col));
+        } else if (message.startsWith("PING")) {
+            // Echo the server's timestamp so it can measure our round-trip time
+            sendToServer("PONG " + message.substring(5));
+        } else if (message.startsWith("PONG")) {
+            // Handle reply to our own PING
+            long sentAt = Long.parseLong(message.substring(5));
+            lastRttMillis = (System.nanoTime() - sentAt) / 1_000_000;
+            Platform.runLater(this::updateLatencyText);
+        } else if (message.startsWith("GAME_OVER")) {
+            // Handle game over message
+            String winner = message.split(" ")[1];
+            Platform.runLater(() -> showWinScreen(winner));
+        } else if (message.equals("NEW_ROUND")) {
+            // The server cleared the board for the next game; the connection and team stay
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    boardState[row][col] = "UNCLAIMED";
+                    heldState[row][col].clear();
+                    holdPressedAt[row][col] = 0;
+                }
+            }
+            Platform.runLater(() -> {
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < cols; col++) {
+                        updateBoard(row, col);
+                    }
+                }
+                for (Text scoreText : scoreTexts) {
+                    scoreText.setText("0");
+                }
+            });
+        } else if (message.equals("TEAM_FULL")) {
+            // Handle team full message
+            isRunning = false;
+            Platform.runLater(() -> {
+                gameInfo.setText("Selected team is full! Please restart and choose another team.");
+                closeConnection();
+            });
+        } else if (message.equals("NAME_IN_USE")) {
+            // The name is reserved for bots, or a dropped player with it may still resume its session
+            isRunning = false;
+            Platform.runLater(() -> {
+                gameInfo.setText("That name is taken. Please restart with another name.");
+                closeConnection();
+            });
+        } else if (message.startsWith("TEAM_SCORES")) {
+            // Handle team scores message
+            String[] parts = message.split(" ");
+            Platform.runLater(() -> {
+                showTeams(parts.length - 1);
+                for (int team = 0; team < parts.length - 1; team++) {
+                    scoreTexts.get(team).setText(parts[1 + team]);
+                }
+            });
+        } else if (message.startsWith("STANDBY")) {
+            // Remember where to reconnect if this server goes away
+            String[] parts = message.split(" ");
+            standbyPort = Integer.parseInt(parts[2]);
+            standbyIP = parts[1];
+        } else if (message.startsWith("TEAM_LISTS")) {
+            // Handle team lists message: one field per team, empty for an empty team
+            String[] parts = message.split(" ", -1);
+            Platform.runLater(() -> {
+                showTeams(parts.length - 1);
+                for (int team = 0; team < parts.length - 1; team++) {
+                    teamLists.get(team).setText(formatTeamList(parts[1 + team]));
+                }
+            });
+        } else if (message.startsWith("CHAT")) {
+            // Handle chat message
+            String chatMsg = message.substring(5);
+            Platform.runLater(() -> chatArea.appendText(formatChatMessage(chatMsg) + "\n"));
+        }
+    }
+
+    /**
+     * Formats a comma-separated list of team members for display.
+     * Highlights the current player with "(You)" suffix.
+     *
+     * @param teamList Comma-separated string of player names
+     * @return Formatted string for display in the team list
+     */
+    private String formatTeamList(String teamList) {
+        if (teamList.isEmpty()) {
+            return "";
+        }
+        String[] players = teamList.split(",");
+        StringBuilder sb = new StringBuilder();
+        for (String player : players) {
+            if (player.equals(playerName)) {
+                sb.append(player).append(" (You)\n");
+            } else {
+                sb.append(player).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats a chat message, adding "(You)" suffix if the message is from the current player.
+     *
+     * @param message The chat message to format
+     * @return Formatted chat message
+     */
+    private String formatChatMessage(String message) {
+        if (message.startsWith(playerName)) {
+            return message + " (You)";
+        }
+        return message;
+    }
+
+    /**
+     * Displays the game over screen with appropriate styling based on the winner.
+     *
+     * @param winner The winning team, or "TIE"
+     */
+    private void showWinScreen(String winner) {
+        // Set background color based on winner
+        Color backgroundColor = winner.equals("TIE") ? Color.rgb(128, 128, 128, 0.9) :
+                colorOfTeam(Teams.ordinal(winner)).interpolate(Color.WHITE, 0.33).deriveColor(0, 1, 1, 0.9);
+        String headingText = winner.equals("TIE") ? "Game Over: Tie!" :
+                Teams.displayName(Teams.ordinal(winner)) + " Team Won";
+
+        // Create win screen layout
+        VBox winBox = new VBox(25);
+        winBox.setAlignment(Pos.CENTER);
+        winBox.getStyleClass().add("win-screen");
+        winBox.setBackground(new Background(new BackgroundFill(backgroundColor, null, null)));
+
+        // Create heading text
+        Text heading = new Text(headingText);
+        heading.setFont(Font.font("Segoe UI", 40));
+        heading.setFill(Color.WHITE);
+
+        // Create leave button
+        Button leaveButton = new Button("Leave");
+        leaveButton.setOnAction(e -> {
+            leaveServer();
+            primaryStage.close();
+        });
+
+        // Create play again button; the server has already started the next round on this connection
+        Button playAgainButton = new Button("Play Again");
+        playAgainButton.setOnAction(e -> primaryStage.setScene(gameScene));
+
+        // Create button container
+        HBox buttonBox = new HBox(20, leaveButton, playAgainButton);
+        buttonBox.setAlignment(Pos.CENTER);
+
+        // Assemble win screen
+        winBox.getChildren().addAll(heading, buttonBox);
+
+        // Create and set new scene
+        Scene winScene = new Scene(winBox, 800, 600);
+        winScene.getStylesheets().add(getClass().getResource("/css/client-style.css").toExternalForm());
+        primaryStage.setScene(winScene);
+    }
+
+    /**
+     * Updates the visual appearance of a grid square based on its current state.
+     *
+     * @param row The row of the square to update
+     * @param col The column of the square to update
+     */
+    private void updateBoard(int row, int col) {
+        Rectangle square = gridSquares.get(row + "," + col);
+        square.getStyleClass().removeIf(style -> style.endsWith("-held") || style.endsWith("-claimed"));
+
+        int owner = Teams.ordinal(boardState[row][col]);
+        if (owner >= 0) {
+            // Square is claimed by a team
+            square.getStyleClass().add(teamStyle(boardState[row][col], "claimed"));
+            square.setFill(colorOfTeam(owner));
+        } else {
+            // Square is unclaimed, check if being held
+            List<String> holdingTeams = heldState[row][col];
+            if (holdingTeams.size() > 1) {
+                // Several teams holding - create a gradient of their colours (tug-of-war)
+                square.getStyleClass().add("both-held");
+                Stop[] stops = new Stop[holdingTeams.size()];
+                for (int i = 0; i < stops.length; i++) {
+                    Color color = colorOfTeam(Teams.ordinal(holdingTeams.get(i)));
+                    stops[i] = new Stop((double) i / (stops.length - 1), color.deriveColor(0, 1, 1, 0.5));
+                }
+                LinearGradient gradient = new LinearGradient(0, 0, 1, 1, true, CycleMethod.NO_CYCLE, stops);
+                square.setFill(gradient);
+            } else if (holdingTeams.size() == 1) {
+                // Only one team holding
+                square.getStyleClass().add(teamStyle(holdingTeams.get(0), "held"));
+                square.setFill(colorOfTeam(Teams.ordinal(holdingTeams.get(0))).deriveColor(0, 1, 1, 0.5));
+            } else {
+                // No one holding
+                square.setFill(Color.LIGHTGRAY);
+                square.setStroke(Color.BLACK);
+            }
+        }
+    }
+
+    /**
+     * Makes the score boxes and player lists match the number of teams in the match.
+     * Must be called on the JavaFX thread.
+     *
+     * @param count The number of teams
+     */
+    private void showTeams(int count) {
+        if (scoreTexts.size() == count) {
+            return;
+        }
+        scoreTexts.clear();
+        teamLists.clear();
+        scoreBox.getChildren().clear();
+        teamListBox.getChildren().clear();
+        for (int team = 0; team < count; team++) {
+            Text scoreText = new Text("0");
+            HBox teamScoreBox = new HBox(scoreText);
+            teamScoreBox.setAlignment(Pos.CENTER);
+            // The first two teams keep their stylesheet boxes; later teams are coloured inline
+            if (team < 2) {
+                teamScoreBox.setId(team == 0 ? "redScoreBox" : "blueScoreBox");
+            } else {
+                teamScoreBox.getStyleClass().add("team-score-box");
+                teamScoreBox.setStyle("-fx-background-color: " + toWebColor(colorOfTeam(team)) + ";");
+            }
+            scoreTexts.add(scoreText);
+            scoreBox.getChildren().add(teamScoreBox);
+
+            Label header = new Label(Teams.displayName(team) + " Team");
+            header.getStyleClass().add("team-header");
+            TextArea list = new TextArea();
+            list.setEditable(false);
+            list.getStyleClass().add(teamStyle(Teams.name(team), "list"));
+            teamLists.add(list);
+            teamListBox.getChildren().add(new VBox(5, header, list));
+        }
+    }
+
+    /**
+     * Gets the colour of a team: red and blue for the first two teams, then hues spread around
+     * the colour wheel so neighbouring teams stay distinguishable.
+     *
+     * @param team The team ordinal
+     * @return The team colour
+     */
+    private static Color colorOfTeam(int team) {
+        if (team == 0) {
+            return Color.rgb(255, 0, 0);
+        } else if (team == 1) {
+            return Color.rgb(0, 0, 255);
+        }
+        return Color.hsb((120 + (team - 2) * 137.5) % 360, 0.85, 0.9);
+    }
+
+    /**
+     * Gets the stylesheet class for a team, e.g. "team-a-claimed".
+     *
+     * @param team The team identifier
+     * @param suffix The kind of style
+     * @return The style class name
+     */
+    private static String teamStyle(String team, String suffix) {
+        return team.toLowerCase().replace('_', '-') + "-" + suffix;
+    }
+
+    /**
+     * Formats a colour for use in an inline style.
+     *
+     * @param color The colour
+     * @return The colour as #rrggbb
+     */
+    private static String toWebColor(Color color) {
+        return String.format("#%02x%02x%02x", Math.round(color.getRed() * 255),
+                Math.round(color.getGreen() * 255), Math.round(color.getBlue() * 255));
+    }
+
+    /**
+     * Main method to launch the application.
+     *
+     * @param args Command line arguments (not used)
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
\ No newline at end of file
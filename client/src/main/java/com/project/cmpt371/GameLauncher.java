@@ -1,5 +1,10 @@
 package com.project.cmpt371;
 
+import com.project.cmpt371.server.GameServer;
+import com.project.cmpt371.server.LanDiscovery;
+import com.project.cmpt371.server.LobbyConnection;
+import com.project.cmpt371.server.LoopbackConnection;
+import com.project.cmpt371.server.Teams;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -13,8 +18,6 @@ import javafx.scene.input.ClipboardContent;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
@@ -31,8 +34,8 @@ import java.net.UnknownHostException;
  * - Game client initialization
  */
 public class GameLauncher extends Application {
-    /** Maximum number of players allowed per team */
-    private static final int MAX_PLAYERS_PER_TEAM = 3;
+    /** Listener for LAN server beacons while the join screen is shown, or null */
+    private LanDiscovery lanDiscovery;
 
     /**
      * Initialize and display the main launcher interface.
@@ -194,14 +197,11 @@ public class GameLauncher extends Application {
      * @param primaryStage The primary stage to update
      */
     private void showHostPlayerSetup(Stage primaryStage) {
-        // Get current team status from local server
-        String[] teamStatus = getTeamStatus("localhost", 12345);
-        if (teamStatus == null) {
-            showAlert("Error", "Failed to get team status from server.");
+        // Watch the local server's team status until the host joins
+        LobbyConnection lobby = openLobby("localhost", 12345);
+        if (lobby == null) {
             return;
         }
-        int teamACount = Integer.parseInt(teamStatus[0]);
-        int teamBCount = Integer.parseInt(teamStatus[1]);
 
         // Create player name input
         Label nameLabel = new Label("Enter Your Name:");
@@ -210,11 +210,13 @@ public class GameLauncher extends Application {
         // Create team selection dropdown
         Label teamLabel = new Label("Choose Team:");
         ComboBox<String> teamChoice = new ComboBox<>();
-        teamChoice.getItems().addAll("Red (Team A)", "Blue (Team B)");
+        for (int team = 0; team < lobby.getTeamCount(); team++) {
+            teamChoice.getItems().add(Teams.displayName(team) + " (" + Teams.name(team) + ")");
+        }
         
-        // Display available spots for each team
-        Label teamStatusLabel = new Label("Red Team: " + (MAX_PLAYERS_PER_TEAM - teamACount) + 
-                " spots | Blue Team: " + (MAX_PLAYERS_PER_TEAM - teamBCount) + " spots");
+        // Display available spots for each team, updated as players join and leave
+        Label teamStatusLabel = new Label(formatTeamStatus(lobby));
+        lobby.setOnChange(() -> Platform.runLater(() -> teamStatusLabel.setText(formatTeamStatus(lobby))));
 
         // Create join button
         Button joinButton = new Button("Join");
@@ -222,27 +224,32 @@ public class GameLauncher extends Application {
         joinButton.setOnAction(e -> {
             // Validate inputs
             String name = nameField.getText().trim();
-            String team = teamChoice.getValue();
-            if (name.isEmpty() || team == null) {
+            int team = teamChoice.getSelectionModel().getSelectedIndex();
+            if (name.isEmpty() || team < 0) {
                 showAlert("Error", "Please enter a name and select a team.");
                 return;
             }
             
             // Verify team capacity
-            if (team.contains("Red") && teamACount >= MAX_PLAYERS_PER_TEAM) {
-                showAlert("Error", "Red Team is full!");
+            if (lobby.getPlayerCount(team) >= lobby.getTeamCapacity()) {
+                showAlert("Error", Teams.displayName(team) + " Team is full!");
                 return;
             }
-            if (team.contains("Blue") && teamBCount >= MAX_PLAYERS_PER_TEAM) {
-                showAlert("Error", "Blue Team is full!");
+
+            // Connect to the server in this JVM through memory rather than a localhost socket
+            LoopbackConnection loopback = GameServer.connectLoopback();
+            if (loopback == null) {
+                showAlert("Error", "Server is full.");
                 return;
             }
+            lobby.close();
 
             // Set client properties
             GameClient.serverIP = "localhost";
             GameClient.serverPort = 12345;
             GameClient.playerName = name;
-            GameClient.teamColor = team.contains("Red") ? "TEAM_A" : "TEAM_B";
+            GameClient.teamColor = Teams.name(team);
+            GameClient.loopbackConnection = loopback;
 
             // Launch the game client
             launchClient(primaryStage);
@@ -260,11 +267,18 @@ public class GameLauncher extends Application {
 
     /**
      * Displays the join screen for connecting to an existing game.
-     * Allows entry of IP address and port.
+     * Lists the servers found on the local network and allows entry of IP address and port.
      *
      * @param primaryStage The primary stage to update
      */
     private void showJoinScreen(Stage primaryStage) {
+        // Create list of servers discovered on the LAN
+        Label serversPrompt = new Label("Games on your network:");
+        ListView<LanDiscovery.DiscoveredServer> serverList = new ListView<>();
+        serverList.setPrefHeight(100);
+        serverList.setPlaceholder(new Label("Searching..."));
+        startLanDiscovery(serverList);
+
         // Create IP input field
         Label ipPrompt = new Label("Enter Host IP:");
         TextField ipField = new TextField();
@@ -273,6 +287,14 @@ public class GameLauncher extends Application {
         Label portPrompt = new Label("Enter Port:");
         TextField portField = new TextField("12345");
 
+        // Picking a discovered server fills in its address
+        serverList.getSelectionModel().selectedItemProperty().addListener((observable, oldServer, server) -> {
+            if (server != null) {
+                ipField.setText(server.getAddress());
+                portField.setText(String.valueOf(server.getPort()));
+            }
+        });
+
         // Create join button
         Button joinButton = new Button("Join");
         joinButton.setId("joinGameButton");
@@ -291,52 +313,110 @@ public class GameLauncher extends Application {
                 return;
             }
 
-            // Test connection and check server capacity
-            try (Socket tempSocket = new Socket(ip, port)) {
-                DataOutputStream tempOut = new DataOutputStream(tempSocket.getOutputStream());
-                DataInputStream tempIn = new DataInputStream(tempSocket.getInputStream());
+            // A discovered server's beacon already tells whether it is full
+            LanDiscovery.DiscoveredServer server = serverList.getSelectionModel().getSelectedItem();
+            if (server != null && server.getAddress().equals(ip) && server.getPort() == port &&
+                    server.isFull()) {
+                showAlert("Error", "Server is full.");
+                return;
+            }
+
+            // Subscribe to the server's lobby, which also checks its capacity
+            LobbyConnection lobby = openLobby(ip, port);
+            if (lobby == null) {
+                return;
+            }
 
-                tempOut.writeUTF("CHECK_CAPACITY");
-                String response = tempIn.readUTF();
-                if (response.equals("SERVER_FULL")) {
-                    showAlert("Error", "Server is full (6 players max).");
+            // Set connection parameters and proceed to player setup
+            GameClient.serverIP = ip;
+            GameClient.serverPort = port;
+            stopLanDiscovery();
+            showJoinPlayerSetup(primaryStage, lobby);
+        });
+
+        // Create watch button to spectate without taking a player slot
+        Button watchButton = new Button("Watch");
+        watchButton.setId("watchGameButton");
+        watchButton.setOnAction(e -> {
+            String ip = ipField.getText().trim();
+            if (ip.isEmpty()) {
+                showAlert("Error", "Please enter an IP address.");
+                return;
+            }
+
+            // A discovered server announces its spectator port; otherwise assume the default
+            LanDiscovery.DiscoveredServer server = serverList.getSelectionModel().getSelectedItem();
+            if (server != null && server.getAddress().equals(ip)) {
+                if (server.getSpectatorPort() == 0) {
+                    showAlert("Error", "This server does not allow spectators.");
                     return;
                 }
-
-                // Set connection parameters and proceed to player setup
-                GameClient.serverIP = ip;
-                GameClient.serverPort = port;
-                showJoinPlayerSetup(primaryStage);
-            } catch (IOException ex) {
-                showAlert("Error", "Failed to connect to server: " + ex.getMessage());
+                GameClient.spectatorPort = server.getSpectatorPort();
             }
+            GameClient.serverIP = ip;
+            GameClient.playerName = "Spectator";
+            GameClient.spectating = true;
+            stopLanDiscovery();
+            launchClient(primaryStage);
         });
+        HBox buttonBox = new HBox(15, joinButton, watchButton);
+        buttonBox.setAlignment(Pos.CENTER);
 
         // Layout for join screen
-        VBox centerBox = new VBox(15, ipPrompt, ipField, portPrompt, portField, joinButton);
+        VBox centerBox = new VBox(15, serversPrompt, serverList, ipPrompt, ipField, portPrompt, portField, buttonBox);
         centerBox.setAlignment(Pos.CENTER);
+        primaryStage.setOnHidden(e -> stopLanDiscovery());
 
         // Update scene
-        Scene joinScene = new Scene(centerBox, 400, 300);
+        Scene joinScene = new Scene(centerBox, 400, 480);
         joinScene.getStylesheets().add(getClass().getResource("/css/launcher-style.css").toExternalForm());
         primaryStage.setScene(joinScene);
     }
 
+    /**
+     * Starts listening for LAN server beacons and keeps the list up to date.
+     *
+     * @param serverList The list to show the discovered servers in
+     */
+    private void startLanDiscovery(ListView<LanDiscovery.DiscoveredServer> serverList) {
+        stopLanDiscovery();
+        try {
+            lanDiscovery = new LanDiscovery(servers -> Platform.runLater(() -> {
+                // Keep the selection on the same server across updates
+                LanDiscovery.DiscoveredServer selected = serverList.getSelectionModel().getSelectedItem();
+                serverList.getItems().setAll(servers);
+                if (selected != null) {
+                    for (LanDiscovery.DiscoveredServer server : servers) {
+                        if (server.getAddress().equals(selected.getAddress()) && server.getPort() == selected.getPort()) {
+                            serverList.getSelectionModel().select(server);
+                        }
+                    }
+                }
+            }));
+        } catch (IOException e) {
+            // No multicast on this network - the address can still be typed in
+            serverList.setPlaceholder(new Label("LAN discovery unavailable"));
+        }
+    }
+
+    /**
+     * Stops listening for LAN server beacons.
+     */
+    private void stopLanDiscovery() {
+        if (lanDiscovery != null) {
+            lanDiscovery.close();
+            lanDiscovery = null;
+        }
+    }
+
     /**
      * Displays the player setup screen for a joining player.
      * Shows team status and allows name and team selection.
      *
      * @param primaryStage The primary stage to update
+     * @param lobby Lobby subscription to the server, upgraded to the game connection on join
      */
-    private void showJoinPlayerSetup(Stage primaryStage) {
-        // Get team status from remote server
-        String[] teamStatus = getTeamStatus(GameClient.serverIP, GameClient.serverPort);
-        if (teamStatus == null) {
-            showAlert("Error", "Failed to get team status from server.");
-            return;
-        }
-        int teamACount = Integer.parseInt(teamStatus[0]);
-        int teamBCount = Integer.parseInt(teamStatus[1]);
+    private void showJoinPlayerSetup(Stage primaryStage, LobbyConnection lobby) {
 
         // Create player name input
         Label nameLabel = new Label("Enter Your Name:");
@@ -345,11 +425,13 @@ public class GameLauncher extends Application {
         // Create team selection dropdown
         Label teamLabel = new Label("Choose Team:");
         ComboBox<String> teamChoice = new ComboBox<>();
-        teamChoice.getItems().addAll("Red (Team A)", "Blue (Team B)");
+        for (int team = 0; team < lobby.getTeamCount(); team++) {
+            teamChoice.getItems().add(Teams.displayName(team) + " (" + Teams.name(team) + ")");
+        }
         
-        // Display available spots for each team
-        Label teamStatusLabel = new Label("Red Team: " + (MAX_PLAYERS_PER_TEAM - teamACount) + 
-                " spots | Blue Team: " + (MAX_PLAYERS_PER_TEAM - teamBCount) + " spots");
+        // Display available spots for each team, updated as players join and leave
+        Label teamStatusLabel = new Label(formatTeamStatus(lobby));
+        lobby.setOnChange(() -> Platform.runLater(() -> teamStatusLabel.setText(formatTeamStatus(lobby))));
 
         // Create join button
         Button joinButton = new Button("Join");
@@ -357,25 +439,35 @@ public class GameLauncher extends Application {
         joinButton.setOnAction(e -> {
             // Validate inputs
             String name = nameField.getText().trim();
-            String team = teamChoice.getValue();
-            if (name.isEmpty() || team == null) {
+            int team = teamChoice.getSelectionModel().getSelectedIndex();
+            if (name.isEmpty() || team < 0) {
                 showAlert("Error", "Please enter a name and select a team.");
                 return;
             }
             
             // Verify team capacity
-            if (team.contains("Red") && teamACount >= MAX_PLAYERS_PER_TEAM) {
-                showAlert("Error", "Red Team is full!");
+            if (lobby.getPlayerCount(team) >= lobby.getTeamCapacity()) {
+                showAlert("Error", Teams.displayName(team) + " Team is full!");
                 return;
             }
-            if (team.contains("Blue") && teamBCount >= MAX_PLAYERS_PER_TEAM) {
-                showAlert("Error", "Blue Team is full!");
+
+            // Turn the lobby subscription into the game connection
+            Socket socket;
+            try {
+                socket = lobby.upgrade();
+            } catch (IOException ex) {
+                showAlert("Error", "Failed to join server: " + ex.getMessage());
+                return;
+            }
+            if (socket == null) {
+                showAlert("Error", "Server is full.");
                 return;
             }
 
             // Set client properties (server IP and port already set)
+            GameClient.lobbySocket = socket;
             GameClient.playerName = name;
-            GameClient.teamColor = team.contains("Red") ? "TEAM_A" : "TEAM_B";
+            GameClient.teamColor = Teams.name(team);
 
             // Launch the game client
             launchClient(primaryStage);
@@ -417,31 +509,38 @@ public class GameLauncher extends Application {
     }
 
     /**
-     * Queries the server for current team occupancy status.
+     * Subscribes to a server's lobby, showing an error if that fails.
      *
      * @param ip   The server IP address
      * @param port The server port
-     * @return String array with [teamACount, teamBCount] or null if request fails
+     * @return The lobby connection, or null if the server is full or unreachable
      */
-    private String[] getTeamStatus(String ip, int port) {
-        try (Socket socket = new Socket(ip, port)) {
-            // Create data streams for communication
-            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-            DataInputStream in = new DataInputStream(socket.getInputStream());
-
-            // Send team status request
-            out.writeUTF("TEAM_STATUS_REQUEST");
-            String response = in.readUTF();
-            
-            // Parse response if valid
-            if (response.startsWith("TEAM_STATUS")) {
-                String[] parts = response.split(" ");
-                return new String[]{parts[1], parts[2]};
+    private LobbyConnection openLobby(String ip, int port) {
+        try {
+            LobbyConnection lobby = LobbyConnection.open(ip, port);
+            if (lobby == null) {
+                showAlert("Error", "Server is full.");
             }
+            return lobby;
         } catch (IOException e) {
-            e.printStackTrace();
+            showAlert("Error", "Failed to connect to server: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Formats the free spots on each team.
+     *
+     * @param lobby The lobby connection with the latest team counts
+     * @return The team status text
+     */
+    private String formatTeamStatus(LobbyConnection lobby) {
+        StringBuilder sb = new StringBuilder();
+        for (int team = 0; team < lobby.getTeamCount(); team++) {
+            sb.append(team == 0 ? "" : " | ").append(Teams.displayName(team)).append(" Team: ")
+                    .append(lobby.getTeamCapacity() - lobby.getPlayerCount(team)).append(" spots");
         }
-        return null;
+        return sb.toString();
     }
 
     /**
@@ -2,8 +2,9 @@ module com.project.cmpt371 {
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.graphics;
+    requires com.project.cmpt371.server;
 
 
     opens com.project.cmpt371 to javafx.fxml;
     exports com.project.cmpt371;
-}
\ No newline at end of file
+}
@@ -0,0 +1,359 @@
+package com.project.cmpt371.server;
+
+import java.util.Arrays;
+
+/**
+ * The BoardEvaluator class picks the square a bot should claim next by Monte Carlo rollouts.
+ * <p>
+ * Each rollout gives one candidate square to the bot's team, then fills the rest of the board in
+ * random order. Squares another team is already holding go to that team first, and each remaining
+ * square goes to a team chosen in proportion to its player count. The rollout ends when a team
+ * completes a winning shape. Ownership is one bitboard per team. Each placement of a winning shape
+ * is checked only when one of its squares is claimed, using the placement index of
+ * {@link WinRules}. Candidates are sampled with UCB1, so promising squares get more rollouts.
+ * The evaluator stops when its time budget is spent and returns the candidate with the best win
+ * rate.
+ * <p>
+ * All working arrays are allocated once in the constructor, so evaluating a move allocates
+ * nothing. An evaluator is not thread-safe; each bot owns one.
+ */
+public class BoardEvaluator {
+    /** Holder of a square that several teams are holding at once */
+    public static final int CONTESTED = -2;
+
+    /** Rollouts between checks of the time budget */
+    private static final int ROLLOUTS_PER_CLOCK_CHECK = 16;
+
+    /** UCB1 exploration weight */
+    private static final double EXPLORATION = 1.4;
+
+    /** Number of squares on the board */
+    private final int cellCount;
+
+    /** Number of teams */
+    private final int teamCount;
+
+    /** Number of 64-bit words per team bitboard */
+    private final int words;
+
+    /** Cells of every placement, concatenated */
+    private final int[] placementCells;
+
+    /** Start of each placement in placementCells; a placement ends where the next starts */
+    private final int[] placementStart;
+
+    /** First index into cellPlacements for each cell; the cell's placements end at the next cell's start */
+    private final int[] cellStart;
+
+    /** Placements covering each cell, grouped by cell */
+    private final int[] cellPlacements;
+
+    /** Owning team of each square, or -1 (the bot's current view, set with {@link #setOwner}) */
+    private final int[] owners;
+
+    /** Team holding each unclaimed square alone, -1 or CONTESTED (set with {@link #setHolder}) */
+    private final int[] holders;
+
+    /** Players on each team, used to weight which team claims a square in a rollout */
+    private final int[] teamWeights;
+
+    /** Ownership bitboards during a rollout, indexed [team * words + word] */
+    private final long[] bits;
+
+    /** Unclaimed squares in random order during a rollout */
+    private final int[] order;
+
+    /** Candidate squares of the current evaluation */
+    private final int[] candidates;
+
+    /** Rollouts played for each candidate */
+    private final int[] plays;
+
+    /** Rollouts won for each candidate */
+    private final int[] wins;
+
+    /** State of the xorshift random number generator */
+    private long seed;
+
+    /**
+     * Creates an evaluator for a board.
+     *
+     * @param rules The win rules, whose placement index is copied
+     * @param teamCount Number of teams
+     * @param seed Random seed; bots should use different seeds
+     */
+    public BoardEvaluator(WinRules rules, int teamCount, long seed) {
+        this.cellCount = rules.getRows() * rules.getCols();
+        this.teamCount = teamCount;
+        this.words = (cellCount + 63) / 64;
+        this.seed = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+
+        // Flatten the placements and invert them into the placements covering each cell
+        int placements = rules.getPlacementCount();
+        placementStart = new int[placements + 1];
+        cellStart = new int[cellCount + 1];
+        for (int placement = 0; placement < placements; placement++) {
+            int[] cells = rules.getPlacementCells(placement);
+            placementStart[placement + 1] = placementStart[placement] + cells.length;
+            for (int cell : cells) {
+                cellStart[cell + 1]++;
+            }
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        placementCells = new int[placementStart[placements]];
+        cellPlacements = new int[cellStart[cellCount]];
+        int[] next = Arrays.copyOf(cellStart, cellCount);
+        for (int placement = 0; placement < placements; placement++) {
+            int[] cells = rules.getPlacementCells(placement);
+            System.arraycopy(cells, 0, placementCells, placementStart[placement], cells.length);
+            for (int cell : cells) {
+                cellPlacements[next[cell]++] = placement;
+            }
+        }
+
+        owners = new int[cellCount];
+        holders = new int[cellCount];
+        teamWeights = new int[teamCount];
+        Arrays.fill(teamWeights, 1);
+        bits = new long[teamCount * words];
+        order = new int[cellCount];
+        candidates = new int[cellCount];
+        plays = new int[cellCount];
+        wins = new int[cellCount];
+        clear();
+    }
+
+    /**
+     * Clears the view to an empty board with no holds.
+     */
+    public void clear() {
+        for (int cell = 0; cell < cellCount; cell++) {
+            owners[cell] = -1;
+            holders[cell] = -1;
+        }
+    }
+
+    /**
+     * Records who owns a square.
+     *
+     * @param cell The square, as row * cols + col
+     * @param team The owning team, or -1 if unclaimed
+     */
+    public void setOwner(int cell, int team) {
+        owners[cell] = team;
+    }
+
+    /**
+     * Records which team alone is holding a square.
+     *
+     * @param cell The square, as row * cols + col
+     * @param team The holding team, -1 if nobody is holding it, or CONTESTED
+     */
+    public void setHolder(int cell, int team) {
+        holders[cell] = team;
+    }
+
+    /**
+     * Records how many players a team has.
+     *
+     * @param team The team
+     * @param players The number of players (at least 1 is assumed)
+     */
+    public void setTeamSize(int team, int players) {
+        teamWeights[team] = Math.max(1, players);
+    }
+
+    /**
+     * Gets the owner of a square in the current view.
+     *
+     * @param cell The square
+     * @return The owning team, or -1
+     */
+    public int getOwner(int cell) {
+        return owners[cell];
+    }
+
+    /**
+     * Chooses the square for a team to claim next.
+     *
+     * @param team The bot's team
+     * @param budgetNanos How long to search
+     * @return The chosen square, or -1 if no square is free
+     */
+    public int chooseMove(int team, long budgetNanos) {
+        // Candidates are the free squares nobody is holding
+        int candidateCount = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (owners[cell] < 0 && holders[cell] == -1) {
+                candidates[candidateCount] = cell;
+                plays[candidateCount] = 0;
+                wins[candidateCount] = 0;
+                candidateCount++;
+            }
+        }
+        if (candidateCount <= 1) {
+            return candidateCount == 1 ? candidates[0] : -1;
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        int total = 0;
+        do {
+            for (int i = 0; i < ROLLOUTS_PER_CLOCK_CHECK; i++) {
+                int pick = total < candidateCount ? total : selectCandidate(candidateCount, total);
+                plays[pick]++;
+                if (rollout(candidates[pick], team) == team) {
+                    wins[pick]++;
+                }
+                total++;
+            }
+        } while (System.nanoTime() < deadline);
+
+        // The best win rate among the candidates that were tried
+        int best = 0;
+        for (int i = 1; i < candidateCount; i++) {
+            if ((long) wins[i] * plays[best] > (long) wins[best] * plays[i]) {
+                best = i;
+            }
+        }
+        return candidates[best];
+    }
+
+    /**
+     * Picks the candidate with the highest UCB1 score.
+     *
+     * @param candidateCount Number of candidates
+     * @param total Rollouts played so far
+     * @return The candidate index
+     */
+    private int selectCandidate(int candidateCount, int total) {
+        double logTotal = Math.log(total);
+        int best = 0;
+        double bestScore = -1;
+        for (int i = 0; i < candidateCount; i++) {
+            double score = (double) wins[i] / plays[i] + EXPLORATION * Math.sqrt(logTotal / plays[i]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plays one random game to the end after the team claims a square.
+     *
+     * @param first The square claimed first
+     * @param team The team claiming it
+     * @return The team that completed a shape first, or -1 if none did
+     */
+    private int rollout(int first, int team) {
+        // Load the current ownership and collect the other free squares
+        Arrays.fill(bits, 0);
+        int held = 0;
+        int free = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (owners[cell] >= 0) {
+                setBit(owners[cell], cell);
+            } else if (cell != first) {
+                // Held squares go to their holders before anything else is claimed
+                if (holders[cell] >= 0) {
+                    order[free++] = order[held];
+                    order[held++] = cell;
+                } else {
+                    order[free++] = cell;
+                }
+            }
+        }
+        if (claim(team, first)) {
+            return team;
+        }
+        for (int i = 0; i < held; i++) {
+            int cell = order[i];
+            if (claim(holders[cell], cell)) {
+                return holders[cell];
+            }
+        }
+
+        // Claim the rest in random order, each by a team weighted by its players
+        int weightSum = 0;
+        for (int weight : teamWeights) {
+            weightSum += weight;
+        }
+        for (int i = held; i < free; i++) {
+            int swap = i + nextInt(free - i);
+            int cell = order[swap];
+            order[swap] = order[i];
+            order[i] = cell;
+            int claimer = pickTeam(weightSum);
+            if (claim(claimer, cell)) {
+                return claimer;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Claims a square in the rollout and checks the placements through it.
+     *
+     * @param team The claiming team
+     * @param cell The square
+     * @return true if the claim completes a placement for the team
+     */
+    private boolean claim(int team, int cell) {
+        setBit(team, cell);
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            int placement = cellPlacements[i];
+            boolean complete = true;
+            for (int j = placementStart[placement]; j < placementStart[placement + 1] && complete; j++) {
+                int other = placementCells[j];
+                complete = (bits[team * words + (other >>> 6)] & (1L << other)) != 0;
+            }
+            if (complete) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets a square in a team's bitboard.
+     *
+     * @param team The team
+     * @param cell The square
+     */
+    private void setBit(int team, int cell) {
+        bits[team * words + (cell >>> 6)] |= 1L << cell;
+    }
+
+    /**
+     * Picks a team at random, weighted by player count.
+     *
+     * @param weightSum Sum of the team weights
+     * @return The team
+     */
+    private int pickTeam(int weightSum) {
+        int r = nextInt(weightSum);
+        for (int team = 0; team < teamCount; team++) {
+            r -= teamWeights[team];
+            if (r < 0) {
+                return team;
+            }
+        }
+        return teamCount - 1;
+    }
+
+    /**
+     * Draws a random number with xorshift64.
+     *
+     * @param bound Exclusive upper bound, positive
+     * @return A number in [0, bound)
+     */
+    private int nextInt(int bound) {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) ((seed >>> 33) % bound);
+    }
+}
@@ -0,0 +1,212 @@
+package com.project.cmpt371.server;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The BotManager class keeps short-handed teams filled with {@link BotPlayer}s.
+ * <p>
+ * Once a second it compares each team's size with the fill target, adds a bot to every team that
+ * is short and removes one from every team that is over (e.g. after people joined). A person
+ * joining a team that bots have filled takes a bot's slot through {@link #yieldSlot}.
+ * <p>
+ * All bots run on one small scheduler of low-priority daemon threads: each bot is ticked at a
+ * fixed rate, and a tick only drains its messages and occasionally spends a bounded think budget.
+ * Many bots therefore cost a fraction of a core, and the threads that serve people (client
+ * handlers, claim timers) win any contention for the CPU.
+ */
+public class BotManager {
+    /** Prefix of bot names; the prefix followed by digits is reserved for bots */
+    private static final String NAME_PREFIX = "Bot";
+
+    /** Interval of the team fill check */
+    private static final long FILL_INTERVAL_MS = 1000;
+
+    /** Team size bots fill up to */
+    private final int fill;
+
+    /** Number of teams */
+    private final int teamCount;
+
+    /** Win rules shared by all bots' evaluators (only the immutable placement index is read) */
+    private final WinRules rules;
+
+    /** Current size of each team, including bots */
+    private final Supplier<int[]> teamSizes;
+
+    /** Interval between bot ticks */
+    private final long tickMillis;
+
+    /** Time a bot may think about one move */
+    private final long thinkNanos;
+
+    /** Runs the bot ticks and the fill check */
+    private final ScheduledExecutorService scheduler;
+
+    /** Live bots and their tick tasks (guarded by this) */
+    private final Map<BotPlayer, ScheduledFuture<?>> bots = new HashMap<>();
+
+    /** Counter for bot names */
+    private int botCounter = 0;
+
+    /**
+     * Creates a bot manager. Call {@link #start()} to begin filling teams.
+     *
+     * @param fill Team size to fill up to
+     * @param teamCount Number of teams
+     * @param rules The game's win rules
+     * @param teamSizes Supplies the current size of each team
+     * @param threads Number of scheduler threads for all bots
+     * @param tickMillis Interval between bot ticks
+     * @param thinkMillis Time a bot may think about one move
+     */
+    public BotManager(int fill, int teamCount, WinRules rules, Supplier<int[]> teamSizes,
+                      int threads, long tickMillis, long thinkMillis) {
+        this.fill = fill;
+        this.teamCount = teamCount;
+        this.rules = rules;
+        this.teamSizes = teamSizes;
+        this.tickMillis = tickMillis;
+        this.thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkMillis);
+        this.scheduler = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bot-scheduler");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the periodic team fill check.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::fillTeams, 0, FILL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds bots to teams below the fill target and removes bots from teams above it.
+     */
+    private void fillTeams() {
+        try {
+            // Forget bots whose connection ended
+            synchronized (this) {
+                bots.entrySet().removeIf(entry -> entry.getKey().isClosed() && entry.getValue().cancel(false));
+            }
+            int[] sizes = teamSizes.get();
+            for (int team = 0; team < teamCount; team++) {
+                if (sizes[team] < fill) {
+                    addBot(team);
+                } else if (sizes[team] > fill) {
+                    BotPlayer bot = findBot(team);
+                    if (bot != null) {
+                        System.out.println("Bot " + bot.getName() + " leaving " + Teams.name(team) + ": team is over " + fill);
+                        bot.leave();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the periodic check alive
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Connects a new bot to a team.
+     *
+     * @param team The team ordinal
+     */
+    private void addBot(int team) {
+        LoopbackConnection connection = GameServer.connectBot();
+        if (connection == null) {
+            return;
+        }
+        String name;
+        synchronized (this) {
+            name = NAME_PREFIX + (++botCounter);
+        }
+        try {
+            BotPlayer bot = new BotPlayer(name, connection, rules, teamCount, thinkNanos);
+            synchronized (this) {
+                // Spread the ticks of different bots over the interval
+                bots.put(bot, scheduler.scheduleAtFixedRate(bot::tick,
+                        (botCounter * 37L) % tickMillis, tickMillis, TimeUnit.MILLISECONDS));
+            }
+            // Registered first, so the server already knows the name is a bot's during the handshake
+            bot.join(Teams.name(team));
+            System.out.println("Bot " + name + " joining " + Teams.name(team));
+        } catch (IOException e) {
+            System.out.println("Bot " + name + " could not join: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds a bot that has joined a team.
+     *
+     * @param team The team ordinal
+     * @return A bot on the team, or null
+     */
+    private synchronized BotPlayer findBot(int team) {
+        for (BotPlayer bot : bots.keySet()) {
+            if (bot.getTeam() == team && !bot.isClosed()) {
+                return bot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives a bot's place on a full team to a person. The bot leaves from the bot scheduler; the
+     * caller takes the slot over straight away.
+     *
+     * @param team The team ordinal
+     * @return The name of the bot whose slot is free now, or null if no bot is on the team
+     */
+    public synchronized String yieldSlot(int team) {
+        BotPlayer bot = findBot(team);
+        if (bot == null) {
+            return null;
+        }
+        bots.remove(bot).cancel(false);
+        scheduler.execute(bot::leave);
+        return bot.getName();
+    }
+
+    /**
+     * Checks whether a player name belongs to a live bot.
+     *
+     * @param name The player name
+     * @return true if the player is one of this manager's bots
+     */
+    public synchronized boolean isBot(String name) {
+        for (BotPlayer bot : bots.keySet()) {
+            if (bot.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a name has the form of a bot name, which people may not use.
+     *
+     * @param name The player name
+     * @return true if the name is the bot prefix followed by digits
+     */
+    public static boolean isBotName(String name) {
+        if (name.length() <= NAME_PREFIX.length() || !name.startsWith(NAME_PREFIX)) {
+            return false;
+        }
+        for (int i = NAME_PREFIX.length(); i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
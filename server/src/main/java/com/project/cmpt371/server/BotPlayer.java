@@ -0,0 +1,265 @@
+package com.project.cmpt371.server;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * The BotPlayer class is a computer player that joins a team like any other player.
+ * <p>
+ * It connects through a {@link LoopbackConnection} and speaks the normal protocol: PLAYER_INFO to
+ * join, HOLD_START to take a square and HOLD_END once it is claimed, LEAVE to go. The server
+ * therefore applies the same rules, claim timers and logging to bots as to people. A bot has no
+ * thread of its own; the {@link BotManager} calls {@link #tick()} periodically on a shared
+ * scheduler, and each tick drains the waiting messages and makes at most one move.
+ * <p>
+ * A bot holds one square at a time. The square is picked by a {@link BoardEvaluator} that owns
+ * all its working memory, so thinking does not allocate.
+ */
+public class BotPlayer {
+    /** How long a bot keeps holding a square that is not claimed (e.g. contested) before giving up */
+    private static final long GIVE_UP_NANOS = 5_000_000_000L;
+
+    /** Sentinel for "no square" */
+    private static final int NO_CELL = -1;
+
+    /** The bot's name, also its player name */
+    private final String name;
+
+    /** The connection to the server */
+    private final LoopbackConnection connection;
+
+    /** Number of columns on the board */
+    private final int cols;
+
+    /** Move chooser, which also holds the bot's view of the board */
+    private final BoardEvaluator evaluator;
+
+    /** Teams holding each square, as a set of team ordinals */
+    private final BitSet[] holders;
+
+    /** Time the evaluator may spend on a move */
+    private final long thinkNanos;
+
+    /** The bot's team ordinal, or -1 until the server assigned one */
+    private volatile int team = -1;
+
+    /** Square the bot is holding, or NO_CELL */
+    private int heldCell = NO_CELL;
+
+    /** When the bot started holding heldCell */
+    private long heldSince;
+
+    /** True from GAME_OVER until the next round starts */
+    private boolean gameOver;
+
+    /** True once the connection ended */
+    private volatile boolean closed;
+
+    /**
+     * Creates a bot on an open connection.
+     *
+     * @param name The bot's name
+     * @param connection The bot's connection to the server
+     * @param rules The win rules, for the board size and the evaluator
+     * @param teamCount Number of teams
+     * @param thinkNanos Time the evaluator may spend on a move
+     */
+    public BotPlayer(String name, LoopbackConnection connection, WinRules rules, int teamCount, long thinkNanos) {
+        this.name = name;
+        this.connection = connection;
+        this.cols = rules.getCols();
+        this.thinkNanos = thinkNanos;
+        this.evaluator = new BoardEvaluator(rules, teamCount, name.hashCode() * 0x9E3779B97F4A7C15L ^ System.nanoTime());
+        this.holders = new BitSet[rules.getRows() * cols];
+        for (int cell = 0; cell < holders.length; cell++) {
+            holders[cell] = new BitSet(teamCount);
+        }
+    }
+
+    /**
+     * Asks to join a team.
+     *
+     * @param requestedTeam The team identifier, e.g. "TEAM_A"
+     * @throws IOException If the connection is already closed
+     */
+    public void join(String requestedTeam) throws IOException {
+        connection.sendToServer("PLAYER_INFO " + name + " " + requestedTeam);
+    }
+
+    /**
+     * Processes the messages that arrived since the last tick and makes a move if it is time.
+     * Called from the bot scheduler only.
+     */
+    public void tick() {
+        if (closed) {
+            return;
+        }
+        try {
+            String message;
+            while ((message = connection.pollFromServer()) != null) {
+                handleMessage(message);
+            }
+            if (team >= 0 && !gameOver) {
+                move();
+            }
+        } catch (IOException e) {
+            closed = true;
+            System.out.println("Bot " + name + " stopped: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // A malformed message must not kill the shared scheduler thread
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Releases a claimed or stale square, then picks and holds the next one.
+     *
+     * @throws IOException If the connection is closed
+     */
+    private void move() throws IOException {
+        if (heldCell != NO_CELL) {
+            boolean claimed = evaluator.getOwner(heldCell) >= 0;
+            if (!claimed && System.nanoTime() - heldSince < GIVE_UP_NANOS) {
+                return;
+            }
+            // Let go like a player lifting the mouse button once the square is decided
+            connection.sendToServer("HOLD_END " + heldCell / cols + " " + heldCell % cols);
+            heldCell = NO_CELL;
+            return;
+        }
+        int cell = evaluator.chooseMove(team, thinkNanos);
+        if (cell != NO_CELL) {
+            connection.sendToServer("HOLD_START " + cell / cols + " " + cell % cols);
+            heldCell = cell;
+            heldSince = System.nanoTime();
+        }
+    }
+
+    /**
+     * Updates the bot's view from one server message.
+     *
+     * @param message The message
+     * @throws IOException If a reply fails
+     */
+    private void handleMessage(String message) throws IOException {
+        if (message.startsWith("SEQ ")) {
+            message = message.substring(message.indexOf(' ', 4) + 1);
+        }
+        if (message.startsWith("TEAM_ASSIGNMENT")) {
+            team = Teams.ordinal(message.split(" ")[1]);
+        } else if (message.equals("TEAM_FULL") || message.equals("NAME_IN_USE")) {
+            closed = true;
+            connection.close();
+        } else if (message.startsWith("GAME_STATE")) {
+            String[] state = message.split(" ");
+            for (int cell = 0; cell < holders.length; cell++) {
+                int owner = Teams.ordinal(state[cell + 1]);
+                evaluator.setOwner(cell, owner);
+                if (owner >= 0) {
+                    // A claim clears the holds on the server without HOLD_END broadcasts
+                    holders[cell].clear();
+                    evaluator.setHolder(cell, -1);
+                }
+            }
+        } else if (message.startsWith("INITIAL_HELD_STATE")) {
+            String[] state = message.split(" ");
+            for (int cell = 0; cell < holders.length; cell++) {
+                holders[cell].clear();
+                if (!"NONE".equals(state[cell + 1])) {
+                    for (String holder : state[cell + 1].split(",")) {
+                        setHeld(cell, Teams.ordinal(holder), true);
+                    }
+                }
+                updateHolder(cell);
+            }
+        } else if (message.startsWith("HOLD_START") || message.startsWith("HOLD_END")) {
+            String[] parts = message.split(" ");
+            int cell = Integer.parseInt(parts[1]) * cols + Integer.parseInt(parts[2]);
+            setHeld(cell, Teams.ordinal(parts[3]), message.startsWith("HOLD_START"));
+            updateHolder(cell);
+        } else if (message.startsWith("TEAM_LISTS")) {
+            // One field per team with comma-separated names, empty for an empty team
+            String[] parts = message.split(" ", -1);
+            for (int i = 1; i < parts.length; i++) {
+                evaluator.setTeamSize(i - 1, parts[i].isEmpty() ? 0 : parts[i].split(",").length);
+            }
+        } else if (message.startsWith("GAME_OVER")) {
+            gameOver = true;
+        } else if (message.equals("NEW_ROUND")) {
+            evaluator.clear();
+            for (BitSet cellHolders : holders) {
+                cellHolders.clear();
+            }
+            heldCell = NO_CELL;
+            gameOver = false;
+        } else if (message.startsWith("PING")) {
+            connection.sendToServer("PONG " + message.substring(5));
+        }
+    }
+
+    /**
+     * Adds or removes a team from the holders of a square.
+     *
+     * @param cell The square
+     * @param holder The team ordinal, ignored if not a team
+     * @param holding true if the team started holding, false if it let go
+     */
+    private void setHeld(int cell, int holder, boolean holding) {
+        if (holder >= 0) {
+            holders[cell].set(holder, holding);
+        }
+    }
+
+    /**
+     * Passes the holders of a square to the evaluator.
+     *
+     * @param cell The square
+     */
+    private void updateHolder(int cell) {
+        int count = holders[cell].cardinality();
+        evaluator.setHolder(cell, count == 0 ? -1 : count == 1 ? holders[cell].nextSetBit(0) : BoardEvaluator.CONTESTED);
+    }
+
+    /**
+     * Leaves the game, releasing the bot's team slot.
+     */
+    public void leave() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            connection.sendToServer("LEAVE");
+        } catch (IOException e) {
+            // Already disconnected
+        }
+        connection.close();
+    }
+
+    /**
+     * Gets the bot's name.
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the bot's team.
+     *
+     * @return The team ordinal, or -1 if it has not joined yet
+     */
+    public int getTeam() {
+        return team;
+    }
+
+    /**
+     * Checks whether the bot's connection has ended.
+     *
+     * @return true once the bot left or was disconnected
+     */
+    public boolean isClosed() {
+        return closed || connection.isClosed();
+    }
+}
@@ -0,0 +1,58 @@
+package com.project.cmpt371.server;
+
+import java.util.*;
+
+/**
+ * The EventHistory class numbers outbound broadcast events and keeps the most recent ones
+ * in a ring buffer, so a resuming client can be sent only the events it missed.
+ * <p>
+ * Events are framed as {@code SEQ <n> <message>} with n starting at 1. Callers must append
+ * in the same order the events are delivered (the server appends under the clients lock).
+ */
+public class EventHistory {
+    /** Framed events, indexed by sequence number modulo the capacity */
+    private final String[] events;
+
+    /** Sequence number of the most recent event, or 0 if none yet */
+    private long lastSeq;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param capacity Number of recent events to keep
+     */
+    public EventHistory(int capacity) {
+        events = new String[capacity];
+    }
+
+    /**
+     * Assigns the next sequence number to an event and stores it.
+     *
+     * @param message The event to number
+     * @return The framed event ("SEQ n message")
+     */
+    public synchronized String append(String message) {
+        lastSeq++;
+        String framed = "SEQ " + lastSeq + " " + message;
+        events[(int) (lastSeq % events.length)] = framed;
+        return framed;
+    }
+
+    /**
+     * Gets the events after a given sequence number.
+     *
+     * @param seq The last sequence number the client received
+     * @return The framed events after seq in order, or null if some of them are no longer kept
+     *         (or seq is ahead of this history, e.g. after a server restart)
+     */
+    public synchronized List<String> since(long seq) {
+        if (seq < 0 || seq > lastSeq || lastSeq - seq > events.length) {
+            return null;
+        }
+        List<String> missed = new ArrayList<>((int) (lastSeq - seq));
+        for (long next = seq + 1; next <= lastSeq; next++) {
+            missed.add(events[(int) (next % events.length)]);
+        }
+        return missed;
+    }
+}
@@ -0,0 +1,2576 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import jdk.jfr.EventType;
+
+/**
+ * The GameServer class manages the server-side logic for the Team Box Conquest game.
+ * It handles client connections, game state management, player team assignments,
+ * and the core game mechanics including the shared grid state and win conditions.
+ */
+public class GameServer {
+    /** Server port number, set by the first command line argument or -Dcmpt371.port */
+    private static int port = Integer.getInteger("cmpt371.port", 12345);
+    
+    /** Number of rows on the game grid */
+    private static final int ROWS = Integer.getInteger("cmpt371.boardRows", 10);
+    
+    /** Number of columns on the game grid */
+    private static final int COLS = Integer.getInteger("cmpt371.boardCols", 10);
+    
+    /** Length of a winning straight line */
+    private static final int WIN_LENGTH = Integer.getInteger("cmpt371.winLength", 10);
+    
+    /** Winning shapes, see {@link WinRules} for the format */
+    private static final String WIN_SHAPES = System.getProperty("cmpt371.winShapes", "row,column,diagonal,antidiagonal");
+    
+    /** Number of teams in a match */
+    private static final int TEAM_COUNT = Integer.getInteger("cmpt371.teams", 2);
+    
+    /** Maximum number of players allowed per team */
+    private static final int MAX_PLAYERS_PER_TEAM = Integer.getInteger("cmpt371.playersPerTeam", 3);
+    
+    /** Maximum total number of players allowed (across all teams) */
+    private static final int MAX_TOTAL_PLAYERS = TEAM_COUNT * MAX_PLAYERS_PER_TEAM;
+    
+    /** Team size that server-side bots fill short-handed teams up to (0 disables bots) */
+    private static final int BOT_FILL = Math.min(Integer.getInteger("cmpt371.botFill", 0), MAX_PLAYERS_PER_TEAM);
+    
+    /** Number of threads shared by all bots */
+    private static final int BOT_THREADS = Integer.getInteger("cmpt371.botThreads", 1);
+    
+    /** Interval between bot ticks (milliseconds) */
+    private static final int BOT_TICK_MS = Integer.getInteger("cmpt371.botTickMs", 200);
+    
+    /** Time a bot may spend choosing one move (milliseconds) */
+    private static final int BOT_THINK_MS = Integer.getInteger("cmpt371.botThinkMs", 10);
+    
+    /** Interval between server PING messages used to measure client round-trip times (seconds) */
+    private static final int PING_INTERVAL_SECONDS = 2;
+    
+    /** File the metrics report is periodically written to for scraping */
+    private static final String METRICS_FILE = "server-metrics.txt";
+    
+    /** Interval between metrics file dumps (seconds) */
+    private static final int METRICS_DUMP_INTERVAL_SECONDS = 10;
+    
+    /** Directory holding the match write-ahead log and snapshots (each server on a host needs its own) */
+    private static final String MATCH_DATA_DIR = System.getProperty("cmpt371.dataDir", "match-data");
+    
+    /** Interval between match snapshots, each of which also compacts the log (seconds) */
+    private static final int SNAPSHOT_INTERVAL_SECONDS = 30;
+    
+    /** How long players recovered from the match log keep their team slot after a restart (seconds) */
+    private static final int RESERVED_SLOT_SECONDS = 60;
+    
+    /** Directory of the finished-match archive */
+    private static final String ARCHIVE_DIR = MATCH_DATA_DIR + "/archive";
+    
+    /** Directory holding one stats file per player */
+    private static final String PLAYERS_DIR = MATCH_DATA_DIR + "/players";
+    
+    /** Directory match recordings are written to when recording is enabled */
+    private static final String RECORDINGS_DIR = MATCH_DATA_DIR + "/recordings";
+    
+    /** How long a new connection has to send its first message before it is closed (milliseconds) */
+    private static final int HANDSHAKE_TIMEOUT_MS = Integer.getInteger("cmpt371.handshakeTimeoutMs", 5000);
+    
+    /**
+     * How long a player may send nothing before the connection is considered dead (milliseconds).
+     * Clients answer every server PING, so live players are never silent for more than PING_INTERVAL_SECONDS.
+     */
+    private static final int IDLE_TIMEOUT_MS = Integer.getInteger("cmpt371.idleTimeoutMs", 10000);
+    
+    /** Outbound queue depth above which a lagging client's messages are coalesced */
+    private static final int OUTBOUND_COALESCE_DEPTH = Integer.getInteger("cmpt371.outboundCoalesceDepth", 32);
+    
+    /** Outbound queue depth at which a lagging client's queue is replaced by a snapshot */
+    private static final int OUTBOUND_SNAPSHOT_DEPTH = Integer.getInteger("cmpt371.outboundSnapshotDepth", 512);
+    
+    /** Maximum number of queued chat and roster messages per client */
+    private static final int OUTBOUND_LOW_PRIORITY_DEPTH = Integer.getInteger("cmpt371.outboundChatDepth", 64);
+    
+    /** Maximum number of open lobby connections; each holds a handler and a writer thread */
+    private static final int MAX_LOBBY_SUBSCRIBERS = Integer.getInteger("cmpt371.lobbySubscribers", 16);
+    
+    /** Chat messages a player may send in a burst */
+    private static final int CHAT_BURST = Integer.getInteger("cmpt371.chatBurst", 5);
+    
+    /** Sustained chat messages per second allowed per player */
+    private static final int CHAT_PER_SECOND = Integer.getInteger("cmpt371.chatPerSecond", 1);
+    
+    /** HOLD_START messages a player may send in a burst */
+    private static final int HOLD_BURST = Integer.getInteger("cmpt371.holdBurst", 10);
+    
+    /** Sustained HOLD_START messages per second allowed per player */
+    private static final int HOLD_PER_SECOND = Integer.getInteger("cmpt371.holdPerSecond", 10);
+    
+    /** How long a client's writer may make no progress before an overflowing client is disconnected (milliseconds) */
+    private static final int OUTBOUND_STALL_MS = Integer.getInteger("cmpt371.outboundStallMs", 5000);
+    
+    /** How long a dropped player's session can be resumed before the slot is released (seconds) */
+    private static final int RESUME_GRACE_SECONDS = Integer.getInteger("cmpt371.resumeGraceSeconds", 30);
+    
+    /** Number of recent broadcast events kept for resuming clients */
+    private static final int RESUME_HISTORY_EVENTS = Integer.getInteger("cmpt371.resumeHistoryEvents", 1024);
+    
+    /** Interval between LAN discovery beacons (milliseconds, 0 disables them) */
+    private static final int BEACON_INTERVAL_MS = Integer.getInteger("cmpt371.beaconIntervalMs", 1000);
+    
+    /** Room name advertised in the LAN discovery beacons */
+    private static final String ROOM_NAME = System.getProperty("cmpt371.roomName", defaultRoomName());
+    
+    /** Port spectators connect to (0 disables spectating) */
+    private static final int SPECTATOR_PORT = Integer.getInteger("cmpt371.spectatorPort", 12347);
+    
+    /** How long spectators see events after the players do (milliseconds) */
+    private static final int SPECTATOR_DELAY_MS = Integer.getInteger("cmpt371.spectatorDelayMs", 0);
+    
+    /** Port standby servers connect to for the match log stream (0 disables replication) */
+    private static final int REPLICATION_PORT = Integer.getInteger("cmpt371.replicationPort", 0);
+    
+    /** Interface address the replication port listens on; loopback unless set */
+    private static final String REPLICATION_BIND = System.getProperty("cmpt371.replicationBind");
+    
+    /** Secret a standby must present before it gets the match log; replication stays off without one */
+    private static final String REPLICATION_SECRET = System.getProperty("cmpt371.replicationSecret", "");
+    
+    /** Replication address (host:port) of the primary this server stands by for, or null to start as primary */
+    private static final String PRIMARY_ADDRESS = System.getProperty("cmpt371.standbyOf");
+    
+    /** Interval of the heartbeats sent to standbys while the match log is idle (milliseconds) */
+    private static final int REPLICATION_HEARTBEAT_MS = Integer.getInteger("cmpt371.replicationHeartbeatMs", 200);
+    
+    /** How long a standby waits without records or heartbeats before taking over (milliseconds) */
+    private static final int FAILOVER_TIMEOUT_MS = Integer.getInteger("cmpt371.failoverTimeoutMs", 1000);
+    
+    /** Frame prefix of a HOLD_START message, matched on the raw bytes */
+    private static final byte[] HOLD_START_PREFIX = "HOLD_START ".getBytes(StandardCharsets.US_ASCII);
+    
+    /** Frame prefix of a HOLD_END message, matched on the raw bytes */
+    private static final byte[] HOLD_END_PREFIX = "HOLD_END ".getBytes(StandardCharsets.US_ASCII);
+    
+    /** Team identifiers, indexed by the team numbers used in the match log */
+    private static final String[] TEAMS = new String[TEAM_COUNT];
+    
+    static {
+        for (int team = 0; team < TEAM_COUNT; team++) {
+            TEAMS[team] = Teams.name(team);
+        }
+    }
+    
+    /** Index of winning shapes and per-team run counters (guarded by boardState) */
+    private static final WinRules winRules = new WinRules(ROWS, COLS, WIN_LENGTH, WIN_SHAPES, TEAMS.length);
+    
+    /** Map of client IDs to their handlers */
+    private static Map<String, ClientHandler> clients = new HashMap<>();
+    
+    /** Current ownership state of each square on the board */
+    private static String[][] boardState = new String[ROWS][COLS];
+    
+    /** Maps each grid cell to teams currently holding it and their count */
+    private static Map<String, Integer>[][] heldState = new HashMap[ROWS][COLS];
+    
+    /**
+     * Thread pool for handling multiple client connections. Each handler keeps its thread for the
+     * life of the connection, so there is a thread for every connection that can be open at once:
+     * the players (which includes short probes, counted against the limit while they run), the bots
+     * and the lobby connections. Anything beyond that waits in the queue instead of adding threads.
+     */
+    private static final ExecutorService executorService = Executors.newFixedThreadPool(
+            MAX_TOTAL_PLAYERS + TEAM_COUNT * BOT_FILL + MAX_LOBBY_SUBSCRIBERS);
+    
+    /** Runs the per-client outbound writers */
+    private static final ExecutorService writerService = Executors.newCachedThreadPool();
+    
+    /** Scheduled executor service for managing claim timers */
+    private static final ScheduledExecutorService timerService = Executors.newScheduledThreadPool(1);
+    
+    /** Scheduled executor for housekeeping (metrics dump, match snapshots), kept off the claim timer thread */
+    private static final ScheduledExecutorService metricsService = Executors.newSingleThreadScheduledExecutor();
+    
+    /** Counters and histograms describing server activity */
+    private static final ServerMetrics metrics = new ServerMetrics();
+
+    /** Flight recorder type of the hold event, checked before allocating one */
+    private static final EventType HOLD_REQUEST_EVENT = EventType.getEventType(ServerEvents.HoldRequest.class);
+
+    /** Flight recorder type of the release event, checked before allocating one */
+    private static final EventType RELEASE_REQUEST_EVENT = EventType.getEventType(ServerEvents.ReleaseRequest.class);
+    
+    /** Map of grid coordinates to their claim timers */
+    private static ScheduledFuture<?>[][] claimTimers = new ScheduledFuture<?>[ROWS][COLS];
+    
+    /** Counter for generating unique client IDs */
+    private static int clientCounter = 0;
+    
+    /** Player names on each team, including reserved slots, indexed by team number (guarded by GameServer.class) */
+    private static final List<List<String>> teamPlayers = new ArrayList<>(TEAM_COUNT);
+    
+    static {
+        for (int team = 0; team < TEAM_COUNT; team++) {
+            teamPlayers.add(new ArrayList<>());
+        }
+    }
+    
+    /** Write-ahead log of match state transitions, or null if it could not be opened */
+    private static MatchLog matchLog;
+    
+    /** Fills short-handed teams with bots, or null if bots are off */
+    private static BotManager botManager;
+    
+    /** Team slots held for players recovered from the match log until they reconnect (name to team) */
+    private static final Map<String, String> reservedSlots = new HashMap<>();
+    
+    /** Recorder of the match input stream for replay, or null if recording is off */
+    private static MatchRecorder matchRecorder;
+    
+    /** True while a recorded match is being replayed; claim timers are then driven by the recording */
+    private static boolean replayMode = false;
+    
+    /** Winner and final GAME_STATE of the last finished game, used to verify replays */
+    private static String lastGameOver;
+    
+    /** Archive of finished matches, or null if it could not be opened */
+    private static MatchArchive matchArchive;
+    
+    /** Sequence-numbered recent broadcasts, appended under the clients lock */
+    private static final EventHistory eventHistory = new EventHistory(RESUME_HISTORY_EVENTS);
+    
+    /** Handlers of dropped players whose session can still be resumed, by resume token (guarded by GameServer.class) */
+    private static final Map<String, ClientHandler> suspendedSessions = new HashMap<>();
+    
+    /** Source of resume tokens */
+    private static final SecureRandom tokenRandom = new SecureRandom();
+    
+    /** Persistent per-player statistics, or null if the store could not be opened */
+    private static PlayerStatsStore playerStats;
+    
+    /** Time the current match started (epoch millis) */
+    private static long matchStartMillis;
+    
+    /** Squares that have been held by more than one team during the current match */
+    private static boolean[][] contestedCells = new boolean[ROWS][COLS];
+    
+    /** Squares claimed per player in the current match (name to {team index, claims}) */
+    private static Map<String, int[]> playerClaims = new LinkedHashMap<>();
+    
+    /** Launcher connections watching the team occupancy before joining (guarded by clients) */
+    private static final Set<ClientHandler> lobbySubscribers = new HashSet<>();
+    
+    /** Last TEAM_STATUS pushed to the lobby subscribers (guarded by clients) */
+    private static String lastTeamStatus;
+    
+    /** Streams the match to spectators, or null if spectating is off */
+    private static SpectatorHub spectatorHub;
+    
+    /** Socket the LAN discovery beacons are sent from, or null if beacons are off */
+    private static MulticastSocket beaconSocket;
+    
+    /** Game address ("host port") of the latest standby, sent to players for failover, or null */
+    private static volatile String standbyAddress;
+    
+    /**
+     * Main method that initializes and starts the game server.
+     * Sets up the initial board state and listens for client connections.
+     *
+     * @param args Optional port to listen on
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            port = Integer.parseInt(args[0]);
+        }
+        resetBoard();
+        recoverMatch();
+        if (PRIMARY_ADDRESS != null) {
+            followPrimary();
+        }
+        try {
+            matchArchive = new MatchArchive(Paths.get(ARCHIVE_DIR), ROWS, COLS, TEAMS);
+        } catch (IOException e) {
+            System.out.println("Match archive unavailable: " + e.getMessage());
+        }
+        try {
+            playerStats = new PlayerStatsStore(Paths.get(PLAYERS_DIR));
+            Runtime.getRuntime().addShutdownHook(new Thread(playerStats::close, "player-stats-shutdown"));
+        } catch (IOException e) {
+            System.out.println("Player stats unavailable: " + e.getMessage());
+        }
+        if (SPECTATOR_PORT > 0) {
+            try {
+                spectatorHub = new SpectatorHub(SPECTATOR_PORT, SPECTATOR_DELAY_MS, encodeSnapshot());
+                new Thread(spectatorHub, "spectator-hub").start();
+                System.out.println("Spectators can watch on port " + SPECTATOR_PORT +
+                        (SPECTATOR_DELAY_MS > 0 ? " with a " + SPECTATOR_DELAY_MS + " ms delay" : ""));
+            } catch (IOException e) {
+                System.out.println("Spectating unavailable: " + e.getMessage());
+            }
+        }
+        if (Boolean.getBoolean("cmpt371.recordMatches")) {
+            try {
+                matchRecorder = new MatchRecorder(Paths.get(RECORDINGS_DIR));
+            } catch (IOException e) {
+                System.out.println("Match recording unavailable: " + e.getMessage());
+            }
+        }
+        timerService.scheduleAtFixedRate(GameServer::pingClients,
+                PING_INTERVAL_SECONDS, PING_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        metricsService.scheduleAtFixedRate(GameServer::dumpMetrics,
+                METRICS_DUMP_INTERVAL_SECONDS, METRICS_DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        metricsService.scheduleAtFixedRate(GameServer::snapshotMatch,
+                SNAPSHOT_INTERVAL_SECONDS, SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        if (REPLICATION_PORT > 0 && REPLICATION_SECRET.isEmpty()) {
+            System.out.println("Replication disabled: set -Dcmpt371.replicationSecret on the primary and its standbys");
+        } else if (REPLICATION_PORT > 0 && matchLog != null) {
+            Thread replicationThread = new Thread(GameServer::acceptStandbys, "replication-accept");
+            replicationThread.setDaemon(true);
+            replicationThread.start();
+        }
+        if (BEACON_INTERVAL_MS > 0) {
+            try {
+                beaconSocket = new MulticastSocket();
+                beaconSocket.setTimeToLive(1);
+                metricsService.scheduleAtFixedRate(GameServer::sendBeacon,
+                        0, BEACON_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                System.out.println("LAN discovery beacons unavailable: " + e.getMessage());
+            }
+        }
+        if (BOT_FILL > 0) {
+            botManager = new BotManager(BOT_FILL, TEAM_COUNT, winRules, GameServer::getTeamSizes,
+                    BOT_THREADS, BOT_TICK_MS, BOT_THINK_MS);
+            botManager.start();
+            System.out.println("Bots fill teams up to " + BOT_FILL + " players");
+        }
+        System.out.println("Game Server started on port " + port + "...");
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            while (true) {
+                // Accept new client connection
+                Socket clientSocket = serverSocket.accept();
+                String clientId = nextClientId();
+                metrics.connectionAccepted();
+                System.out.println("New client connected: " + clientSocket.getInetAddress() + ":" + 
+                        clientSocket.getPort() + " as " + clientId);
+
+                // Check if server is at capacity, and register the new client handler in the same step.
+                // It is registered before it runs, so its own changes to clients (e.g. entering the lobby) come after
+                ClientHandler clientHandler = new ClientHandler(clientSocket, clientId);
+                synchronized (clients) {
+                    if (isServerFull()) {
+                        metrics.serverFullRejected();
+                        try (DataOutputStream out = new DataOutputStream(clientSocket.getOutputStream())) {
+                            out.writeUTF("SERVER_FULL");
+                            clientSocket.close();
+                        }
+                        continue;
+                    }
+                    clients.put(clientId, clientHandler);
+                }
+
+                ServerEvents.ClientConnect connectEvent = new ServerEvents.ClientConnect();
+                if (connectEvent.shouldCommit()) {
+                    connectEvent.clientId = clientId;
+                    connectEvent.address = clientSocket.getInetAddress() + ":" + clientSocket.getPort();
+                    connectEvent.commit();
+                }
+                executorService.submit(clientHandler);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Connects a client running in this JVM (the host's own client) through in-memory queues
+     * instead of a localhost socket. The player then joins with PLAYER_INFO as usual.
+     *
+     * @return The client's end of the connection, or null if the server is full
+     */
+    public static LoopbackConnection connectLoopback() {
+        return connectLoopback(false);
+    }
+
+    /**
+     * Connects a bot in-process. Its handler is marked as a bot, so it may use a bot name, does
+     * not count against the connection limit and can be displaced by a person.
+     *
+     * @return The bot's end of the connection, or null if the server is full
+     */
+    static LoopbackConnection connectBot() {
+        return connectLoopback(true);
+    }
+
+    /**
+     * Connects an in-process client.
+     *
+     * @param bot true if the client is a bot
+     * @return The client's end of the connection, or null if the server is full
+     */
+    private static LoopbackConnection connectLoopback(boolean bot) {
+        LoopbackConnection loopback = new LoopbackConnection();
+        String clientId = nextClientId();
+        ClientHandler clientHandler = new ClientHandler(loopback, clientId, bot);
+        synchronized (clients) {
+            if (isServerFull()) {
+                metrics.serverFullRejected();
+                return null;
+            }
+            metrics.connectionAccepted();
+            clients.put(clientId, clientHandler);
+        }
+        System.out.println("New in-process client connected as " + clientId);
+        executorService.submit(clientHandler);
+        return loopback;
+    }
+
+    /**
+     * Generates the next unique client ID.
+     * Locked because in-process clients connect from other threads than the accept loop.
+     *
+     * @return The client ID
+     */
+    private static String nextClientId() {
+        synchronized (clients) {
+            return "Client_" + clientCounter++;
+        }
+    }
+
+    /**
+     * Checks whether another player may connect. Bots do not take up connection slots,
+     * since a player joining a team that bots filled takes a bot's place.
+     * Must be called while holding the clients lock.
+     *
+     * @return true if every player slot is taken
+     */
+    private static boolean isServerFull() {
+        int bots = 0;
+        for (ClientHandler clientHandler : clients.values()) {
+            if (clientHandler.bot) {
+                bots++;
+            }
+        }
+        return clients.size() - bots >= MAX_TOTAL_PLAYERS;
+    }
+
+    /**
+     * Gets the current size of each team, bots and reserved slots included.
+     *
+     * @return The number of players on each team, in team order
+     */
+    static int[] getTeamSizes() {
+        synchronized (GameServer.class) {
+            int[] sizes = new int[TEAM_COUNT];
+            for (int team = 0; team < TEAM_COUNT; team++) {
+                sizes[team] = teamPlayers.get(team).size();
+            }
+            return sizes;
+        }
+    }
+
+    /**
+     * Counts the people on a team, leaving out bots, for the occupancy shown to launchers.
+     * Bot names are reserved for bots (see {@link BotManager#isBotName}), so names tell them apart.
+     * Must be called while holding the GameServer.class lock.
+     *
+     * @param team The team index
+     * @return The number of players on the team that are not bots
+     */
+    private static int countPeople(int team) {
+        if (botManager == null) {
+            return teamPlayers.get(team).size();
+        }
+        int count = 0;
+        for (String name : teamPlayers.get(team)) {
+            if (!botManager.isBot(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Resets the game board and player state to initial values.
+     * Called at server start and before a replay; a finished game continues with
+     * {@link #startNewRound()}, which keeps the players.
+     */
+    private static void resetBoard() {
+        // Reset grid state
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                boardState[row][col] = "UNCLAIMED";
+                if (heldState[row][col] == null) {
+                    heldState[row][col] = new HashMap<>();
+                } else {
+                    heldState[row][col].clear();
+                }
+                contestedCells[row][col] = false;
+                cancelClaimTimer(row, col);
+            }
+        }
+        winRules.reset();
+        matchStartMillis = System.currentTimeMillis();
+        playerClaims.clear();
+        
+        // Reset team data
+        for (List<String> players : teamPlayers) {
+            players.clear();
+        }
+        
+        // Reset client tracking
+        clients.clear();
+        clientCounter = 0;
+        
+        // Suspended sessions belonged to the old rosters
+        synchronized (GameServer.class) {
+            for (ClientHandler suspended : suspendedSessions.values()) {
+                suspended.resumeExpiry.cancel(false);
+            }
+            suspendedSessions.clear();
+        }
+        
+        // Record the reset and compact the log down to the empty board
+        if (matchLog != null) {
+            matchLog.logReset();
+            snapshotMatch();
+        }
+    }
+
+    /**
+     * Opens the match log and rebuilds the board and rosters from the last snapshot and log tail.
+     * Recovered players get their team slot back if they reconnect with the same name
+     * within RESERVED_SLOT_SECONDS. Holds are not recovered because they end with the
+     * connections that made them. If the log cannot be opened the server runs without it.
+     */
+    private static void recoverMatch() {
+        try {
+            long start = System.nanoTime();
+            matchLog = new MatchLog(Paths.get(MATCH_DATA_DIR));
+            int records = matchLog.recover(new RecoveryListener());
+            System.out.println("Recovered match from " + MATCH_DATA_DIR + " (" + records + " log records, " +
+                    reservedSlots.size() + " players) in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            // A standby replaces this state from its primary and reserves the slots when it takes over
+            if (!reservedSlots.isEmpty() && PRIMARY_ADDRESS == null) {
+                timerService.schedule(GameServer::expireReservedSlots, RESERVED_SLOT_SECONDS, TimeUnit.SECONDS);
+            }
+            snapshotMatch();
+        } catch (IOException e) {
+            System.out.println("Match log unavailable, running without crash recovery: " + e.getMessage());
+            matchLog = null;
+        }
+    }
+
+    /**
+     * Runs this server as a hot standby: applies the primary's match log stream to the local board
+     * and rosters until the primary's records and heartbeats stop for FAILOVER_TIMEOUT_MS, then
+     * returns so the server starts taking players. Replicated players get their team slot back
+     * when they reconnect with the same name, as after a crash recovery. Until a first primary
+     * is reached, the standby keeps retrying.
+     */
+    private static void followPrimary() {
+        int colon = PRIMARY_ADDRESS.lastIndexOf(':');
+        String host = PRIMARY_ADDRESS.substring(0, colon);
+        int replicationPort = Integer.parseInt(PRIMARY_ADDRESS.substring(colon + 1));
+        boolean followed = false;
+        System.out.println("Standing by for primary " + PRIMARY_ADDRESS);
+        while (true) {
+            try (Socket primary = new Socket(host, replicationPort)) {
+                primary.setSoTimeout(FAILOVER_TIMEOUT_MS);
+                // Prove we may follow, then tell the primary where its players can find this server
+                DataOutputStream out = new DataOutputStream(primary.getOutputStream());
+                out.writeUTF(REPLICATION_SECRET);
+                out.writeInt(port);
+                out.flush();
+                followed = true;
+                System.out.println("Following primary " + PRIMARY_ADDRESS);
+                MatchLog.follow(new DataInputStream(new BufferedInputStream(primary.getInputStream())),
+                        new RecoveryListener());
+            } catch (IOException e) {
+                if (followed) {
+                    System.out.println("Primary lost (" + e.getMessage() + "), taking over with " +
+                            reservedSlots.size() + " players");
+                    break;
+                }
+            }
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        // Persist the replicated state and hold the players' slots while they reconnect
+        snapshotMatch();
+        if (!reservedSlots.isEmpty()) {
+            timerService.schedule(GameServer::expireReservedSlots, RESERVED_SLOT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Accepts standby servers on REPLICATION_PORT and ships the match log to each of them,
+     * starting from a snapshot. Players are told the address of the latest standby so they
+     * can reconnect there if this server goes away. A standby must first send REPLICATION_SECRET;
+     * anything else is dropped before it sees the log or changes the advertised address.
+     */
+    private static void acceptStandbys() {
+        try (ServerSocket serverSocket = new ServerSocket(REPLICATION_PORT, 50, REPLICATION_BIND == null ?
+                InetAddress.getLoopbackAddress() : InetAddress.getByName(REPLICATION_BIND))) {
+            System.out.println("Standbys can replicate from " + serverSocket.getLocalSocketAddress());
+            byte[] secret = REPLICATION_SECRET.getBytes(StandardCharsets.UTF_8);
+            while (true) {
+                Socket standby = serverSocket.accept();
+                try {
+                    standby.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                    DataInputStream in = new DataInputStream(standby.getInputStream());
+                    // Constant-time comparison, so the secret cannot be guessed byte by byte
+                    if (!MessageDigest.isEqual(secret, in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                        System.out.println("Standby " + standby.getInetAddress().getHostAddress() +
+                                " rejected: wrong replication secret");
+                        standby.close();
+                        continue;
+                    }
+                    int standbyPort = in.readInt();
+                    captureMatch(snapshot -> matchLog.attachReplica(standby, snapshot, REPLICATION_HEARTBEAT_MS));
+                    String address = standby.getInetAddress().getHostAddress() + " " + standbyPort;
+                    System.out.println("Standby " + address + " attached");
+                    synchronized (clients) {
+                        standbyAddress = address;
+                        for (ClientHandler clientHandler : clients.values()) {
+                            if (clientHandler.getTeam() != null) {
+                                clientHandler.sendMessage("STANDBY " + address);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("Standby handshake failed: " + e.getMessage());
+                    standby.close();
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Replication unavailable: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Puts the server into replay mode with an empty board.
+     * Claim timers are no longer scheduled; the replay calls expireClaimTimer instead.
+     */
+    static void startReplay() {
+        replayMode = true;
+        lastGameOver = null;
+        resetBoard();
+    }
+
+    /**
+     * Registers a replayed player so it receives broadcasts like a connected client.
+     *
+     * @param client The replayed player's handler
+     */
+    static void addReplayClient(ClientHandler client) {
+        synchronized (clients) {
+            clients.put(client.getClientId(), client);
+        }
+    }
+
+    /**
+     * Gets the result of the last finished game.
+     *
+     * @return The winner followed by the final GAME_STATE, or null if no game has finished
+     */
+    static String getLastGameOver() {
+        return lastGameOver;
+    }
+
+    /**
+     * Releases team slots of recovered players that did not reconnect in time.
+     */
+    private static void expireReservedSlots() {
+        boolean changed;
+        synchronized (GameServer.class) {
+            changed = !reservedSlots.isEmpty();
+            for (Map.Entry<String, String> entry : reservedSlots.entrySet()) {
+                teamPlayers.get(teamIndex(entry.getValue())).remove(entry.getKey());
+                if (matchLog != null) {
+                    matchLog.logLeave(entry.getKey(), teamIndex(entry.getValue()));
+                }
+            }
+            reservedSlots.clear();
+        }
+        if (changed) {
+            broadcastTeamLists();
+        }
+    }
+
+    /**
+     * Queues a snapshot of the board and rosters, which lets the match log drop older records.
+     * Taken under the board and roster locks so it lines up exactly with the logged transitions.
+     */
+    private static void snapshotMatch() {
+        if (matchLog == null) {
+            return;
+        }
+        captureMatch(matchLog::snapshot);
+    }
+
+    /**
+     * Builds a snapshot of the board and rosters and hands it on while still holding the board and
+     * roster locks, so nothing can be logged between the snapshot and its use.
+     *
+     * @param target Receives the snapshot, under the locks
+     */
+    private static void captureMatch(Consumer<MatchLog.Snapshot> target) {
+        int[][] board = new int[ROWS][COLS];
+        synchronized (boardState) {
+            for (int row = 0; row < ROWS; row++) {
+                for (int col = 0; col < COLS; col++) {
+                    board[row][col] = teamIndex(boardState[row][col]);
+                }
+            }
+            MatchLog.Snapshot snapshot = new MatchLog.Snapshot(board);
+            synchronized (GameServer.class) {
+                for (int team = 0; team < TEAM_COUNT; team++) {
+                    for (String name : teamPlayers.get(team)) {
+                        snapshot.addPlayer(name, team);
+                    }
+                }
+                target.accept(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Takes a suspended session out of the grace period so a new connection can continue it.
+     * Only the session's resume token can do that; knowing the player's name is not enough.
+     *
+     * @param token The session's resume token
+     * @return The dropped player's handler, or null if no such session is suspended
+     */
+    private static ClientHandler takeSuspendedSession(String token) {
+        synchronized (GameServer.class) {
+            ClientHandler suspended = suspendedSessions.remove(token);
+            if (suspended != null) {
+                suspended.resumeExpiry.cancel(false);
+            }
+            return suspended;
+        }
+    }
+
+    /**
+     * Checks whether a dropped player with this name is waiting to resume.
+     * Must be called while holding the GameServer.class lock.
+     *
+     * @param playerName The player name
+     * @return true if a suspended session belongs to a player of that name
+     */
+    private static boolean isSuspendedName(String playerName) {
+        for (ClientHandler suspended : suspendedSessions.values()) {
+            if (suspended.getPlayerName().equals(playerName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the team slot of a dropped player that did not resume in time.
+     *
+     * @param token The session's resume token
+     */
+    private static void expireSuspendedSession(String token) {
+        synchronized (clients) {
+            ClientHandler suspended;
+            synchronized (GameServer.class) {
+                suspended = suspendedSessions.remove(token);
+            }
+            if (suspended != null) {
+                metrics.sessionExpired();
+                suspended.leaveTeam();
+            }
+        }
+    }
+
+    /**
+     * Creates a new random resume token.
+     *
+     * @return The token as 32 hex digits
+     */
+    private static String newResumeToken() {
+        byte[] bytes = new byte[16];
+        tokenRandom.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Converts a team identifier to its index in TEAMS.
+     *
+     * @param team The team identifier (or "UNCLAIMED")
+     * @return The team index, or MatchLog.NO_TEAM if it is not a team in this match
+     */
+    private static int teamIndex(String team) {
+        int index = Teams.ordinal(team);
+        return index >= 0 && index < TEAM_COUNT ? index : MatchLog.NO_TEAM;
+    }
+
+    /**
+     * Broadcasts the current game board state to all connected clients.
+     *
+     * @throws IOException If there's an error sending the game state
+     */
+    private static void broadcastGameState() throws IOException {
+        broadcast(encodeGameState(boardState));
+    }
+
+    /**
+     * Sends a message to every player that has completed the handshake.
+     * Game events are numbered and kept in the event history so resuming clients can catch up.
+     * Chat and roster messages are not: they travel in the low-priority lane, behind later game
+     * events, so numbering them would let a client's highest number skip events it never got.
+     * A resuming client is sent the current rosters instead.
+     * Records the wait for the clients lock and the total fan-out time.
+     *
+     * @param message The message to broadcast
+     */
+    private static void broadcast(String message) {
+        ServerEvents.Broadcast event = new ServerEvents.Broadcast();
+        event.begin();
+        long waitStart = System.nanoTime();
+        int recipients = 0;
+        String framed;
+        synchronized (clients) {
+            long start = System.nanoTime();
+            metrics.clientsLockWaited(start - waitStart);
+            framed = OutboundQueue.isLowPriority(message) ? message : eventHistory.append(message);
+            for (ClientHandler clientHandler : clients.values()) {
+                if (clientHandler.getTeam() != null) {
+                    clientHandler.sendMessage(framed);
+                    recipients++;
+                }
+            }
+            if (spectatorHub != null) {
+                spectatorHub.publish(message);
+            }
+            metrics.broadcastCompleted(System.nanoTime() - start);
+        }
+        if (event.shouldCommit()) {
+            int space = message.indexOf(' ');
+            event.messageType = space < 0 ? message : message.substring(0, space);
+            event.recipients = recipients;
+            // What each player is sent: the SEQ prefix, the UTF-8 text and writeUTF's two byte length
+            event.bytes = framed.getBytes(StandardCharsets.UTF_8).length + 2;
+            event.commit();
+        }
+    }
+
+    /**
+     * Encodes the board dimensions and winning run length as a BOARD_CONFIG message.
+     * Clients size their grid from it before the first GAME_STATE.
+     *
+     * @return The BOARD_CONFIG message
+     */
+    private static String encodeBoardConfig() {
+        return "BOARD_CONFIG " + ROWS + " " + COLS + " " + WIN_LENGTH;
+    }
+
+    /**
+     * Encodes a board as a GAME_STATE message.
+     *
+     * @param gameState The board state to encode
+     * @return The GAME_STATE message
+     */
+    private static String encodeGameState(String[][] gameState) {
+        StringBuilder sb = new StringBuilder("GAME_STATE ");
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                sb.append(gameState[row][col]).append(" ");
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Processes a client's request to hold (start claiming) a grid square.
+     * Implements the logic for tracking which players are holding each square
+     * and manages the claim timer.
+     *
+     * @param client The client handler for the player making the request
+     * @param row The row of the square
+     * @param col The column of the square
+     * @throws IOException If there's an error broadcasting updates
+     */
+    private static void handleHoldRequest(ClientHandler client, int row, int col) throws IOException {
+        // Only allocated while a recording has the event enabled
+        ServerEvents.HoldRequest event = HOLD_REQUEST_EVENT.isEnabled() ? new ServerEvents.HoldRequest() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long waitStart = System.nanoTime();
+        synchronized (boardState) {
+            metrics.boardLockWaited(System.nanoTime() - waitStart);
+            if (matchRecorder != null) {
+                matchRecorder.recordHold(client, "HOLD_START", row, col);
+            }
+            // Only allow interaction with unclaimed squares the player is not already holding
+            if ("UNCLAIMED".equals(boardState[row][col]) && !client.isHolding(row, col)) {
+                String team = client.getTeam();
+                Map<String, Integer> holdMap = heldState[row][col];
+                
+                // Increment the count for this team
+                int newCount = holdMap.getOrDefault(team, 0) + 1;
+                holdMap.put(team, newCount);
+                client.startHolding(row, col);
+                if (matchLog != null) {
+                    matchLog.logHold(row, col, teamIndex(team));
+                }
+
+                // If this is the first player from this team to hold the square
+                if (newCount == 1) {
+                    broadcastHoldInfo(row, col, team);
+                    
+                    // Manage the claim timer based on team count
+                    if (holdMap.size() == 1) {
+                        // Only one team is holding - start claim timer
+                        scheduleClaimTimer(row, col);
+                    } else if (holdMap.size() > 1) {
+                        // Multiple teams are holding (tug-of-war) - cancel timer
+                        contestedCells[row][col] = true;
+                        cancelClaimTimer(row, col);
+                    }
+                }
+            }
+        }
+        commitCellEvent(event, row, col, client.getTeam(), client.getClientId());
+    }
+
+    /**
+     * Processes a client's request to release a grid square they were holding.
+     * Handles the "tug-of-war" mechanics when multiple teams contest a square.
+     *
+     * @param client The client handler for the player making the request
+     * @param row The row of the square
+     * @param col The column of the square
+     * @throws IOException If there's an error broadcasting updates
+     */
+    private static void handleReleaseRequest(ClientHandler client, int row, int col) throws IOException {
+        ServerEvents.ReleaseRequest event = RELEASE_REQUEST_EVENT.isEnabled() ? new ServerEvents.ReleaseRequest() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long waitStart = System.nanoTime();
+        // Committed in finally, so ignored releases and failed broadcasts are recorded too
+        try {
+            synchronized (boardState) {
+                metrics.boardLockWaited(System.nanoTime() - waitStart);
+                if (matchRecorder != null) {
+                    matchRecorder.recordHold(client, "HOLD_END", row, col);
+                }
+                String team = client.getTeam();
+                Map<String, Integer> holdMap = heldState[row][col];
+            
+                // Only the player's own holds can be released
+                if (!client.isHolding(row, col)) {
+                    return;
+                }
+                long heldNanos = client.stopHolding(row, col);
+                if (playerStats != null) {
+                    playerStats.recordHold(client.getPlayerName(), heldNanos / 1_000_000);
+                }
+            
+                if (holdMap.containsKey(team)) {
+                    if (matchLog != null) {
+                        matchLog.logRelease(row, col, teamIndex(team));
+                    }
+                    int count = holdMap.get(team);
+                    if (count > 1) {
+                        // Multiple players from this team are holding - decrement count
+                        holdMap.put(team, count - 1);
+                    } else {
+                        // Last player from this team is releasing - remove team
+                        holdMap.remove(team);
+                        broadcastReleaseInfo(row, col, team);
+                    
+                        // Handle contested square resolution (tug-of-war)
+                        if (holdMap.size() == 1) {
+                            // Only one team left - they win the square immediately
+                            String winningTeam = holdMap.keySet().iterator().next();
+                            boardState[row][col] = winningTeam;
+                            heldState[row][col].clear();
+                            if (matchLog != null) {
+                                matchLog.logClaim(row, col, teamIndex(winningTeam));
+                            }
+                            cancelClaimTimer(row, col);
+                            emitClaimAwarded(row, col, winningTeam, client.getClientId(), "CONTEST");
+                            creditClaim(row, col, winningTeam);
+                            broadcastGameState();
+                            checkWinCondition(row, col, winningTeam);
+                            broadcastTeamScores();
+                        } else if (holdMap.size() == 0) {
+                            // No teams holding - cancel any timer
+                            cancelClaimTimer(row, col);
+                        } else {
+                            // Two or more teams still holding - the square stays contested
+                            cancelClaimTimer(row, col);
+                        }
+                    }
+                }
+            }
+        } finally {
+            commitCellEvent(event, row, col, client.getTeam(), client.getClientId());
+        }
+    }
+
+    /**
+     * Fills in the cell fields of a flight recorder event and commits it if recording is enabled.
+     *
+     * @param event The event to commit, or null if the event was not enabled when it began
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @param team The team involved
+     * @param clientId The client involved, or null if none
+     */
+    private static void commitCellEvent(ServerEvents.CellEvent event, int row, int col, String team, String clientId) {
+        if (event != null && event.shouldCommit()) {
+            event.row = row;
+            event.col = col;
+            event.team = team;
+            event.clientId = clientId;
+            event.commit();
+        }
+    }
+
+    /**
+     * Credits a claimed square to every player of the winning team who was holding it.
+     * Must be called while holding the boardState lock.
+     *
+     * @param row The row of the claimed square
+     * @param col The column of the claimed square
+     * @param team The team that was awarded the square
+     */
+    private static void creditClaim(int row, int col, String team) {
+        synchronized (clients) {
+            for (ClientHandler clientHandler : clients.values()) {
+                if (team.equals(clientHandler.getTeam()) && clientHandler.isHolding(row, col)) {
+                    int[] claims = playerClaims.computeIfAbsent(clientHandler.getPlayerName(),
+                            name -> new int[]{teamIndex(team), 0});
+                    claims[1]++;
+                    if (playerStats != null) {
+                        playerStats.recordClaim(clientHandler.getPlayerName(), contestedCells[row][col]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a finished game to the stats of every player on a team.
+     * Must be called while holding the boardState lock, before the board is reset.
+     *
+     * @param winner The winning team or "TIE"
+     */
+    private static void recordGameStats(String winner) {
+        if (playerStats == null) {
+            return;
+        }
+        synchronized (clients) {
+            for (ClientHandler clientHandler : clients.values()) {
+                if (clientHandler.getTeam() != null) {
+                    playerStats.recordGameEnd(clientHandler.getPlayerName(), winner.equals(clientHandler.getTeam()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the finished match for the archive.
+     * Must be called while holding the boardState lock, before the board is reset.
+     *
+     * @param winner The winning team or "TIE"
+     */
+    private static void archiveMatch(String winner) {
+        if (matchArchive == null) {
+            return;
+        }
+        int[][] board = new int[ROWS][COLS];
+        int contested = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                board[row][col] = teamIndex(boardState[row][col]);
+                if (contestedCells[row][col]) {
+                    contested++;
+                }
+            }
+        }
+        long now = System.currentTimeMillis();
+        int winnerIndex = "TIE".equals(winner) ? MatchArchive.TIE : teamIndex(winner);
+        MatchArchive.MatchSummary summary = new MatchArchive.MatchSummary(winnerIndex, now,
+                (int) (now - matchStartMillis), board, contested);
+        for (Map.Entry<String, int[]> entry : playerClaims.entrySet()) {
+            summary.addPlayer(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        matchArchive.append(summary);
+    }
+
+    /**
+     * Emits a ClaimAwarded flight recorder event.
+     *
+     * @param row The row of the claimed square
+     * @param col The column of the claimed square
+     * @param team The team that was awarded the square
+     * @param clientId The client whose action decided the claim, or null for timer claims
+     * @param reason How the claim was decided ("TIMER" or "CONTEST")
+     */
+    private static void emitClaimAwarded(int row, int col, String team, String clientId, String reason) {
+        ServerEvents.ClaimAwarded event = new ServerEvents.ClaimAwarded();
+        if (event.isEnabled()) {
+            event.reason = reason;
+            commitCellEvent(event, row, col, team, clientId);
+        }
+    }
+
+    /**
+     * Schedules a timer for claiming a square after the required hold period (2 seconds).
+     * The timer only executes if one team is still holding when it expires.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     */
+    private static void scheduleClaimTimer(int row, int col) {
+        if (replayMode) {
+            // Timer expirations are replayed from the recording instead
+            return;
+        }
+        long dueAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        ScheduledFuture<?> future = timerService.schedule(() -> {
+            metrics.claimTimerFired(System.nanoTime() - dueAt);
+            expireClaimTimer(row, col);
+        }, 2, TimeUnit.SECONDS);
+        
+        // Store the timer for potential cancellation
+        claimTimers[row][col] = future;
+    }
+
+    /**
+     * Runs an expired claim timer: awards the square if exactly one team is still holding it.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     */
+    static void expireClaimTimer(int row, int col) {
+        long waitStart = System.nanoTime();
+        synchronized (boardState) {
+            metrics.boardLockWaited(System.nanoTime() - waitStart);
+            if (matchRecorder != null) {
+                matchRecorder.recordTimer(row, col);
+            }
+            Map<String, Integer> holdMap = heldState[row][col];
+            if (holdMap.size() == 1) {
+                // Timer completed - award square to the holding team
+                String team = holdMap.keySet().iterator().next();
+                boardState[row][col] = team;
+                heldState[row][col].clear();
+                if (matchLog != null) {
+                    matchLog.logClaim(row, col, teamIndex(team));
+                }
+                emitClaimAwarded(row, col, team, null, "TIMER");
+                creditClaim(row, col, team);
+                try {
+                    // Broadcast updates and check for win
+                    broadcastGameState();
+                    checkWinCondition(row, col, team);
+                    broadcastTeamScores();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels an active claim timer for a grid square.
+     * Used when a square becomes contested or when a claim completes.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     */
+    private static void cancelClaimTimer(int row, int col) {
+        ScheduledFuture<?> future = claimTimers[row][col];
+        claimTimers[row][col] = null;
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Broadcasts to all clients that a team has started holding a square.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     * @param team The team that started holding
+     */
+    private static void broadcastHoldInfo(int row, int col, String team) {
+        broadcast("HOLD_START " + row + " " + col + " " + team);
+    }
+
+    /**
+     * Broadcasts to all clients that a team has released a square.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     * @param team The team that released
+     */
+    private static void broadcastReleaseInfo(int row, int col, String team) {
+        broadcast("HOLD_END " + row + " " + col + " " + team);
+    }
+
+    /**
+     * Records a claim in the win rules and checks if it ended the game.
+     * A team wins by completing one of the winning shapes (by default WIN_LENGTH in a row
+     * in any direction) or by having the highest score when the board is full.
+     *
+     * @param row The row of the claim that triggered the check
+     * @param col The column of the claim that triggered the check
+     * @param team The team that made the claim
+     */
+    private static void checkWinCondition(int row, int col, String team) {
+        ServerEvents.WinCheck event = new ServerEvents.WinCheck();
+        event.begin();
+        
+        // Only the shapes through the claimed square can have been completed
+        String winner = null;
+        if (winRules.claim(row, col, teamIndex(team))) {
+            winner = team;
+        } else if (winRules.isFull()) {
+            // Board is full - the highest score wins, unless more than one team has it
+            int leader = winRules.getLeader();
+            winner = leader >= 0 ? TEAMS[leader] : "TIE";
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.winner = winner;
+            commitCellEvent(event, row, col, team, null);
+        }
+
+        if (winner != null) {
+            lastGameOver = winner + " " + encodeGameState(boardState);
+            if (matchRecorder != null) {
+                matchRecorder.recordGameOver(lastGameOver);
+            }
+            archiveMatch(winner);
+            recordGameStats(winner);
+            broadcastWinCondition(winner);
+            startNewRound();
+        }
+    }
+
+    /**
+     * Starts the next game on the same connections. Players keep their teams; the board, holds
+     * and claim timers are cleared in place, and a single NEW_ROUND broadcast tells every client
+     * to clear its board. Called with the board lock held, like the claim that ended the game.
+     */
+    private static void startNewRound() {
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                boardState[row][col] = "UNCLAIMED";
+                heldState[row][col].clear();
+                contestedCells[row][col] = false;
+                cancelClaimTimer(row, col);
+            }
+        }
+        winRules.reset();
+        matchStartMillis = System.currentTimeMillis();
+        playerClaims.clear();
+        synchronized (clients) {
+            for (ClientHandler clientHandler : clients.values()) {
+                clientHandler.clearHolds();
+            }
+        }
+        if (matchLog != null) {
+            matchLog.logNewRound();
+            snapshotMatch();
+        }
+        broadcast("NEW_ROUND");
+    }
+
+    /**
+     * Broadcasts the game over message to all clients with the winner information.
+     *
+     * @param winner The winning team, or "TIE"
+     */
+    private static void broadcastWinCondition(String winner) {
+        broadcast("GAME_OVER " + winner);
+    }
+
+    /**
+     * Broadcasts the current team scores (longest consecutive sequences, see WinRules.getScore) to all clients.
+     */
+    private static void broadcastTeamScores() {
+        broadcast(encodeTeamScores());
+    }
+
+    /**
+     * Encodes the score of each team as a TEAM_SCORES message.
+     *
+     * @return The TEAM_SCORES message
+     */
+    private static String encodeTeamScores() {
+        StringBuilder sb = new StringBuilder("TEAM_SCORES");
+        for (int team = 0; team < TEAM_COUNT; team++) {
+            sb.append(' ').append(winRules.getScore(team));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sends a PING carrying the current server time to every client.
+     * Clients echo it back as PONG so the server can measure each player's round-trip time.
+     */
+    private static void pingClients() {
+        synchronized (clients) {
+            for (ClientHandler clientHandler : clients.values()) {
+                // Only ping players that have completed the handshake
+                if (clientHandler.getTeam() != null) {
+                    clientHandler.sendMessage("PING " + System.nanoTime());
+                }
+            }
+            // Lobby connections answer too, which keeps them from idling out
+            for (ClientHandler subscriber : lobbySubscribers) {
+                subscriber.sendMessage("PING " + System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Broadcasts the current team player lists to all clients,
+     * and the new team occupancy to the lobby.
+     */
+    private static void broadcastTeamLists() {
+        broadcast(encodeTeamLists());
+        publishTeamStatus();
+    }
+
+    /**
+     * Pushes the team occupancy to every lobby subscriber if it changed since the last push.
+     */
+    private static void publishTeamStatus() {
+        synchronized (clients) {
+            String status = encodeTeamStatus();
+            if (status.equals(lastTeamStatus)) {
+                return;
+            }
+            lastTeamStatus = status;
+            for (ClientHandler subscriber : lobbySubscribers) {
+                subscriber.sendMessage(status);
+            }
+        }
+    }
+
+    /**
+     * Encodes the team size limit and the number of players on each team as a TEAM_STATUS message.
+     *
+     * @return The TEAM_STATUS message
+     */
+    private static String encodeTeamStatus() {
+        StringBuilder sb = new StringBuilder("TEAM_STATUS ").append(MAX_PLAYERS_PER_TEAM);
+        synchronized (GameServer.class) {
+            for (int team = 0; team < TEAM_COUNT; team++) {
+                sb.append(' ').append(countPeople(team));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Encodes the team rosters as a TEAM_LISTS message: one comma-separated list per team,
+     * in team order, with an empty field for an empty team.
+     *
+     * @return The TEAM_LISTS message
+     */
+    private static String encodeTeamLists() {
+        StringBuilder sb = new StringBuilder("TEAM_LISTS");
+        synchronized (GameServer.class) {
+            for (List<String> players : teamPlayers) {
+                sb.append(' ').append(String.join(",", players));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Encodes which teams are holding each square as an INITIAL_HELD_STATE message.
+     *
+     * @return The INITIAL_HELD_STATE message
+     */
+    static String encodeHeldState() {
+        StringBuilder sb = new StringBuilder("INITIAL_HELD_STATE ");
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLS; col++) {
+                Map<String, Integer> holdMap = heldState[row][col];
+                if (holdMap.isEmpty()) {
+                    sb.append("NONE ");
+                } else {
+                    sb.append(String.join(",", holdMap.keySet())).append(" ");
+                }
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Builds the messages that bring a lagging client fully up to date.
+     * Called from writer threads, so the board is read under its lock; the rosters take
+     * GameServer.class inside it, in the usual lock order.
+     *
+     * @return BOARD_CONFIG, GAME_STATE, INITIAL_HELD_STATE, TEAM_SCORES and TEAM_LISTS messages
+     */
+    private static List<String> encodeSnapshot() {
+        synchronized (boardState) {
+            return List.of(encodeBoardConfig(), encodeGameState(boardState), encodeHeldState(), encodeTeamScores(), encodeTeamLists());
+        }
+    }
+
+    /**
+     * Sends one LAN discovery beacon with the room name, ports and team occupancy.
+     * Launchers on the network list the server from these, so they need no TCP probe.
+     */
+    private static void sendBeacon() {
+        String beacon;
+        synchronized (GameServer.class) {
+            int[] counts = new int[TEAM_COUNT];
+            for (int team = 0; team < TEAM_COUNT; team++) {
+                counts[team] = countPeople(team);
+            }
+            beacon = LanDiscovery.encodeBeacon(port, SPECTATOR_PORT, MAX_PLAYERS_PER_TEAM, counts, ROOM_NAME);
+        }
+        byte[] data = beacon.getBytes(StandardCharsets.UTF_8);
+        try {
+            beaconSocket.send(new DatagramPacket(data, data.length,
+                    InetAddress.getByName(LanDiscovery.GROUP), LanDiscovery.PORT));
+        } catch (IOException e) {
+            // The network may come and go; try again on the next beacon
+        }
+    }
+
+    /**
+     * Gets the room name used when none is configured.
+     *
+     * @return "<host name>'s game", or "Game" if the host name is unknown
+     */
+    private static String defaultRoomName() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + "'s game";
+        } catch (UnknownHostException e) {
+            return "Game";
+        }
+    }
+
+    /**
+     * Builds the full metrics report, including per-player latency histograms.
+     *
+     * @return The metrics report as "name value" lines
+     */
+    private static String formatMetrics() {
+        StringBuilder sb = new StringBuilder(metrics.format());
+        synchronized (clients) {
+            ServerMetrics.appendLine(sb, "clients_connected", clients.size());
+            if (spectatorHub != null) {
+                ServerMetrics.appendLine(sb, "spectators_connected", spectatorHub.getSpectatorCount());
+                ServerMetrics.appendLine(sb, "spectator_resyncs_total", spectatorHub.getResyncCount());
+            }
+            if (matchLog != null) {
+                ServerMetrics.appendLine(sb, "standbys_connected", matchLog.getReplicaCount());
+                ServerMetrics.appendLine(sb, "match_log_dropped_records_total", matchLog.getDroppedCount());
+            }
+            for (ClientHandler clientHandler : clients.values()) {
+                if (clientHandler.getTeam() != null) {
+                    String prefix = "player_" + clientHandler.getPlayerName();
+                    ServerMetrics.appendHistogram(sb, prefix + "_rtt", clientHandler.getRttHistogram());
+                    ServerMetrics.appendHistogram(sb, prefix + "_hold", clientHandler.getHoldHistogram());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the metrics report to METRICS_FILE.
+     * The report is written to a temporary file and moved into place so scrapers never see a partial file.
+     */
+    private static void dumpMetrics() {
+        metrics.updateRates();
+        try {
+            File target = new File(METRICS_FILE);
+            File temp = new File(METRICS_FILE + ".tmp");
+            try (Writer writer = new FileWriter(temp)) {
+                writer.write(formatMetrics());
+            }
+            Files.move(temp.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Failed to write metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The RecoveryListener class rebuilds the static match state from the match log.
+     * Joined players become reserved slots until they reconnect; holds are ignored.
+     */
+    private static class RecoveryListener implements MatchLog.Listener {
+        @Override
+        public void onReset() {
+            for (int row = 0; row < ROWS; row++) {
+                for (int col = 0; col < COLS; col++) {
+                    boardState[row][col] = "UNCLAIMED";
+                }
+            }
+            winRules.reset();
+            for (List<String> players : teamPlayers) {
+                players.clear();
+            }
+            reservedSlots.clear();
+        }
+
+        @Override
+        public void onNewRound() {
+            for (int row = 0; row < ROWS; row++) {
+                for (int col = 0; col < COLS; col++) {
+                    boardState[row][col] = "UNCLAIMED";
+                }
+            }
+            winRules.reset();
+        }
+
+        @Override
+        public void onClaim(int row, int col, int team) {
+            if (row < ROWS && col < COLS && team >= 0 && team < TEAMS.length) {
+                boardState[row][col] = TEAMS[team];
+                winRules.claim(row, col, team);
+            }
+        }
+
+        @Override
+        public void onHold(int row, int col, int team) {
+            // Holds end with the connections that made them
+        }
+
+        @Override
+        public void onRelease(int row, int col, int team) {
+            // Holds end with the connections that made them
+        }
+
+        @Override
+        public void onJoin(String playerName, int team) {
+            if (team < 0 || team >= TEAM_COUNT) {
+                return;
+            }
+            // A log not truncated after its snapshot repeats joins the snapshot already holds
+            if (!teamPlayers.get(team).contains(playerName)) {
+                teamPlayers.get(team).add(playerName);
+            }
+            reservedSlots.put(playerName, TEAMS[team]);
+        }
+
+        @Override
+        public void onLeave(String playerName, int team) {
+            if (team >= 0 && team < TEAM_COUNT) {
+                teamPlayers.get(team).remove(playerName);
+            }
+            reservedSlots.remove(playerName);
+        }
+    }
+
+    /**
+     * The ClientHandler class manages communication with a single connected client.
+     * It processes incoming messages and manages the client's state in the game.
+     */
+    static class ClientHandler implements Runnable {
+        /** Socket for communication with the client, or null for in-process and replayed players */
+        private Socket socket;
+        
+        /** In-memory connection to a client running in this JVM, or null for socket clients */
+        private LoopbackConnection loopback;
+        
+        /** True for a server-side bot, which is always connected in-process */
+        private boolean bot;
+        
+        /** Input stream for receiving messages from the client */
+        private DataInputStream inputStream;
+        
+        /** Output stream for sending messages to the client */
+        private DataOutputStream outputStream;
+        
+        /** The team assigned to this client */
+        private String team;
+        
+        /** The player's name */
+        private String playerName;
+        
+        /** Unique identifier for this client */
+        private String clientId;
+        
+        /** Round-trip times measured from this client's PONG replies */
+        private final LatencyHistogram rttHistogram = new LatencyHistogram();
+        
+        /** Time from receiving a HOLD_START to finishing its processing and broadcast */
+        private final LatencyHistogram holdHistogram = new LatencyHistogram();
+        
+        /** Queue of messages to this client, or null for replayed players and admin requests */
+        private OutboundQueue outbound;
+        
+        /** Limits how fast this player can chat */
+        private final TokenBucket chatLimiter = new TokenBucket(CHAT_BURST, CHAT_PER_SECOND);
+        
+        /** Limits how fast this player can start holds */
+        private final TokenBucket holdLimiter = new TokenBucket(HOLD_BURST, HOLD_PER_SECOND);
+        
+        /** True once the player was told about the chat limit, until a chat gets through again */
+        private boolean chatLimitNotified;
+        
+        /** Reused buffer for the current message: the two-byte length followed by the modified UTF-8 body */
+        private final byte[] frame = new byte[2 + 65535];
+        
+        /** Decodes the frame buffer as a String for messages that are not on the hot path */
+        private final DataInputStream frameDecoder = new DataInputStream(new ByteArrayInputStream(frame));
+        
+        /** Token that lets this player resume the session after a dropped connection */
+        private String resumeToken;
+        
+        /** Expiry of this session's grace period while it is suspended (guarded by GameServer.class) */
+        private ScheduledFuture<?> resumeExpiry;
+        
+        /** True once the player asked to LEAVE, so a disconnect releases the slot immediately */
+        private volatile boolean leaving;
+        
+        /**
+         * Start time (nanos) of each square this player is holding, or 0, indexed by row * COLS + col.
+         * Changed under the boardState lock, by this handler's thread and by whichever thread starts
+         * a new round; read without it as a pre-check, so the entries are volatile.
+         */
+        private final AtomicLongArray holdStartNanos = new AtomicLongArray(ROWS * COLS);
+
+        /**
+         * Creates a new client handler for the given socket and ID.
+         *
+         * @param socket The client socket
+         * @param clientId The unique client identifier
+         */
+        public ClientHandler(Socket socket, String clientId) {
+            this.socket = socket;
+            this.clientId = clientId;
+        }
+
+        /**
+         * Creates a handler for a client running in this JVM.
+         *
+         * @param loopback The in-memory connection to the client
+         * @param clientId The unique client identifier
+         * @param bot true if the client is a server-side bot
+         */
+        ClientHandler(LoopbackConnection loopback, String clientId, boolean bot) {
+            this.loopback = loopback;
+            this.clientId = clientId;
+            this.bot = bot;
+            // The connection's bounded queue is the sink, so the same lanes and slow-client policy apply
+            outbound = new OutboundQueue(loopback, OUTBOUND_COALESCE_DEPTH, OUTBOUND_SNAPSHOT_DEPTH,
+                    OUTBOUND_LOW_PRIORITY_DEPTH, OUTBOUND_STALL_MS, COLS, GameServer::encodeSnapshot, this::dropSlowConsumer, metrics);
+        }
+
+        /**
+         * Creates a handler with no connection, used to drive players during a match replay.
+         * Messages sent to it are discarded.
+         *
+         * @param clientId The client identifier from the recording
+         */
+        ClientHandler(String clientId) {
+            this.clientId = clientId;
+        }
+
+        /**
+         * Main processing loop for client messages.
+         * Handles initial connection setup and subsequent game actions.
+         */
+        @Override
+        public void run() {
+            if (loopback != null) {
+                runLoopback();
+                return;
+            }
+            try {
+                // Set up data streams
+                inputStream = new DataInputStream(socket.getInputStream());
+                outputStream = new DataOutputStream(socket.getOutputStream());
+
+                // Handle initial message, which must arrive within the handshake deadline
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                String initMessage = inputStream.readUTF();
+                
+                // Check if this is a capacity check or team status request
+                if (initMessage.equals("CHECK_CAPACITY")) {
+                    synchronized (clients) {
+                        outputStream.writeUTF(isServerFull() ? "SERVER_FULL" : "OK");
+                    }
+                    socket.close();
+                    return;
+                } else if (initMessage.equals("TEAM_STATUS_REQUEST")) {
+                    outputStream.writeUTF(encodeTeamStatus());
+                    socket.close();
+                    return;
+                } else if (initMessage.equals("METRICS_REQUEST")) {
+                    // One frame per line: with per-player histograms the report can outgrow a single frame
+                    DataOutputStream report = new DataOutputStream(new BufferedOutputStream(outputStream));
+                    report.writeUTF("METRICS");
+                    for (String line : formatMetrics().split("\n")) {
+                        report.writeUTF(line);
+                    }
+                    report.writeUTF("METRICS_END");
+                    report.flush();
+                    socket.close();
+                    return;
+                } else if (initMessage.startsWith("ARCHIVE_QUERY")) {
+                    // Summarize the last N archived matches (default 10000)
+                    String[] parts = initMessage.split(" ");
+                    int lastN = parts.length == 1 ? 10000 : parts.length == 2 ? parseCount(parts[1]) : -1;
+                    if (lastN <= 0) {
+                        outputStream.writeUTF("ARCHIVE_ERROR expected ARCHIVE_QUERY <positive match count>");
+                    } else {
+                        outputStream.writeUTF(matchArchive == null ? "ARCHIVE_UNAVAILABLE" :
+                                "ARCHIVE_RESULT " + matchArchive.summarize(lastN));
+                    }
+                    socket.close();
+                    return;
+                } else if (initMessage.startsWith("PLAYER_STATS_REQUEST ")) {
+                    // Look up a player's lifetime stats (off the game hot paths)
+                    String name = initMessage.substring("PLAYER_STATS_REQUEST ".length());
+                    outputStream.writeUTF(playerStats == null ? "PLAYER_STATS_UNAVAILABLE" :
+                            "PLAYER_STATS " + name + " " + playerStats.get(name));
+                    socket.close();
+                    return;
+                }
+
+                // Lobby connections hold their threads while they watch, so only a few may be open
+                if (initMessage.equals("LOBBY_SUBSCRIBE") && !enterLobby()) {
+                    metrics.serverFullRejected();
+                    outputStream.writeUTF("SERVER_FULL");
+                    socket.close();
+                    return;
+                }
+
+                // From here on, messages go through this client's outbound queue and writer thread
+                outbound = new OutboundQueue(outputStream, OUTBOUND_COALESCE_DEPTH, OUTBOUND_SNAPSHOT_DEPTH,
+                        OUTBOUND_LOW_PRIORITY_DEPTH, OUTBOUND_STALL_MS, COLS, GameServer::encodeSnapshot, this::dropSlowConsumer, metrics);
+                writerService.execute(outbound);
+
+                // A launcher can watch the team occupancy first and then join on the same connection
+                if (initMessage.equals("LOBBY_SUBSCRIBE")) {
+                    initMessage = watchLobby();
+                }
+
+                // Process player information and team assignment, or continue a dropped session
+                if (!handleJoin(initMessage)) {
+                    return;
+                }
+
+                // Main message processing loop; PING/PONG traffic keeps a live connection from idling out
+                socket.setSoTimeout(IDLE_TIMEOUT_MS);
+                while (true) {
+                    // Same framing as readUTF, but into the reused buffer
+                    int length = inputStream.readUnsignedShort();
+                    inputStream.readFully(frame, 2, length);
+                    frame[0] = (byte) (length >>> 8);
+                    frame[1] = (byte) length;
+                    handleFrame(length);
+                }
+            } catch (SocketTimeoutException e) {
+                if (team == null) {
+                    metrics.handshakeTimedOut();
+                    System.out.println(clientId + " closed: no handshake within " + HANDSHAKE_TIMEOUT_MS + " ms");
+                } else {
+                    metrics.idleEvicted();
+                    System.out.println(clientId + " (" + playerName + ") evicted: silent for " + IDLE_TIMEOUT_MS + " ms");
+                }
+            } catch (IOException e) {
+                System.out.println(clientId + " (" + playerName + ") disconnected: " + e.getMessage());
+            } finally {
+                disconnect();
+            }
+        }
+
+        /**
+         * Processing loop for a client running in this JVM. Messages arrive as Strings straight
+         * from the client, so there is no framing, no decoding and no read timeout; the connection
+         * only ends when one side closes it.
+         */
+        private void runLoopback() {
+            writerService.execute(outbound);
+            try {
+                if (!handleJoin(loopback.takeFromClient())) {
+                    return;
+                }
+                while (true) {
+                    handleMessage(loopback.takeFromClient());
+                }
+            } catch (IOException e) {
+                System.out.println(clientId + " (" + playerName + ") disconnected: " + e.getMessage());
+            } finally {
+                disconnect();
+            }
+        }
+
+        /**
+         * Moves this connection from the player slots to the lobby, unless the lobby is full.
+         *
+         * @return false if MAX_LOBBY_SUBSCRIBERS lobby connections are already open
+         */
+        private boolean enterLobby() {
+            synchronized (clients) {
+                if (lobbySubscribers.size() >= MAX_LOBBY_SUBSCRIBERS) {
+                    return false;
+                }
+                clients.remove(clientId);
+                lobbySubscribers.add(this);
+                return true;
+            }
+        }
+
+        /**
+         * Serves a lobby subscription: sends the team occupancy now and every time it changes,
+         * until the launcher sends LOBBY_UPGRADE to join the game on this connection.
+         * Watching the lobby does not take one of the player slots; the upgrade takes one, or is
+         * answered with SERVER_FULL and the connection stays in the lobby.
+         *
+         * @return The handshake message sent after the upgrade
+         * @throws IOException If the connection fails or the launcher goes silent
+         */
+        private String watchLobby() throws IOException {
+            synchronized (clients) {
+                sendMessage(encodeTeamStatus());
+            }
+            // The launcher answers our PINGs, so the idle timeout only catches dead connections
+            socket.setSoTimeout(IDLE_TIMEOUT_MS);
+            try {
+                while (true) {
+                    // Only PONGs are expected until the upgrade
+                    if (!inputStream.readUTF().equals("LOBBY_UPGRADE")) {
+                        continue;
+                    }
+                    synchronized (clients) {
+                        if (isServerFull()) {
+                            metrics.serverFullRejected();
+                            sendMessage("SERVER_FULL");
+                            continue;
+                        }
+                        // Take a player slot like a newly accepted connection; no TEAM_STATUS follows this
+                        lobbySubscribers.remove(this);
+                        clients.put(clientId, this);
+                        sendMessage("LOBBY_CLOSED");
+                        break;
+                    }
+                }
+            } finally {
+                synchronized (clients) {
+                    lobbySubscribers.remove(this);
+                }
+            }
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            return inputStream.readUTF();
+        }
+
+        /**
+         * Tells the player where the standby is, if one is attached, so it can fail over there.
+         */
+        private void sendStandbyAddress() {
+            String address = standbyAddress;
+            if (address != null) {
+                sendMessage("STANDBY " + address);
+            }
+        }
+
+        /**
+         * Processes the handshake that takes a player slot. Only PLAYER_INFO and RESUME do; any
+         * other message is rejected, so a connection cannot keep a slot without joining a team.
+         *
+         * @param message The first message after the probes and the lobby
+         * @return false if the connection was rejected and closed
+         * @throws IOException If sending the initial state fails
+         */
+        private boolean handleJoin(String message) throws IOException {
+            if (message.startsWith("PLAYER_INFO ")) {
+                return handlePlayerInfo(message);
+            } else if (message.startsWith("RESUME ")) {
+                return handleResume(message);
+            }
+            metrics.malformedMessage();
+            System.out.println(clientId + " rejected: expected PLAYER_INFO or RESUME");
+            rejectHandshake("INVALID_HANDSHAKE");
+            return false;
+        }
+
+        /**
+         * Processes a PLAYER_INFO handshake: assigns the player to the requested team
+         * and sends the initial game state.
+         *
+         * @param message The PLAYER_INFO message
+         * @return false if the player was rejected and the connection closed
+         * @throws IOException If sending the initial state fails
+         */
+        boolean handlePlayerInfo(String message) throws IOException {
+            String[] parts = message.split(" ");
+            if (parts.length != 3) {
+                metrics.malformedMessage();
+                rejectHandshake("INVALID_HANDSHAKE");
+                return false;
+            }
+            playerName = parts[1];
+            String requestedTeam = parts[2];
+            String evictedBot = null;
+            if (!bot && (socket != null || loopback != null) && BotManager.isBotName(playerName)) {
+                // Bot names identify bots in the rosters and counts, so people may not take them
+                rejectHandshake("NAME_IN_USE");
+                return false;
+            }
+
+            // Assign player to requested team if space available
+            synchronized (GameServer.class) {
+                if (matchRecorder != null) {
+                    matchRecorder.recordInput(this, message);
+                }
+                String reservedTeam = reservedSlots.remove(playerName);
+                if (reservedTeam != null) {
+                    // Player was on this team before a server restart - the slot is already counted
+                    team = reservedTeam;
+                } else if (isSuspendedName(playerName)) {
+                    // A dropped player's slot can only be taken back with its resume token
+                    rejectHandshake("NAME_IN_USE");
+                    return false;
+                } else if (teamIndex(requestedTeam) >= 0
+                        && teamPlayers.get(teamIndex(requestedTeam)).size() < MAX_PLAYERS_PER_TEAM) {
+                    team = requestedTeam;
+                    teamPlayers.get(teamIndex(team)).add(playerName);
+                } else if (teamIndex(requestedTeam) >= 0 && botManager != null && !bot
+                        && (evictedBot = botManager.yieldSlot(teamIndex(requestedTeam))) != null) {
+                    // Team filled by bots - a person takes a bot's slot, and the bot leaves on its own
+                    team = requestedTeam;
+                    teamPlayers.get(teamIndex(team)).remove(evictedBot);
+                    teamPlayers.get(teamIndex(team)).add(playerName);
+                } else {
+                    // Team full or invalid request
+                    metrics.teamFullRejected();
+                    rejectHandshake("TEAM_FULL");
+                    return false;
+                }
+                if (reservedTeam == null && matchLog != null) {
+                    matchLog.logJoin(playerName, teamIndex(team));
+                }
+            }
+            
+            // Notify clients of new player
+            metrics.handshakeCompleted();
+            System.out.println(clientId + " (" + playerName + ") assigned to " + team);
+            resumeToken = newResumeToken();
+            sendMessage("TEAM_ASSIGNMENT " + team + " " + playerName + " " + resumeToken);
+            sendStandbyAddress();
+            broadcastMessage("CHAT " + playerName + " connected");
+            broadcastTeamLists();
+            sendGameState(boardState);
+            sendInitialHeldState();
+            broadcastTeamScores();
+            return true;
+        }
+
+        /**
+         * Processes a RESUME handshake ("RESUME token lastSeq") from a player whose connection dropped.
+         * The player keeps its team slot and is sent only the broadcasts after lastSeq, or the full
+         * state if those are no longer in the event history.
+         *
+         * @param message The RESUME message
+         * @return false if the session could not be resumed and the connection was closed
+         * @throws IOException If sending the catch-up state fails
+         */
+        boolean handleResume(String message) throws IOException {
+            String[] parts = message.split(" ");
+            long lastSeq = parts.length == 3 ? parseSeq(parts[2]) : -1;
+            ClientHandler suspended = lastSeq < 0 ? null : takeSuspendedSession(parts[1]);
+            if (suspended == null) {
+                rejectHandshake("RESUME_FAILED");
+                return false;
+            }
+
+            // Catch up under the board and clients locks (in the usual order): no broadcast can interleave
+            // with the missed events, and a full-state catch-up reads a board no claim is changing
+            boolean fromHistory;
+            synchronized (boardState) {
+                synchronized (clients) {
+                    playerName = suspended.getPlayerName();
+                    resumeToken = suspended.resumeToken;
+                    List<String> missed = eventHistory.since(lastSeq);
+                    if (missed != null && missed.size() >= OUTBOUND_SNAPSHOT_DEPTH / 2) {
+                        // Cheaper to send the full state than to replay that many events
+                        missed = null;
+                    }
+                    fromHistory = missed != null;
+                    sendMessage("RESUMED " + suspended.getTeam() + " " + playerName + " " + resumeToken);
+                    sendStandbyAddress();
+                    if (fromHistory) {
+                        for (String event : missed) {
+                            sendMessage(event);
+                        }
+                    } else {
+                        sendGameState(boardState);
+                        sendInitialHeldState();
+                    }
+                    team = suspended.getTeam();
+                }
+            }
+            metrics.sessionResumed(fromHistory);
+            System.out.println(clientId + " resumed " + playerName + " on " + team + " after seq " + lastSeq +
+                    (fromHistory ? "" : " (full state)"));
+            broadcastMessage("CHAT " + playerName + " reconnected");
+            if (fromHistory) {
+                // Roster updates are best effort and may have been dropped with the old connection
+                sendMessage(encodeTeamLists());
+            } else {
+                broadcastTeamLists();
+                broadcastTeamScores();
+            }
+            return true;
+        }
+
+        /**
+         * Parses the match count of an ARCHIVE_QUERY.
+         *
+         * @param text The count as sent by the client
+         * @return The count, or -1 if it is not a number
+         */
+        private int parseCount(String text) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Parses the sequence number of a RESUME handshake.
+         *
+         * @param text The number as sent by the client
+         * @return The sequence number, or -1 if it is not a valid one
+         */
+        private long parseSeq(String text) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Processes the message in the frame buffer. HOLD_START and HOLD_END are decoded straight
+         * from the bytes without creating any objects; other messages are decoded to a String.
+         *
+         * @param length Length of the message body in bytes
+         * @throws IOException If broadcasting the resulting updates fails
+         */
+        void handleFrame(int length) throws IOException {
+            if (team == null) {
+                // Not joined: nothing may touch the board or reach the other players
+                return;
+            }
+            boolean holdStart = startsWith(HOLD_START_PREFIX, length);
+            if (!holdStart && !startsWith(HOLD_END_PREFIX, length)) {
+                frameDecoder.reset();
+                handleMessage(frameDecoder.readUTF());
+                return;
+            }
+            metrics.messageReceived(frame, 2, length);
+            if (holdStart && !admitHoldStart()) {
+                return;
+            }
+            long receivedAt = System.nanoTime();
+            int prefixLength = holdStart ? HOLD_START_PREFIX.length : HOLD_END_PREFIX.length;
+            int cell = parseCell(frame, 2 + prefixLength, 2 + length);
+            if (cell < 0) {
+                // Malformed or off the board
+                return;
+            }
+            if (holdStart) {
+                holdStart(cell / COLS, cell % COLS, receivedAt);
+            } else {
+                holdEnd(cell / COLS, cell % COLS);
+            }
+        }
+
+        /**
+         * Checks whether the frame buffer starts with the given message prefix.
+         *
+         * @param prefix The prefix bytes
+         * @param length Length of the message body in bytes
+         * @return true if the message starts with the prefix
+         */
+        private boolean startsWith(byte[] prefix, int length) {
+            if (length < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (frame[2 + i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Parses "row col" from ASCII bytes. Used for holds read from the frame buffer and for
+         * holds in String form, so both reject the same malformed input.
+         *
+         * @param text The bytes holding the message
+         * @param start Index of the first digit of the row
+         * @param end Index just past the message
+         * @return row * COLS + col, or -1 if the text is malformed or off the board
+         */
+        static int parseCell(byte[] text, int start, int end) {
+            int row = 0;
+            int i = start;
+            for (; i < end && text[i] != ' '; i++) {
+                int digit = text[i] - '0';
+                if (digit < 0 || digit > 9 || row >= ROWS) {
+                    return -1;
+                }
+                row = row * 10 + digit;
+            }
+            if (i == start || i == end) {
+                return -1;
+            }
+            int col = 0;
+            int colStart = ++i;
+            for (; i < end; i++) {
+                int digit = text[i] - '0';
+                if (digit < 0 || digit > 9 || col >= COLS) {
+                    return -1;
+                }
+                col = col * 10 + digit;
+            }
+            if (i == colStart || row >= ROWS || col >= COLS) {
+                return -1;
+            }
+            return row * COLS + col;
+        }
+
+        /**
+         * Parses "row col" from a message in String form, with the same checks as the frame path.
+         *
+         * @param message The message
+         * @param start Index of the first digit of the row
+         * @return row * COLS + col, or -1 if the text is malformed or off the board
+         */
+        static int parseCell(String message, int start) {
+            byte[] text = message.getBytes(StandardCharsets.US_ASCII);
+            return parseCell(text, start, text.length);
+        }
+
+        /**
+         * Applies the per-player hold rate limit. Replays were already limited when recorded.
+         *
+         * @return true if the HOLD_START may be processed
+         */
+        private boolean admitHoldStart() {
+            if (!replayMode && !holdLimiter.tryAcquire()) {
+                metrics.holdRateLimited();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Processes a parsed HOLD_START.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         * @param receivedAt Time the message was received (nanos)
+         * @throws IOException If broadcasting the resulting updates fails
+         */
+        private void holdStart(int row, int col, long receivedAt) throws IOException {
+            handleHoldRequest(this, row, col);
+            holdHistogram.record(System.nanoTime() - receivedAt);
+        }
+
+        /**
+         * Processes a parsed HOLD_END.
+         * Releases are not rate limited because each one needs an accepted HOLD_START;
+         * the rest (including releases of dropped starts) are discarded without taking the lock.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         * @throws IOException If broadcasting the resulting updates fails
+         */
+        private void holdEnd(int row, int col) throws IOException {
+            // Unlocked pre-check: a new round may clear the hold at any moment, but
+            // handleReleaseRequest checks again under the board lock
+            if (!isHolding(row, col)) {
+                metrics.unmatchedRelease();
+                return;
+            }
+            handleReleaseRequest(this, row, col);
+        }
+
+        /**
+         * Processes one message received after the handshake.
+         * The live read path decodes holds in {@link #handleFrame}; this String form is used for the
+         * other messages and by match replays.
+         *
+         * @param message The message to process
+         * @throws IOException If broadcasting the resulting updates fails
+         */
+        void handleMessage(String message) throws IOException {
+            metrics.messageReceived(message);
+            if (team == null) {
+                // Not joined: holds would be recorded for no team and chat would come from nobody
+                return;
+            }
+            
+            // Process message based on type
+            if (message.startsWith("HOLD_START ")) {
+                if (!admitHoldStart()) {
+                    return;
+                }
+                long receivedAt = System.nanoTime();
+                int cell = parseCell(message, HOLD_START_PREFIX.length);
+                if (cell >= 0) {
+                    holdStart(cell / COLS, cell % COLS, receivedAt);
+                }
+            } else if (message.startsWith("HOLD_END ")) {
+                int cell = parseCell(message, HOLD_END_PREFIX.length);
+                if (cell >= 0) {
+                    holdEnd(cell / COLS, cell % COLS);
+                }
+            } else if (message.startsWith("PING ")) {
+                // Echo the client's timestamp so it can measure its own round-trip time
+                sendMessage("PONG " + message.substring(5));
+            } else if (message.startsWith("PONG ")) {
+                // The timestamp is our own nanoTime, which may be negative, so only a parse failure is malformed
+                try {
+                    rttHistogram.record(System.nanoTime() - Long.parseLong(message.substring(5)));
+                } catch (NumberFormatException e) {
+                    metrics.malformedMessage();
+                }
+            } else if (message.equals("PING") || message.equals("PONG")) {
+                metrics.malformedMessage();
+            } else if (message.equals("LEAVE")) {
+                // Intentional leave: release the slot instead of holding it for a resume
+                leaving = true;
+                if (socket != null) {
+                    socket.close();
+                }
+                if (loopback != null) {
+                    loopback.close();
+                }
+            } else if (message.startsWith("CHAT")) {
+                if (!chatLimiter.tryAcquire()) {
+                    // Over the chat rate: drop it and tell only the sender, once per burst
+                    metrics.chatRateLimited();
+                    if (!chatLimitNotified) {
+                        chatLimitNotified = true;
+                        sendMessage("CHAT Server: you are sending messages too fast");
+                    }
+                    return;
+                }
+                chatLimitNotified = false;
+                if (matchRecorder != null) {
+                    matchRecorder.recordInput(this, message);
+                }
+                String chatMsg = message.substring(5);
+                broadcastMessage("CHAT " + playerName + ": " + chatMsg);
+            }
+        }
+
+        /**
+         * Closes the connection and removes the player from the game.
+         */
+        void disconnect() {
+            ServerEvents.ClientDisconnect disconnectEvent = new ServerEvents.ClientDisconnect();
+            if (disconnectEvent.shouldCommit() && (socket != null || loopback != null)) {
+                disconnectEvent.clientId = clientId;
+                disconnectEvent.address = socket != null ? socket.getInetAddress() + ":" + socket.getPort() : "in-process";
+                disconnectEvent.team = team;
+                disconnectEvent.playerName = playerName;
+                disconnectEvent.commit();
+            }
+            
+            // Clean up resources
+            if (outbound != null) {
+                outbound.close();
+            }
+            if (loopback != null) {
+                loopback.close();
+            }
+            try {
+                if (socket != null && !socket.isClosed()) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            
+            // Release the squares the player was holding, as if it had sent HOLD_END for each
+            releaseHeldCells();
+            
+            // Remove client, then either keep the slot for a resume or release it
+            synchronized (clients) {
+                clients.remove(clientId);
+                if (team == null) {
+                    return;
+                }
+                // An in-process client cannot drop and come back, so there is nothing to resume
+                if (leaving || replayMode || loopback != null || resumeToken == null || RESUME_GRACE_SECONDS <= 0) {
+                    leaveTeam();
+                } else {
+                    synchronized (GameServer.class) {
+                        suspendedSessions.put(resumeToken, this);
+                        String token = resumeToken;
+                        resumeExpiry = timerService.schedule(() -> expireSuspendedSession(token),
+                                RESUME_GRACE_SECONDS, TimeUnit.SECONDS);
+                    }
+                    metrics.sessionSuspended();
+                    System.out.println("Player " + playerName + " dropped; " + team + " slot kept for " +
+                            RESUME_GRACE_SECONDS + " s");
+                    broadcastMessage("CHAT " + playerName + " lost connection");
+                }
+            }
+        }
+
+        /**
+         * Releases every square this player is still holding through the normal release path.
+         * Must not be called while holding the clients lock (handleReleaseRequest locks boardState first).
+         */
+        private void releaseHeldCells() {
+            for (int cell = 0; cell < holdStartNanos.length(); cell++) {
+                // Unlocked pre-check; handleReleaseRequest checks again under the board lock
+                if (holdStartNanos.get(cell) != 0) {
+                    try {
+                        handleReleaseRequest(this, cell / COLS, cell % COLS);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes the player from its team and tells everyone it left.
+         * Must be called while holding the clients lock.
+         */
+        void leaveTeam() {
+            synchronized (GameServer.class) {
+                if (matchRecorder != null) {
+                    matchRecorder.recordInput(this, "DISCONNECT");
+                }
+                if (teamIndex(team) >= 0) {
+                    teamPlayers.get(teamIndex(team)).remove(playerName);
+                }
+                if (matchLog != null) {
+                    matchLog.logLeave(playerName, teamIndex(team));
+                }
+            }
+            System.out.println("Player " + playerName + " left team " + team);
+            System.out.println("Latency for " + playerName + ": rtt[" + rttHistogram +
+                    "] hold[" + holdHistogram + "] rate-limited holds=" + holdLimiter.getRejectedCount() +
+                    " chats=" + chatLimiter.getRejectedCount());
+            broadcastMessage("CHAT " + playerName + " disconnected");
+            broadcastTeamLists();
+            broadcastTeamScores();
+        }
+
+        /**
+         * Sets the identity of a replayed player that joined before the recording started,
+         * without going through team assignment.
+         *
+         * @param playerName The player's name
+         * @param team The player's team
+         */
+        void assumeIdentity(String playerName, String team) {
+            this.playerName = playerName;
+            this.team = team;
+        }
+
+        /**
+         * Gets the team assigned to this client.
+         *
+         * @return The team ID, e.g. "TEAM_A"
+         */
+        public String getTeam() {
+            return team;
+        }
+
+        /**
+         * Checks whether this player is holding a square.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         * @return true if the player's HOLD_START for the square has not been released yet
+         */
+        boolean isHolding(int row, int col) {
+            return holdStartNanos.get(row * COLS + col) != 0;
+        }
+
+        /**
+         * Records that this player started holding a square.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         */
+        void startHolding(int row, int col) {
+            holdStartNanos.set(row * COLS + col, Math.max(System.nanoTime(), 1));
+        }
+
+        /**
+         * Records that this player released a square.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         * @return How long the square was held (nanoseconds)
+         */
+        long stopHolding(int row, int col) {
+            return System.nanoTime() - holdStartNanos.getAndSet(row * COLS + col, 0);
+        }
+
+        /**
+         * Forgets every square this player was holding, when the board is cleared for a new round.
+         */
+        void clearHolds() {
+            for (int cell = 0; cell < holdStartNanos.length(); cell++) {
+                holdStartNanos.set(cell, 0);
+            }
+        }
+
+        /**
+         * Gets the unique identifier of this client.
+         *
+         * @return The client ID
+         */
+        public String getClientId() {
+            return clientId;
+        }
+
+        /**
+         * Gets the player's name.
+         *
+         * @return The player name, or null before the handshake
+         */
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        /**
+         * Gets the round-trip time histogram for this client.
+         *
+         * @return The RTT histogram
+         */
+        public LatencyHistogram getRttHistogram() {
+            return rttHistogram;
+        }
+
+        /**
+         * Gets the HOLD_START processing time histogram for this client.
+         *
+         * @return The hold-to-broadcast histogram
+         */
+        public LatencyHistogram getHoldHistogram() {
+            return holdHistogram;
+        }
+
+        /**
+         * Queues a message for this client. Never blocks; the client's writer thread sends it,
+         * to the socket or to an in-process client's queue.
+         *
+         * @param message The message to send
+         */
+        public void sendMessage(String message) {
+            if (outbound == null) {
+                // Replayed player, or the handshake has not set up the queue yet
+                return;
+            }
+            outbound.send(message);
+        }
+
+        /**
+         * Rejects a handshake: stops the writer, sends the reason directly and closes the connection.
+         * The writer holds the stream's lock while writing a batch, so the direct write cannot interleave
+         * with lobby messages still being written.
+         *
+         * @param reason The rejection message
+         * @throws IOException If the connection cannot be closed
+         */
+        private void rejectHandshake(String reason) throws IOException {
+            if (outbound != null) {
+                outbound.close();
+            }
+            if (socket != null) {
+                synchronized (outputStream) {
+                    outputStream.writeUTF(reason);
+                }
+                socket.close();
+            }
+            if (loopback != null) {
+                loopback.sendToClient(reason);
+                loopback.close();
+            }
+        }
+
+        /**
+         * Disconnects this client because it fell too far behind on its outbound queue.
+         * Closing the connection ends the reader thread, which runs the normal disconnect.
+         */
+        private void dropSlowConsumer() {
+            System.out.println(clientId + " (" + playerName + ") disconnected: too far behind on outbound messages");
+            if (loopback != null) {
+                loopback.close();
+                return;
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Broadcasts a message to all connected clients.
+         *
+         * @param message The message to broadcast
+         */
+        private void broadcastMessage(String message) {
+            broadcast(message);
+        }
+
+        /**
+         * Sends the board dimensions and the current game state to this client.
+         *
+         * @param gameState The current board state
+         * @throws IOException If sending fails
+         */
+        public void sendGameState(String[][] gameState) throws IOException {
+            sendMessage(encodeBoardConfig());
+            sendMessage(encodeGameState(gameState));
+        }
+
+        /**
+         * Sends the initial held state of the board to a newly connected client.
+         *
+         * @throws IOException If sending fails
+         */
+        public void sendInitialHeldState() throws IOException {
+            sendMessage(encodeHeldState());
+        }
+    }
+}
\ No newline at end of file
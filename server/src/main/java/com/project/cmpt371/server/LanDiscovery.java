@@ -0,0 +1,256 @@
+package com.project.cmpt371.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The LanDiscovery class finds game servers on the local network by listening for the UDP
+ * multicast beacons they send, so players can pick a server instead of typing its address.
+ * <p>
+ * A beacon is a single datagram:
+ * {@code CMPT371_BEACON <port> <spectatorPort> <team size> <count>,<count>,... <room name>},
+ * with one player count per team, where a spectator port of 0 means the server does not take spectators.
+ * The server's address is taken from the datagram itself. A server is dropped from the list
+ * when no beacon has arrived from it for a few intervals.
+ */
+public class LanDiscovery implements Closeable {
+    /** Multicast group the beacons are sent to (administratively scoped, stays on the LAN) */
+    static final String GROUP = "239.255.37.71";
+
+    /** UDP port the beacons are sent to */
+    static final int PORT = Integer.getInteger("cmpt371.discoveryPort", 12346);
+
+    /** First word of every beacon, so unrelated traffic on the group is ignored */
+    private static final String BEACON_PREFIX = "CMPT371_BEACON";
+
+    /** How long a server stays listed without a new beacon (milliseconds) */
+    private static final int EXPIRY_MS = 3500;
+
+    /** Maximum beacon size in bytes */
+    private static final int MAX_BEACON_BYTES = 512;
+
+    /** Socket joined to the beacon group */
+    private final MulticastSocket socket;
+
+    /** Called on the discovery thread with the current list whenever it changes */
+    private final Consumer<List<DiscoveredServer>> onChange;
+
+    /** Servers currently listed, by "address:port" (only used on the discovery thread) */
+    private final Map<String, DiscoveredServer> servers = new LinkedHashMap<>();
+
+    /** True once close has been called */
+    private volatile boolean closed;
+
+    /**
+     * Joins the beacon group and starts listening on a background thread.
+     *
+     * @param onChange Called with the discovered servers whenever the list changes
+     * @throws IOException If the multicast group cannot be joined
+     */
+    public LanDiscovery(Consumer<List<DiscoveredServer>> onChange) throws IOException {
+        this.onChange = onChange;
+        socket = new MulticastSocket(PORT);
+        socket.joinGroup(new InetSocketAddress(InetAddress.getByName(GROUP), PORT), null);
+        // Wake up regularly even when no beacons arrive, so silent servers expire
+        socket.setSoTimeout(EXPIRY_MS / 2);
+        Thread listener = new Thread(this::listen, "lan-discovery");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    /**
+     * Builds the beacon a server sends.
+     *
+     * @param port The server's TCP port
+     * @param spectatorPort The server's spectator port, or 0 if spectating is off
+     * @param teamCapacity Maximum players per team
+     * @param teamCounts Players on each team
+     * @param roomName Name shown in the server list
+     * @return The beacon text
+     */
+    static String encodeBeacon(int port, int spectatorPort, int teamCapacity, int[] teamCounts, String roomName) {
+        StringBuilder counts = new StringBuilder();
+        for (int count : teamCounts) {
+            counts.append(counts.length() == 0 ? "" : ",").append(count);
+        }
+        return BEACON_PREFIX + " " + port + " " + spectatorPort + " " + teamCapacity + " " + counts + " " + roomName;
+    }
+
+    /**
+     * Receive loop: updates the server list from incoming beacons and expires silent servers.
+     */
+    private void listen() {
+        DatagramPacket packet = new DatagramPacket(new byte[MAX_BEACON_BYTES], MAX_BEACON_BYTES);
+        while (!closed) {
+            boolean changed = false;
+            try {
+                socket.receive(packet);
+                DiscoveredServer server = parse(packet);
+                if (server != null) {
+                    DiscoveredServer previous = servers.put(server.getAddress() + ":" + server.getPort(), server);
+                    changed = previous == null || !previous.sameState(server);
+                }
+            } catch (SocketTimeoutException e) {
+                // No beacon for a while - just check for expired servers
+            } catch (IOException e) {
+                if (!closed) {
+                    System.out.println("LAN discovery stopped: " + e.getMessage());
+                }
+                return;
+            }
+            long now = System.currentTimeMillis();
+            changed |= servers.values().removeIf(server -> now - server.lastSeenMillis > EXPIRY_MS);
+            if (changed) {
+                onChange.accept(new ArrayList<>(servers.values()));
+            }
+        }
+    }
+
+    /**
+     * Parses a received beacon.
+     *
+     * @param packet The received datagram
+     * @return The server it describes, or null if it is not a valid beacon
+     */
+    private static DiscoveredServer parse(DatagramPacket packet) {
+        String text = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
+        String[] parts = text.split(" ", 6);
+        if (parts.length < 6 || !parts[0].equals(BEACON_PREFIX)) {
+            return null;
+        }
+        try {
+            String[] countText = parts[4].split(",");
+            int[] teamCounts = new int[countText.length];
+            for (int team = 0; team < countText.length; team++) {
+                teamCounts[team] = Integer.parseInt(countText[team]);
+            }
+            return new DiscoveredServer(parts[5], packet.getAddress().getHostAddress(), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), teamCounts);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stops listening and leaves the group.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+    }
+
+    /**
+     * A game server found through its beacon.
+     */
+    public static class DiscoveredServer {
+        /** Room name chosen by the host */
+        private final String roomName;
+
+        /** Address the beacon came from */
+        private final String address;
+
+        /** The server's TCP port */
+        private final int port;
+
+        /** The server's spectator port, or 0 if it does not take spectators */
+        private final int spectatorPort;
+
+        /** Maximum players per team */
+        private final int teamCapacity;
+
+        /** Players on each team when the beacon was sent */
+        private final int[] teamCounts;
+
+        /** Time the beacon was received (epoch millis) */
+        private final long lastSeenMillis = System.currentTimeMillis();
+
+        /**
+         * Creates a server entry.
+         *
+         * @param roomName Room name
+         * @param address Server address
+         * @param port Server TCP port
+         * @param spectatorPort Server spectator port, or 0
+         * @param teamCapacity Maximum players per team
+         * @param teamCounts Players on each team
+         */
+        DiscoveredServer(String roomName, String address, int port, int spectatorPort, int teamCapacity, int[] teamCounts) {
+            this.roomName = roomName;
+            this.address = address;
+            this.port = port;
+            this.spectatorPort = spectatorPort;
+            this.teamCapacity = teamCapacity;
+            this.teamCounts = teamCounts;
+        }
+
+        /**
+         * Checks whether another entry shows the same server state, ignoring when it was seen.
+         *
+         * @param other The other entry
+         * @return true if nothing shown in the list differs
+         */
+        private boolean sameState(DiscoveredServer other) {
+            return roomName.equals(other.roomName) && Arrays.equals(teamCounts, other.teamCounts);
+        }
+
+        /**
+         * Gets the server address.
+         *
+         * @return The IP address the beacon came from
+         */
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * Gets the server's TCP port.
+         *
+         * @return The port
+         */
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Gets the server's spectator port.
+         *
+         * @return The spectator port, or 0 if the server does not take spectators
+         */
+        public int getSpectatorPort() {
+            return spectatorPort;
+        }
+
+        /**
+         * Checks whether every team is full.
+         *
+         * @return true if no player can join
+         */
+        public boolean isFull() {
+            for (int count : teamCounts) {
+                if (count < teamCapacity) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Formats the entry for the server list.
+         *
+         * @return Room name, address and team occupancy
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(roomName + " (" + address + ":" + port + ") -");
+            for (int team = 0; team < teamCounts.length; team++) {
+                sb.append(team == 0 ? " " : ", ").append(Teams.displayName(team)).append(' ').append(teamCounts[team]);
+            }
+            return sb.toString();
+        }
+    }
+}
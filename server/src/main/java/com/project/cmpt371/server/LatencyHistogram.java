@@ -0,0 +1,105 @@
+package com.project.cmpt371.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The LatencyHistogram class records latency samples into power-of-two microsecond buckets.
+ * Recording is lock-free and allocation-free so it can be used on the server's hot paths,
+ * and percentiles are approximated from the bucket upper bounds.
+ */
+public class LatencyHistogram {
+    /** Number of buckets; bucket i holds samples below 2^i microseconds (last bucket is open-ended) */
+    private static final int BUCKET_COUNT = 32;
+
+    /** Sample counts per bucket */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /** Total number of recorded samples */
+    private final AtomicLong count = new AtomicLong();
+
+    /** Sum of all recorded samples in nanoseconds */
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /** Largest recorded sample in nanoseconds */
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a single latency sample.
+     *
+     * @param nanos The sample in nanoseconds (negative values are ignored)
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Gets the number of recorded samples.
+     *
+     * @return The sample count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the mean of the recorded samples.
+     *
+     * @return The mean in milliseconds, or 0 if nothing was recorded
+     */
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / (double) n / 1_000_000.0;
+    }
+
+    /**
+     * Gets the largest recorded sample.
+     *
+     * @return The maximum in milliseconds
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Approximates a percentile using the upper bound of the bucket that contains it.
+     *
+     * @param percentile The percentile to compute (0-100)
+     * @return The approximate percentile in milliseconds, or 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                // Never report more than the actual maximum
+                return Math.min((1L << i) / 1000.0, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Formats a one-line summary of the histogram for logging.
+     *
+     * @return The summary string
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+                getCount(), getMeanMillis(), getPercentileMillis(50), getPercentileMillis(99), getMaxMillis());
+    }
+}
@@ -0,0 +1,252 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LobbyConnection class keeps a launcher subscribed to a server's team occupancy while the
+ * player picks a name and team. The server pushes a TEAM_STATUS message whenever a player joins
+ * or leaves, so the setup screen never shows stale counts and never has to poll.
+ * <p>
+ * When the player joins, the same connection is upgraded to the game session: the launcher sends
+ * LOBBY_UPGRADE, the server answers LOBBY_CLOSED (or SERVER_FULL, in which case the connection
+ * stays in the lobby) and the socket is handed to the GameClient, which sends PLAYER_INFO as usual.
+ */
+public class LobbyConnection {
+    /** How long to wait for the server's answers (milliseconds) */
+    private static final int REPLY_TIMEOUT_MS = 5000;
+
+    /** Connection to the server */
+    private final Socket socket;
+
+    /** Input stream from the server (unbuffered, so nothing is lost when the socket is handed over) */
+    private final DataInputStream inputStream;
+
+    /** Output stream to the server (guarded by itself; the listener thread answers PINGs) */
+    private final DataOutputStream outputStream;
+
+    /** Maximum players per team in the latest TEAM_STATUS */
+    private volatile int teamCapacity;
+
+    /** Players on each team in the latest TEAM_STATUS (replaced, never modified) */
+    private volatile int[] teamCounts = new int[0];
+
+    /** Called on the listener thread after each TEAM_STATUS, or null */
+    private volatile Runnable onChange;
+
+    /** Answer to the latest LOBBY_UPGRADE ("LOBBY_CLOSED" or "SERVER_FULL"), or null if none yet */
+    private volatile String upgradeReply;
+
+    /** True until the subscription ends by an upgrade, a close or a lost connection */
+    private volatile boolean open = true;
+
+    /** Released when the server answers a LOBBY_UPGRADE or the connection ends */
+    private volatile CountDownLatch upgradeAnswered = new CountDownLatch(1);
+
+    /**
+     * Creates a connection after the subscription was accepted.
+     *
+     * @param socket The connected socket
+     * @param inputStream Input stream of the socket
+     * @param outputStream Output stream of the socket
+     */
+    private LobbyConnection(Socket socket, DataInputStream inputStream, DataOutputStream outputStream) {
+        this.socket = socket;
+        this.inputStream = inputStream;
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Connects to a server and subscribes to its team occupancy.
+     *
+     * @param ip The server IP address
+     * @param port The server port
+     * @return The subscribed connection, or null if the server is full
+     * @throws IOException If the server cannot be reached or does not answer
+     */
+    public static LobbyConnection open(String ip, int port) throws IOException {
+        Socket socket = new Socket(ip, port);
+        try {
+            socket.setSoTimeout(REPLY_TIMEOUT_MS);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("LOBBY_SUBSCRIBE");
+            out.flush();
+            String reply = in.readUTF();
+            if (!reply.startsWith("TEAM_STATUS")) {
+                // SERVER_FULL: the server turned the connection away before reading it
+                socket.close();
+                return null;
+            }
+            socket.setSoTimeout(0);
+            LobbyConnection lobby = new LobbyConnection(socket, in, out);
+            lobby.updateStatus(reply);
+            Thread listener = new Thread(lobby::listen, "lobby-listener");
+            listener.setDaemon(true);
+            listener.start();
+            return lobby;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the callback run after every occupancy update.
+     *
+     * @param onChange Called on the listener thread; must hand any UI work to the JavaFX thread
+     */
+    public void setOnChange(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Gets the maximum number of players per team.
+     *
+     * @return The latest team size limit
+     */
+    public int getTeamCapacity() {
+        return teamCapacity;
+    }
+
+    /**
+     * Gets the number of teams in the match.
+     *
+     * @return The latest team count
+     */
+    public int getTeamCount() {
+        return teamCounts.length;
+    }
+
+    /**
+     * Gets the number of players on a team.
+     *
+     * @param team The team ordinal
+     * @return The latest count, or the team size limit if the match has no such team
+     */
+    public int getPlayerCount(int team) {
+        int[] counts = teamCounts;
+        return team >= 0 && team < counts.length ? counts[team] : teamCapacity;
+    }
+
+    /**
+     * Gets the number of players on all teams.
+     *
+     * @return The latest total
+     */
+    public int getTotalPlayers() {
+        int total = 0;
+        for (int count : teamCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Listener loop: applies pushed occupancy updates and answers PINGs until the
+     * connection is upgraded or closed.
+     */
+    private void listen() {
+        try {
+            while (true) {
+                String message = inputStream.readUTF();
+                if (message.startsWith("TEAM_STATUS")) {
+                    updateStatus(message);
+                    Runnable callback = onChange;
+                    if (callback != null) {
+                        callback.run();
+                    }
+                } else if (message.startsWith("PING")) {
+                    send("PONG " + message.substring(5));
+                } else if (message.equals("LOBBY_CLOSED") || message.equals("SERVER_FULL")) {
+                    upgradeReply = message;
+                    upgradeAnswered.countDown();
+                    if (message.equals("LOBBY_CLOSED")) {
+                        // The game session owns the stream from here on
+                        open = false;
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Closed by the launcher, or the server went away
+            open = false;
+            upgradeAnswered.countDown();
+        }
+    }
+
+    /**
+     * Checks whether the subscription is still live.
+     *
+     * @return false once the connection was upgraded, closed or lost
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Applies a TEAM_STATUS message.
+     *
+     * @param message The TEAM_STATUS message
+     */
+    private void updateStatus(String message) {
+        String[] parts = message.split(" ");
+        int[] counts = new int[parts.length - 2];
+        for (int team = 0; team < counts.length; team++) {
+            counts[team] = Integer.parseInt(parts[2 + team]);
+        }
+        teamCapacity = Integer.parseInt(parts[1]);
+        teamCounts = counts;
+    }
+
+    /**
+     * Sends a message to the server.
+     *
+     * @param message The message to send
+     * @throws IOException If sending fails
+     */
+    private void send(String message) throws IOException {
+        synchronized (outputStream) {
+            outputStream.writeUTF(message);
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Turns the lobby subscription into a game connection.
+     *
+     * @return The socket, ready for the PLAYER_INFO handshake, or null if the server is full
+     *         (the connection then stays subscribed)
+     * @throws IOException If the server does not answer or the connection is lost
+     */
+    public Socket upgrade() throws IOException {
+        upgradeReply = null;
+        upgradeAnswered = new CountDownLatch(1);
+        send("LOBBY_UPGRADE");
+        try {
+            if (!upgradeAnswered.await(REPLY_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IOException("No answer from server");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while joining");
+        }
+        if (upgradeReply == null) {
+            throw new EOFException("Connection to server lost");
+        }
+        return upgradeReply.equals("LOBBY_CLOSED") ? socket : null;
+    }
+
+    /**
+     * Leaves the lobby without joining.
+     */
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.project.cmpt371.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LoopbackConnection class connects the host's own client to the server running in the
+ * same JVM. Messages are handed over through two in-memory queues instead of a localhost socket,
+ * so they are never encoded, copied through the kernel or parsed back out of a stream.
+ * <p>
+ * Messages are the same protocol strings used over TCP, so both ends process them with their
+ * normal message handlers. Either end can close the connection; the other end's next take
+ * then fails with an EOFException, just like a closed socket.
+ * <p>
+ * The server writes to the client through its {@link OutboundQueue}, with this connection as the
+ * sink. The queue towards the client is bounded like a socket's send buffer: when the client stops
+ * draining it, the writer blocks, the outbound queue backs up and its slow-client policy applies.
+ */
+public class LoopbackConnection implements OutboundQueue.Sink {
+    /** Maximum number of messages waiting for the client, the in-memory send buffer */
+    private static final int CLIENT_QUEUE_CAPACITY = 256;
+
+    /** How often a blocked write checks whether the connection was closed (milliseconds) */
+    private static final long CLOSED_CHECK_MS = 100;
+
+    /** Marks the end of the stream in a queue (compared by identity) */
+    private static final String CLOSED = new String("CLOSED");
+
+    /** Messages from the client to the server */
+    private final BlockingQueue<String> toServer = new LinkedBlockingQueue<>();
+
+    /** Messages from the server to the client */
+    private final BlockingQueue<String> toClient = new LinkedBlockingQueue<>(CLIENT_QUEUE_CAPACITY);
+
+    /** True once either end closed the connection */
+    private volatile boolean closed;
+
+    /**
+     * Sends a message from the client to the server.
+     *
+     * @param message The message to send
+     * @throws IOException If the connection is closed
+     */
+    public void sendToServer(String message) throws IOException {
+        if (closed) {
+            throw new EOFException("Loopback connection closed");
+        }
+        toServer.add(message);
+    }
+
+    /**
+     * Sends a message from the server to the client, waiting while the client's queue is full.
+     *
+     * @param message The message to send
+     * @throws IOException If the connection is closed or the wait interrupted
+     */
+    public void sendToClient(String message) throws IOException {
+        try {
+            while (!closed) {
+                if (toClient.offer(message, CLOSED_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sending a message");
+        }
+        throw new EOFException("Loopback connection closed");
+    }
+
+    /**
+     * Writes a message for the client on the server's outbound writer thread.
+     *
+     * @param message The message to send
+     * @throws IOException If the connection is closed
+     */
+    @Override
+    public void write(String message) throws IOException {
+        sendToClient(message);
+    }
+
+    /**
+     * Does nothing: each message is visible to the client as soon as it is written.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Waits for the next message from the client (server side).
+     *
+     * @return The message
+     * @throws IOException If the connection was closed or the wait interrupted
+     */
+    public String takeFromClient() throws IOException {
+        return take(toServer);
+    }
+
+    /**
+     * Waits for the next message from the server (client side).
+     *
+     * @return The message
+     * @throws IOException If the connection was closed or the wait interrupted
+     */
+    public String takeFromServer() throws IOException {
+        return take(toClient);
+    }
+
+    /**
+     * Takes the next message from the server if one is waiting (client side). Lets a client
+     * that runs on a shared scheduler drain its messages without a thread of its own.
+     *
+     * @return The message, or null if none is waiting
+     * @throws IOException If the end of the stream was reached
+     */
+    public String pollFromServer() throws IOException {
+        String message = toClient.poll();
+        if (message == CLOSED) {
+            toClient.offer(CLOSED);
+            throw new EOFException("Loopback connection closed");
+        }
+        return message;
+    }
+
+    /**
+     * Closes the connection. Messages already queued are still delivered before the end of the stream,
+     * unless the client's queue is full: a client that stopped reading loses its backlog, as it would
+     * with a socket.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        toServer.add(CLOSED);
+        if (!toClient.offer(CLOSED)) {
+            toClient.clear();
+            toClient.offer(CLOSED);
+        }
+    }
+
+    /**
+     * Checks whether the connection has been closed.
+     *
+     * @return true once either end closed it
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Waits for the next message in a queue.
+     *
+     * @param queue The queue to read
+     * @return The message
+     * @throws IOException If the end of the stream was reached or the wait interrupted
+     */
+    private static String take(BlockingQueue<String> queue) throws IOException {
+        String message;
+        try {
+            message = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a message");
+        }
+        if (message == CLOSED) {
+            // Leave the marker for any other reader on this end
+            queue.offer(CLOSED);
+            throw new EOFException("Loopback connection closed");
+        }
+        return message;
+    }
+}
@@ -0,0 +1,402 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The MatchArchive class is an append-only, columnar archive of finished matches.
+ * Each column is its own fixed-width file, so a query only touches the columns it needs and
+ * reads them through read-only memory maps instead of loading matches onto the heap.
+ * <p>
+ * Matches are grouped into segments of SEGMENT_MATCHES. Each segment directory holds:
+ * <ul>
+ *   <li>winner.col - 1 byte team index per match (TIE for a tie)</li>
+ *   <li>end_time.col - 8 byte epoch millis</li>
+ *   <li>duration.col - 4 byte match duration in millis</li>
+ *   <li>contested.col - count of squares held by more than one team during the match: 2 bytes
+ *       unsigned, or 4 bytes for boards of more than 65535 squares</li>
+ *   <li>board.col - 1 byte per square, the owning team index + 1 (0 = unclaimed)</li>
+ *   <li>players.off / players.dat - 8 byte offset per match into a variable-length list of
+ *       (name, team, claims) entries; claims use the contested count's width</li>
+ * </ul>
+ * The small archive.idx file holds the board size and the number of committed matches. It is
+ * written after the columns, so columns past the committed count (from a crash mid-append)
+ * are truncated on open.
+ */
+public class MatchArchive implements Closeable {
+    /** Number of matches per segment */
+    static final int SEGMENT_MATCHES = 65536;
+
+    /** Winner value stored for a tied match */
+    static final byte TIE = -1;
+
+    /** Column file names, in the order they are appended */
+    private static final String[] COLUMNS = {
+            "winner.col", "end_time.col", "duration.col", "contested.col", "board.col", "players.off"
+    };
+
+    /**
+     * Everything archived about one finished match.
+     */
+    public static class MatchSummary {
+        /** Winning team index, or TIE */
+        final int winner;
+
+        /** Time the match ended (epoch millis) */
+        final long endMillis;
+
+        /** Match duration in millis */
+        final int durationMillis;
+
+        /** Owning team index of every square, or -1 if unclaimed */
+        final int[][] board;
+
+        /** Number of squares held by more than one team at some point */
+        final int contestedCells;
+
+        /** Names of players who took part */
+        final List<String> playerNames = new ArrayList<>();
+
+        /** Team index of each player, parallel to playerNames */
+        final List<Integer> playerTeams = new ArrayList<>();
+
+        /** Squares claimed by each player, parallel to playerNames */
+        final List<Integer> playerClaims = new ArrayList<>();
+
+        /**
+         * Creates a match summary.
+         *
+         * @param winner Winning team index, or TIE
+         * @param endMillis Time the match ended (epoch millis)
+         * @param durationMillis Match duration in millis
+         * @param board Owning team index of every square, or -1 if unclaimed (copied by the caller)
+         * @param contestedCells Number of squares held by more than one team at some point
+         */
+        public MatchSummary(int winner, long endMillis, int durationMillis, int[][] board, int contestedCells) {
+            this.winner = winner;
+            this.endMillis = endMillis;
+            this.durationMillis = durationMillis;
+            this.board = board;
+            this.contestedCells = contestedCells;
+        }
+
+        /**
+         * Adds a player's claim count.
+         *
+         * @param name The player's name
+         * @param team The player's team index
+         * @param claims Squares the player helped claim
+         */
+        public void addPlayer(String name, int team, int claims) {
+            playerNames.add(name);
+            playerTeams.add(team);
+            playerClaims.add(claims);
+        }
+    }
+
+    /** Archive root directory */
+    private final Path directory;
+
+    /** Team names, indexed by team index, used in query results */
+    private final String[] teamNames;
+
+    /** Board rows */
+    private final int rows;
+
+    /** Board columns */
+    private final int cols;
+
+    /** Bytes per contested count and player claim count, wide enough for a fully claimed board */
+    private final int countWidth;
+
+    /** Number of committed matches; read by queries without taking the writer's lock */
+    private volatile long matchCount;
+
+    /** Thread that performs all appends */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "match-archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens (creating if needed) an archive for boards of the given size.
+     *
+     * @param directory Archive root directory
+     * @param rows Board rows
+     * @param cols Board columns
+     * @param teamNames Team names, indexed by team index
+     * @throws IOException If the archive cannot be opened or was written for another board size
+     */
+    public MatchArchive(Path directory, int rows, int cols, String[] teamNames) throws IOException {
+        this.directory = directory;
+        this.rows = rows;
+        this.cols = cols;
+        this.countWidth = rows * cols <= 0xFFFF ? 2 : 4;
+        this.teamNames = teamNames;
+        Files.createDirectories(directory);
+        Path index = directory.resolve("archive.idx");
+        if (Files.exists(index)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(index))) {
+                int storedRows = in.readInt();
+                int storedCols = in.readInt();
+                if (storedRows != rows || storedCols != cols) {
+                    throw new IOException("Archive " + directory + " holds " + storedRows + "x" + storedCols + " boards");
+                }
+                matchCount = in.readLong();
+            }
+            truncateUncommitted();
+        } else {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Queues a finished match for appending. Returns immediately; the write happens on the archive thread.
+     *
+     * @param summary The match to archive
+     */
+    public void append(MatchSummary summary) {
+        writer.execute(() -> {
+            try {
+                write(summary);
+            } catch (IOException e) {
+                System.out.println("Failed to archive match: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Appends a match to every column of its segment, then commits it in the index.
+     *
+     * @param summary The match to archive
+     * @throws IOException If a column cannot be written
+     */
+    private void write(MatchSummary summary) throws IOException {
+        long match = matchCount;
+        Path segment = segmentPath(match / SEGMENT_MATCHES);
+        Files.createDirectories(segment);
+
+        // Variable-length player entries go to players.dat; the offset column points at them
+        long playersOffset;
+        try (FileChannel players = openAppend(segment.resolve("players.dat"))) {
+            playersOffset = players.size();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(summary.playerNames.size());
+            for (int i = 0; i < summary.playerNames.size(); i++) {
+                out.writeUTF(summary.playerNames.get(i));
+                out.writeByte(summary.playerTeams.get(i));
+                writeCount(out, summary.playerClaims.get(i));
+            }
+            players.write(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+
+        ByteBuffer board = ByteBuffer.allocate(rows * cols);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                board.put((byte) (summary.board[row][col] + 1));
+            }
+        }
+        board.flip();
+        appendColumn(segment, "winner.col", ByteBuffer.allocate(1).put(0, (byte) summary.winner));
+        appendColumn(segment, "end_time.col", ByteBuffer.allocate(8).putLong(0, summary.endMillis));
+        appendColumn(segment, "duration.col", ByteBuffer.allocate(4).putInt(0, summary.durationMillis));
+        ByteBuffer contested = ByteBuffer.allocate(countWidth);
+        if (countWidth == 2) {
+            contested.putShort(0, (short) summary.contestedCells);
+        } else {
+            contested.putInt(0, summary.contestedCells);
+        }
+        appendColumn(segment, "contested.col", contested);
+        appendColumn(segment, "board.col", board);
+        appendColumn(segment, "players.off", ByteBuffer.allocate(8).putLong(0, playersOffset));
+
+        // Commit: the match becomes visible to queries once the index says so
+        matchCount = match + 1;
+        writeIndex();
+    }
+
+    /**
+     * Summarizes the most recent matches: win rate per team, average duration and contested squares.
+     * Only the winner, duration and contested columns are read, through read-only memory maps.
+     *
+     * @param lastN Number of most recent matches to include
+     * @return A "name=value" summary line
+     * @throws IOException If a column cannot be mapped
+     */
+    public String summarize(int lastN) throws IOException {
+        long end = matchCount;
+        long start = Math.max(0, end - lastN);
+        long[] wins = new long[teamNames.length];
+        long ties = 0;
+        long totalDuration = 0;
+        long totalContested = 0;
+
+        // Scan segment by segment from the first requested match
+        for (long first = start; first < end; ) {
+            long segmentIndex = first / SEGMENT_MATCHES;
+            long segmentEnd = Math.min(end, (segmentIndex + 1) * SEGMENT_MATCHES);
+            int from = (int) (first % SEGMENT_MATCHES);
+            int count = (int) (segmentEnd - first);
+            Path segment = segmentPath(segmentIndex);
+
+            MappedByteBuffer winners = map(segment.resolve("winner.col"), from, count, 1);
+            MappedByteBuffer durations = map(segment.resolve("duration.col"), from, count, 4);
+            MappedByteBuffer contested = map(segment.resolve("contested.col"), from, count, countWidth);
+            for (int i = 0; i < count; i++) {
+                int winner = winners.get(i);
+                if (winner >= 0 && winner < wins.length) {
+                    wins[winner]++;
+                } else {
+                    ties++;
+                }
+                totalDuration += durations.getInt(i * 4);
+                totalContested += countWidth == 2 ? contested.getShort(i * 2) & 0xFFFF : contested.getInt(i * 4);
+            }
+            first = segmentEnd;
+        }
+
+        long matches = end - start;
+        StringBuilder sb = new StringBuilder("matches=" + matches);
+        for (int team = 0; team < teamNames.length; team++) {
+            sb.append(' ').append(teamNames[team]).append('=').append(percent(wins[team], matches));
+        }
+        sb.append(" TIE=").append(percent(ties, matches));
+        sb.append(" avg_duration_ms=").append(matches == 0 ? 0 : totalDuration / matches);
+        sb.append(" avg_contested=").append(matches == 0 ? "0.0" : String.format("%.1f", totalContested / (double) matches));
+        return sb.toString();
+    }
+
+    /**
+     * Formats a count as a percentage of a total.
+     *
+     * @param count The count
+     * @param total The total
+     * @return The percentage with one decimal place
+     */
+    private static String percent(long count, long total) {
+        return String.format("%.1f%%", total == 0 ? 0.0 : count * 100.0 / total);
+    }
+
+    /**
+     * Maps a range of fixed-width values of a column read-only.
+     *
+     * @param column The column file
+     * @param from Index of the first value
+     * @param count Number of values
+     * @param width Bytes per value
+     * @return The mapped range
+     * @throws IOException If the column cannot be mapped
+     */
+    private static MappedByteBuffer map(Path column, int from, int count, int width) throws IOException {
+        try (FileChannel channel = FileChannel.open(column, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, (long) from * width, (long) count * width);
+        }
+    }
+
+    /**
+     * Writes a count of squares with the archive's count width.
+     *
+     * @param out The output
+     * @param count The count, at most the number of squares
+     * @throws IOException If the write fails
+     */
+    private void writeCount(DataOutputStream out, int count) throws IOException {
+        if (countWidth == 2) {
+            out.writeShort(count);
+        } else {
+            out.writeInt(count);
+        }
+    }
+
+    /**
+     * Appends one fixed-width value to a column.
+     *
+     * @param segment The segment directory
+     * @param column The column file name
+     * @param value The encoded value
+     * @throws IOException If the write fails
+     */
+    private static void appendColumn(Path segment, String column, ByteBuffer value) throws IOException {
+        try (FileChannel channel = openAppend(segment.resolve(column))) {
+            while (value.hasRemaining()) {
+                channel.write(value);
+            }
+        }
+    }
+
+    /**
+     * Opens a file for appending, creating it if needed.
+     *
+     * @param file The file
+     * @return A channel positioned at the end of the file
+     * @throws IOException If the file cannot be opened
+     */
+    private static FileChannel openAppend(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Gets the directory of a segment.
+     *
+     * @param segmentIndex The segment number
+     * @return The segment directory
+     */
+    private Path segmentPath(long segmentIndex) {
+        return directory.resolve(String.format("segment-%05d", segmentIndex));
+    }
+
+    /**
+     * Rewrites the index with the board size and committed match count.
+     *
+     * @throws IOException If the index cannot be written
+     */
+    private void writeIndex() throws IOException {
+        Path index = directory.resolve("archive.idx");
+        Path temp = directory.resolve("archive.idx.tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeLong(matchCount);
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Cuts the current segment's columns back to the committed match count.
+     *
+     * @throws IOException If a column cannot be truncated
+     */
+    private void truncateUncommitted() throws IOException {
+        Path segment = segmentPath(matchCount / SEGMENT_MATCHES);
+        long inSegment = matchCount % SEGMENT_MATCHES;
+        int[] widths = {1, 8, 4, countWidth, rows * cols, 8};
+        for (int i = 0; i < COLUMNS.length; i++) {
+            Path column = segment.resolve(COLUMNS[i]);
+            if (Files.exists(column)) {
+                try (FileChannel channel = FileChannel.open(column, StandardOpenOption.WRITE)) {
+                    channel.truncate(inSegment * widths[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finishes pending appends and stops the archive thread.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
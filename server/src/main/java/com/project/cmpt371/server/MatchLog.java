@@ -0,0 +1,713 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The MatchLog class is a write-ahead log of the accepted state transitions of a match.
+ * Callers append small binary records without blocking; a single writer thread drains
+ * everything queued since its last write, appends the batch through a FileChannel and
+ * forces it to disk once per batch (group commit).
+ * <p>
+ * Periodic snapshots capture the whole board and roster. A snapshot is written to a
+ * temporary file, moved into place, and the log is then truncated, so recovery only has to
+ * read one snapshot and a short tail of records. A crash between the move and the truncation
+ * leaves records the snapshot already covers; they are replayed after it, so a listener must
+ * apply them idempotently (a join of a player already on the team changes nothing).
+ * <p>
+ * If a write fails, the writer reports it and stops. Records appended from then on, and those
+ * still queued, are dropped and counted ({@link #getDroppedCount()}) instead of piling up in memory.
+ * <p>
+ * The log can also be shipped to standby servers. A replica first receives a snapshot and then
+ * every batch once it is on disk, in the same binary format, with heartbeats while nothing is
+ * appended. {@link #follow(DataInputStream, Listener)} applies such a stream on the standby.
+ */
+public class MatchLog implements Closeable {
+    /** Record type for a square being claimed by a team */
+    static final byte CLAIM = 1;
+
+    /** Record type for a player starting to hold a square */
+    static final byte HOLD = 2;
+
+    /** Record type for a player releasing a square */
+    static final byte RELEASE = 3;
+
+    /** Record type for a player joining a team */
+    static final byte JOIN = 4;
+
+    /** Record type for a player leaving a team */
+    static final byte LEAVE = 5;
+
+    /** Record type for the board and rosters being cleared */
+    static final byte RESET = 6;
+
+    /** Record type sent to replicas while nothing is appended (never written to the log file) */
+    static final byte HEARTBEAT = 7;
+
+    /** Record type for the board being cleared for a rematch, keeping the rosters */
+    static final byte NEW_ROUND = 8;
+
+    /** Marks the start of a snapshot file */
+    private static final int SNAPSHOT_MAGIC = 0x54424353; // "TBCS"
+
+    /** Team index used for unclaimed squares in snapshots */
+    static final int NO_TEAM = -1;
+
+    /** Size of the reusable write buffer; larger batches are written in several chunks */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /** Queue item that asks the writer thread to stop */
+    private static final byte[] STOP = new byte[0];
+
+    /**
+     * Receives the transitions read back from a snapshot and the log during recovery.
+     */
+    public interface Listener {
+        /**
+         * Called when the recovered state must be cleared.
+         */
+        void onReset();
+
+        /**
+         * Called when the board is cleared for the next game; the rosters stay.
+         */
+        void onNewRound();
+
+        /**
+         * Called for a square claimed by a team.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         * @param team The team index
+         */
+        void onClaim(int row, int col, int team);
+
+        /**
+         * Called for a player that started holding a square.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         * @param team The team index
+         */
+        void onHold(int row, int col, int team);
+
+        /**
+         * Called for a player that released a square.
+         *
+         * @param row The row of the square
+         * @param col The column of the square
+         * @param team The team index
+         */
+        void onRelease(int row, int col, int team);
+
+        /**
+         * Called for a player that joined a team.
+         *
+         * @param playerName The player's name
+         * @param team The team index
+         */
+        void onJoin(String playerName, int team);
+
+        /**
+         * Called for a player that left a team.
+         *
+         * @param playerName The player's name
+         * @param team The team index
+         */
+        void onLeave(String playerName, int team);
+    }
+
+    /**
+     * A point-in-time copy of the board and rosters, built under the game locks and
+     * written by the writer thread.
+     */
+    public static class Snapshot {
+        /** Owning team index of every square, or NO_TEAM */
+        final int[][] board;
+
+        /** Player names in roster order */
+        final List<String> playerNames;
+
+        /** Team index of each player, parallel to playerNames */
+        final List<Integer> playerTeams;
+
+        /**
+         * Creates a snapshot of the given board with an empty roster.
+         *
+         * @param board The owning team index of every square (copied by the caller)
+         */
+        public Snapshot(int[][] board) {
+            this.board = board;
+            this.playerNames = new ArrayList<>();
+            this.playerTeams = new ArrayList<>();
+        }
+
+        /**
+         * Adds a player to the snapshot roster.
+         *
+         * @param playerName The player's name
+         * @param team The team index
+         */
+        public void addPlayer(String playerName, int team) {
+            playerNames.add(playerName);
+            playerTeams.add(team);
+        }
+    }
+
+    /** Path of the append-only record log */
+    private final Path logPath;
+
+    /** Path of the latest snapshot */
+    private final Path snapshotPath;
+
+    /** Channel the writer thread appends records to */
+    private final FileChannel channel;
+
+    /** Records and snapshot requests waiting for the writer thread, in append order */
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+    /** Thread that performs all file I/O */
+    private final Thread writerThread;
+
+    /** Reused buffer for batching records into a single write */
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+    /** Number of records in writeBuffer and not yet on disk (only used by the writer thread) */
+    private int bufferedRecords;
+
+    /** True once a write has failed and the writer has stopped */
+    private volatile boolean failed;
+
+    /** Number of records dropped because the writer had stopped */
+    private final LongAdder droppedRecords = new LongAdder();
+
+    /** Standby servers the log is shipped to (changed only by the writer thread) */
+    private final List<ReplicaStream> replicas = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens (creating if needed) the log and snapshot files in the given directory.
+     * Call {@link #recover(Listener)} before appending anything new.
+     *
+     * @param directory Directory that holds the log files
+     * @throws IOException If the files cannot be opened
+     */
+    public MatchLog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        logPath = directory.resolve("match.log");
+        snapshotPath = directory.resolve("match.snapshot");
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        writerThread = new Thread(this::writeLoop, "match-log-writer");
+        writerThread.setDaemon(true);
+    }
+
+    /**
+     * Replays the latest snapshot and every complete record after it, then starts the writer thread.
+     * A partially written record at the end of the log (from a crash mid-write) is discarded.
+     *
+     * @param listener Receives the recovered transitions in order
+     * @return The number of log records replayed after the snapshot
+     * @throws IOException If the files cannot be read
+     */
+    public int recover(Listener listener) throws IOException {
+        if (Files.exists(snapshotPath)) {
+            readSnapshot(listener);
+        }
+
+        // Replay complete records and remember where the last one ended
+        // (the log is truncated at every snapshot, so it is small enough to read at once)
+        byte[] data = Files.readAllBytes(logPath);
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        int records = 0;
+        long validLength = 0;
+        try {
+            while (readRecord(in, listener)) {
+                records++;
+                validLength = data.length - bytes.available();
+            }
+        } catch (EOFException e) {
+            // Torn record at the tail - everything before it was replayed
+        }
+
+        // Drop any torn tail and continue appending after the last good record
+        channel.truncate(validLength);
+        channel.position(validLength);
+        writerThread.start();
+        return records;
+    }
+
+    /**
+     * Reads one record and passes it to the listener.
+     *
+     * @param in The log input
+     * @param listener The recovery listener
+     * @return false at the end of the log (or on an unknown record type)
+     * @throws IOException If the record is incomplete
+     */
+    private static boolean readRecord(DataInputStream in, Listener listener) throws IOException {
+        int type = in.read();
+        switch (type) {
+            case CLAIM:
+                listener.onClaim(in.readShort(), in.readShort(), in.readByte());
+                return true;
+            case HOLD:
+                listener.onHold(in.readShort(), in.readShort(), in.readByte());
+                return true;
+            case RELEASE:
+                listener.onRelease(in.readShort(), in.readShort(), in.readByte());
+                return true;
+            case JOIN: {
+                int team = in.readByte();
+                listener.onJoin(in.readUTF(), team);
+                return true;
+            }
+            case LEAVE: {
+                int team = in.readByte();
+                listener.onLeave(in.readUTF(), team);
+                return true;
+            }
+            case RESET:
+                listener.onReset();
+                return true;
+            case NEW_ROUND:
+                listener.onNewRound();
+                return true;
+            case HEARTBEAT:
+                return true;
+            default:
+                // End of file, or zero-filled space after a crash
+                return false;
+        }
+    }
+
+    /**
+     * Replays the snapshot file as a reset followed by claims and joins.
+     *
+     * @param listener The recovery listener
+     * @throws IOException If the snapshot is unreadable
+     */
+    private void readSnapshot(Listener listener) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            readSnapshot(in, listener);
+        }
+    }
+
+    /**
+     * Applies a replication stream from a primary: a snapshot followed by records and heartbeats.
+     * Returns only by throwing, when the stream ends or the input's read timeout expires, which
+     * is how a standby notices that its primary is gone.
+     *
+     * @param in The replication stream
+     * @param listener Receives the replicated transitions in order
+     * @throws IOException When the stream ends, stalls or is corrupt
+     */
+    public static void follow(DataInputStream in, Listener listener) throws IOException {
+        readSnapshot(in, listener);
+        while (readRecord(in, listener)) {
+            // Applied by the listener
+        }
+        throw new EOFException("Replication stream ended");
+    }
+
+    /**
+     * Reads a snapshot and replays it as a reset followed by claims and joins.
+     *
+     * @param in The snapshot input
+     * @param listener The recovery listener
+     * @throws IOException If the snapshot is unreadable
+     */
+    private static void readSnapshot(DataInputStream in, Listener listener) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a match snapshot");
+        }
+        listener.onReset();
+        int rows = in.readShort();
+        int cols = in.readShort();
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int team = in.readByte();
+                if (team != NO_TEAM) {
+                    listener.onClaim(row, col, team);
+                }
+            }
+        }
+        int players = in.readShort();
+        for (int i = 0; i < players; i++) {
+            int team = in.readByte();
+            listener.onJoin(in.readUTF(), team);
+        }
+    }
+
+    /**
+     * Appends a claim record.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     * @param team The team index
+     */
+    public void logClaim(int row, int col, int team) {
+        append(encodeCell(CLAIM, row, col, team));
+    }
+
+    /**
+     * Appends a hold record.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     * @param team The team index
+     */
+    public void logHold(int row, int col, int team) {
+        append(encodeCell(HOLD, row, col, team));
+    }
+
+    /**
+     * Appends a release record.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     * @param team The team index
+     */
+    public void logRelease(int row, int col, int team) {
+        append(encodeCell(RELEASE, row, col, team));
+    }
+
+    /**
+     * Appends a join record.
+     *
+     * @param playerName The player's name
+     * @param team The team index
+     */
+    public void logJoin(String playerName, int team) {
+        append(encodePlayer(JOIN, playerName, team));
+    }
+
+    /**
+     * Appends a leave record.
+     *
+     * @param playerName The player's name
+     * @param team The team index
+     */
+    public void logLeave(String playerName, int team) {
+        append(encodePlayer(LEAVE, playerName, team));
+    }
+
+    /**
+     * Appends a reset record.
+     */
+    public void logReset() {
+        append(new byte[]{RESET});
+    }
+
+    /**
+     * Appends a new round record.
+     */
+    public void logNewRound() {
+        append(new byte[]{NEW_ROUND});
+    }
+
+    /**
+     * Queues a snapshot. Once written, the log is truncated because the snapshot covers
+     * every record appended before it.
+     *
+     * @param snapshot The snapshot, built while holding the game locks so it matches the log order
+     */
+    public void snapshot(Snapshot snapshot) {
+        if (!failed) {
+            queue.add(snapshot);
+        }
+    }
+
+    /**
+     * Starts shipping the log to a standby server. The replica is sent the snapshot first and
+     * then every record appended after it.
+     *
+     * @param socket Connection to the standby
+     * @param snapshot The current state, built while holding the game locks so it matches the log order
+     * @param heartbeatMillis Interval of the heartbeats sent while nothing is appended
+     */
+    public void attachReplica(Socket socket, Snapshot snapshot, int heartbeatMillis) {
+        if (failed) {
+            // Nothing would be shipped, so the standby should not think it is following
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            return;
+        }
+        queue.add(new ReplicaAttach(socket, snapshot, heartbeatMillis));
+    }
+
+    /**
+     * Gets the number of records dropped because a write failed and the writer stopped.
+     *
+     * @return The dropped record count
+     */
+    public long getDroppedCount() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * Queues a record for the writer thread, or counts it as dropped if the writer has stopped.
+     *
+     * @param record The encoded record
+     */
+    private void append(byte[] record) {
+        if (failed) {
+            droppedRecords.increment();
+            return;
+        }
+        queue.add(record);
+        // The writer may have failed and drained the queue in between; if so it missed this record
+        if (failed && queue.remove(record)) {
+            droppedRecords.increment();
+        }
+    }
+
+    /**
+     * Gets the number of standby servers the log is shipped to.
+     *
+     * @return The number of live replicas
+     */
+    public int getReplicaCount() {
+        replicas.removeIf(ReplicaStream::isClosed);
+        return replicas.size();
+    }
+
+    /**
+     * Encodes a cell record: type, row, column and team.
+     *
+     * @param type The record type
+     * @param row The row of the square
+     * @param col The column of the square
+     * @param team The team index
+     * @return The encoded record
+     */
+    private static byte[] encodeCell(byte type, int row, int col, int team) {
+        return new byte[]{type, (byte) (row >> 8), (byte) row, (byte) (col >> 8), (byte) col, (byte) team};
+    }
+
+    /**
+     * Encodes a player record: type, team and name.
+     *
+     * @param type The record type
+     * @param playerName The player's name
+     * @param team The team index
+     * @return The encoded record
+     */
+    private static byte[] encodePlayer(byte type, String playerName, int team) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + playerName.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeByte(team);
+            out.writeUTF(playerName);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writer thread loop: takes everything queued, writes it as one batch and forces it to disk.
+     */
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        int next = 0;
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (next = 0; next < batch.size(); next++) {
+                    Object item = batch.get(next);
+                    if (item == STOP) {
+                        flushBatch();
+                        return;
+                    } else if (item instanceof Snapshot) {
+                        flushBatch();
+                        writeSnapshot((Snapshot) item);
+                    } else if (item instanceof ReplicaAttach) {
+                        flushBatch();
+                        startReplica((ReplicaAttach) item);
+                    } else {
+                        byte[] record = (byte[]) item;
+                        if (writeBuffer.remaining() < record.length) {
+                            flushBatch();
+                        }
+                        writeBuffer.put(record);
+                        bufferedRecords++;
+                    }
+                }
+                flushBatch();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Stop accepting records first, then count everything that will never be written:
+            // the unflushed buffer, the rest of the batch and whatever is still queued
+            failed = true;
+            List<Object> unwritten = new ArrayList<>(batch.subList(Math.min(next, batch.size()), batch.size()));
+            queue.drainTo(unwritten);
+            long dropped = bufferedRecords;
+            for (Object item : unwritten) {
+                if (item instanceof ReplicaAttach) {
+                    try {
+                        ((ReplicaAttach) item).socket.close();
+                    } catch (IOException closeFailure) {
+                        // Already closed
+                    }
+                } else if (item instanceof byte[] && item != STOP) {
+                    dropped++;
+                }
+            }
+            droppedRecords.add(dropped);
+            System.out.println("Match log writer failed, no longer logging: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes and forces any buffered records.
+     *
+     * @throws IOException If the write fails
+     */
+    private void flushBatch() throws IOException {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        byte[] shipped = null;
+        if (!replicas.isEmpty()) {
+            shipped = new byte[writeBuffer.remaining()];
+            writeBuffer.duplicate().get(shipped);
+        }
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+        channel.force(false);
+        bufferedRecords = 0;
+
+        // Replicas only see records that are already durable here
+        if (shipped != null) {
+            byte[] batch = shipped;
+            replicas.removeIf(replica -> !replica.send(batch));
+        }
+    }
+
+    /**
+     * Sends a new replica its starting snapshot and adds it to the replicas shipped to.
+     *
+     * @param attach The replica connection and its snapshot
+     */
+    private void startReplica(ReplicaAttach attach) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeSnapshot(out, attach.snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ReplicaStream replica = new ReplicaStream(attach.socket, attach.heartbeatMillis);
+        replica.send(bytes.toByteArray());
+        Thread sender = new Thread(replica, "replica-" + attach.socket.getRemoteSocketAddress());
+        sender.setDaemon(true);
+        sender.start();
+        replicas.add(replica);
+    }
+
+    /**
+     * Writes a snapshot atomically and truncates the log it supersedes.
+     *
+     * @param snapshot The snapshot to write
+     * @throws IOException If the snapshot cannot be written
+     */
+    private void writeSnapshot(Snapshot snapshot) throws IOException {
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            writeSnapshot(out, snapshot);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.truncate(0);
+        channel.position(0);
+    }
+
+    /**
+     * Encodes a snapshot: magic, board dimensions, the owner of every square and the roster.
+     *
+     * @param out The output to write to
+     * @param snapshot The snapshot to write
+     * @throws IOException If the write fails
+     */
+    private static void writeSnapshot(DataOutputStream out, Snapshot snapshot) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        int rows = snapshot.board.length;
+        int cols = rows == 0 ? 0 : snapshot.board[0].length;
+        out.writeShort(rows);
+        out.writeShort(cols);
+        for (int[] boardRow : snapshot.board) {
+            for (int team : boardRow) {
+                out.writeByte(team);
+            }
+        }
+        out.writeShort(snapshot.playerNames.size());
+        for (int i = 0; i < snapshot.playerNames.size(); i++) {
+            out.writeByte(snapshot.playerTeams.get(i));
+            out.writeUTF(snapshot.playerNames.get(i));
+        }
+    }
+
+    /**
+     * Writes everything queued so far and stops the writer thread.
+     *
+     * @throws IOException If the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        queue.add(STOP);
+        try {
+            writerThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        for (ReplicaStream replica : replicas) {
+            replica.close();
+        }
+    }
+
+    /**
+     * Queue item that asks the writer thread to start shipping the log to a standby.
+     */
+    private static class ReplicaAttach {
+        /** Connection to the standby */
+        final Socket socket;
+
+        /** State the standby starts from */
+        final Snapshot snapshot;
+
+        /** Interval of the heartbeats sent while nothing is appended (milliseconds) */
+        final int heartbeatMillis;
+
+        /**
+         * Creates the request.
+         *
+         * @param socket Connection to the standby
+         * @param snapshot State the standby starts from
+         * @param heartbeatMillis Heartbeat interval
+         */
+        ReplicaAttach(Socket socket, Snapshot snapshot, int heartbeatMillis) {
+            this.socket = socket;
+            this.snapshot = snapshot;
+            this.heartbeatMillis = heartbeatMillis;
+        }
+    }
+}
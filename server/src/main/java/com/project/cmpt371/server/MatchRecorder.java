@@ -0,0 +1,160 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongFunction;
+
+/**
+ * The MatchRecorder class records the ordered input stream of each match so it can be replayed
+ * by {@link MatchReplay}. Each match goes to its own text file with one input per line:
+ * <pre>
+ *   &lt;nanos since match start&gt; &lt;client id&gt; &lt;message&gt;
+ * </pre>
+ * Player inputs (PLAYER_INFO, HOLD_START, HOLD_END, CHAT, DISCONNECT) use the client's ID and
+ * claim timer expirations use "-" (TIMER row col). The file ends with the expected outcome
+ * (GAME_OVER winner board). Players that joined before the file started are introduced with a
+ * ROSTER line before their first input.
+ * <p>
+ * Inputs are recorded by the server while it holds the lock that orders them, so the file order
+ * is the order the rules saw. Holds are queued as numbers and formatted, like every line's
+ * prefix, on a dedicated thread that also performs the file writes.
+ */
+public class MatchRecorder {
+    /** Directory recordings are written to */
+    private final Path directory;
+
+    /** Thread that performs all file I/O, in submission order */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "match-recorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Client IDs already introduced in the current recording */
+    private final Set<String> knownClients = new HashSet<>();
+
+    /** Writer for the current recording, or null between matches (only used on the writer thread) */
+    private BufferedWriter out;
+
+    /** Time the current recording started, or 0 between matches */
+    private long matchStartNanos;
+
+    /**
+     * Creates a recorder writing to the given directory.
+     *
+     * @param directory Directory for recording files
+     * @throws IOException If the directory cannot be created
+     */
+    public MatchRecorder(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Records an input from a player, introducing the player first if needed.
+     *
+     * @param client The player's handler
+     * @param message The input message
+     */
+    public synchronized void recordInput(GameServer.ClientHandler client, String message) {
+        introduce(client, message.startsWith("PLAYER_INFO"));
+        write(client.getClientId(), message);
+    }
+
+    /**
+     * Records a HOLD_START or HOLD_END from a player. The line is formatted on the writer thread,
+     * so the caller, which holds the board lock, does not build it.
+     *
+     * @param client The player's handler
+     * @param type "HOLD_START" or "HOLD_END"
+     * @param row The row of the square
+     * @param col The column of the square
+     */
+    public synchronized void recordHold(GameServer.ClientHandler client, String type, int row, int col) {
+        introduce(client, false);
+        String clientId = client.getClientId();
+        queue(now -> now + " " + clientId + " " + type + " " + row + " " + col);
+    }
+
+    /**
+     * Introduces a player with a ROSTER line if this is their first input in the recording.
+     *
+     * @param client The player's handler
+     * @param joining true if the input is the player's PLAYER_INFO, which introduces them itself
+     */
+    private void introduce(GameServer.ClientHandler client, boolean joining) {
+        String clientId = client.getClientId();
+        if (knownClients.add(clientId) && !joining) {
+            // Player joined before this recording started
+            write(clientId, "ROSTER " + client.getPlayerName() + " " + client.getTeam());
+        }
+    }
+
+    /**
+     * Records a claim timer expiration.
+     *
+     * @param row The row of the square
+     * @param col The column of the square
+     */
+    public synchronized void recordTimer(int row, int col) {
+        write("-", "TIMER " + row + " " + col);
+    }
+
+    /**
+     * Records the outcome of the match and closes its recording.
+     *
+     * @param result The winner followed by the final GAME_STATE
+     */
+    public synchronized void recordGameOver(String result) {
+        write("-", "GAME_OVER " + result);
+        knownClients.clear();
+        matchStartNanos = 0;
+        writer.execute(() -> {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to close match recording: " + e.getMessage());
+            }
+            out = null;
+        });
+    }
+
+    /**
+     * Queues one line for the current recording.
+     *
+     * @param clientId The client ID column
+     * @param message The message column
+     */
+    private void write(String clientId, String message) {
+        queue(now -> now + " " + clientId + " " + message);
+    }
+
+    /**
+     * Queues one line for the current recording, starting a new file if needed.
+     *
+     * @param line Formats the line on the writer thread, given its nanos since the match start
+     */
+    private void queue(LongFunction<String> line) {
+        long now = System.nanoTime();
+        if (matchStartNanos == 0) {
+            matchStartNanos = now;
+        }
+        long elapsed = now - matchStartNanos;
+        writer.execute(() -> {
+            try {
+                if (out == null) {
+                    out = Files.newBufferedWriter(directory.resolve("match-" + System.currentTimeMillis() + ".rec"));
+                }
+                out.write(line.apply(elapsed));
+                out.newLine();
+                out.flush();
+            } catch (IOException e) {
+                System.out.println("Failed to write match recording: " + e.getMessage());
+            }
+        });
+    }
+}
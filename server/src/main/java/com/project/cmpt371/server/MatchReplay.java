@@ -0,0 +1,170 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * MatchReplay replays a recording made by {@link MatchRecorder} through the GameServer rules,
+ * headless and in a single thread. Players are driven by connectionless ClientHandlers and
+ * claim timers fire exactly where the recording says they did, so the replay is deterministic.
+ * It checks that the replay ends in the recorded GAME_OVER with the same final board.
+ * <p>
+ * Usage: {@code MatchReplay <recording.rec> [--speed <factor>] [--repeat <count>]}
+ * <ul>
+ *   <li>Without --speed the inputs are applied as fast as possible; with it the recorded gaps
+ *       are replayed divided by the factor (1 = real time).</li>
+ *   <li>--repeat replays the file several times and reports throughput, for benchmarking rule changes.</li>
+ * </ul>
+ */
+public class MatchReplay {
+    /**
+     * One recorded input.
+     */
+    private static class Input {
+        /** Nanoseconds since the start of the match */
+        final long nanos;
+
+        /** Client ID, or "-" for server events */
+        final String clientId;
+
+        /** The recorded message */
+        final String message;
+
+        /**
+         * Creates an input.
+         *
+         * @param nanos Nanoseconds since the start of the match
+         * @param clientId Client ID, or "-" for server events
+         * @param message The recorded message
+         */
+        Input(long nanos, String clientId, String message) {
+            this.nanos = nanos;
+            this.clientId = clientId;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Main method that replays a recording and reports whether it matched.
+     *
+     * @param args The recording path, optionally followed by --speed and --repeat
+     * @throws Exception If the recording cannot be read or replayed
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: MatchReplay <recording.rec> [--speed <factor>] [--repeat <count>]");
+            System.exit(2);
+        }
+        double speed = 0;
+        int repeat = 1;
+        for (int i = 1; i < args.length - 1; i += 2) {
+            if (args[i].equals("--speed")) {
+                speed = Double.parseDouble(args[i + 1]);
+            } else if (args[i].equals("--repeat")) {
+                repeat = Integer.parseInt(args[i + 1]);
+            }
+        }
+
+        List<Input> inputs = readRecording(Paths.get(args[0]));
+        String expected = null;
+        for (Input input : inputs) {
+            if (input.message.startsWith("GAME_OVER ")) {
+                expected = input.message.substring("GAME_OVER ".length());
+            }
+        }
+
+        // Replay and compare with the recorded outcome
+        boolean matched = true;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            String actual = replay(inputs, speed);
+            if (!Objects.equals(expected, actual)) {
+                matched = false;
+                System.out.println("Replay diverged on run " + (i + 1));
+                System.out.println("  expected: " + expected);
+                System.out.println("  actual:   " + actual);
+                break;
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.printf("Replayed %d inputs x %d in %.1f ms (%.0f inputs/s, recorded match took %.1f s)%n",
+                inputs.size(), repeat, elapsedNanos / 1_000_000.0, inputs.size() * (double) repeat / seconds,
+                inputs.isEmpty() ? 0 : inputs.get(inputs.size() - 1).nanos / 1_000_000_000.0);
+        System.out.println(matched ? "Replay matched the recorded outcome" : "Replay did NOT match the recorded outcome");
+        System.exit(matched ? 0 : 1);
+    }
+
+    /**
+     * Reads a recording file.
+     *
+     * @param path The recording path
+     * @return The inputs in recorded order
+     * @throws IOException If the file cannot be read
+     */
+    private static List<Input> readRecording(Path path) throws IOException {
+        List<Input> inputs = new ArrayList<>();
+        for (String line : Files.readAllLines(path)) {
+            String[] parts = line.split(" ", 3);
+            if (parts.length == 3) {
+                inputs.add(new Input(Long.parseLong(parts[0]), parts[1], parts[2]));
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Replays the inputs against a fresh board.
+     *
+     * @param inputs The recorded inputs
+     * @param speed Replay speed factor, or 0 to run as fast as possible
+     * @return The winner and final board of the replayed game, or null if it did not finish
+     * @throws IOException If the rules fail to process an input
+     * @throws InterruptedException If interrupted while pacing the replay
+     */
+    private static String replay(List<Input> inputs, double speed) throws IOException, InterruptedException {
+        GameServer.startReplay();
+        Map<String, GameServer.ClientHandler> players = new HashMap<>();
+        long start = System.nanoTime();
+
+        for (Input input : inputs) {
+            if (speed > 0) {
+                // Pace the replay relative to the recorded timestamps
+                long due = start + (long) (input.nanos / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            }
+
+            String message = input.message;
+            if (message.startsWith("TIMER ")) {
+                String[] parts = message.split(" ");
+                GameServer.expireClaimTimer(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            } else if (message.startsWith("GAME_OVER ")) {
+                break;
+            } else {
+                GameServer.ClientHandler player = players.get(input.clientId);
+                if (player == null) {
+                    player = new GameServer.ClientHandler(input.clientId);
+                    players.put(input.clientId, player);
+                    GameServer.addReplayClient(player);
+                }
+                if (message.startsWith("PLAYER_INFO")) {
+                    player.handlePlayerInfo(message);
+                } else if (message.startsWith("ROSTER ")) {
+                    String[] parts = message.split(" ");
+                    player.assumeIdentity(parts[1], parts[2]);
+                } else if (message.equals("DISCONNECT")) {
+                    player.disconnect();
+                    players.remove(input.clientId);
+                } else {
+                    player.handleMessage(message);
+                }
+            }
+        }
+        return GameServer.getLastGameOver();
+    }
+}
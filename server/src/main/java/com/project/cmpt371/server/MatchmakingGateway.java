@@ -0,0 +1,480 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The MatchmakingGateway class is a standalone process that spreads players across several
+ * GameServer processes (rooms), which can run on the same or different hosts.
+ * <p>
+ * Players connect to the gateway as if it were a game server. The gateway tracks every room's team
+ * occupancy through a lobby subscription (see {@link LobbyConnection}). Each PLAYER_INFO is placed
+ * in the fullest room that still has space on the requested team, so rooms fill up and start
+ * matches instead of every room getting one or two players. Once a room accepts the player, the
+ * gateway proxies the connection byte for byte, so client and server speak the normal protocol.
+ * RESUME is routed to the room that issued the token.
+ * <p>
+ * Launchers can subscribe to the gateway's lobby too. It reports, per team, the smallest count
+ * across the rooms that are not full, which shows whether a team has a free slot anywhere.
+ * <p>
+ * Usage: {@code java com.project.cmpt371.server.MatchmakingGateway <listen port> <host:port> [<host:port> ...]}
+ */
+public class MatchmakingGateway {
+    /** How long a new connection or a room has to send its first message (milliseconds) */
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+    /** Interval between checks of the room subscriptions, reconnecting lost ones (milliseconds) */
+    private static final int BACKEND_CHECK_MS = 1000;
+
+    /** Number of resume tokens remembered for routing RESUME */
+    private static final int SESSION_CACHE_SIZE = 4096;
+
+    /** The rooms players are placed in */
+    private final List<Backend> backends = new ArrayList<>();
+
+    /** Room of each issued resume token, least recently used first (guarded by itself) */
+    private final Map<String, Backend> sessions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Backend> eldest) {
+            return size() > SESSION_CACHE_SIZE;
+        }
+    };
+
+    /** Output streams of launchers subscribed to the gateway lobby (guarded by itself) */
+    private final Set<DataOutputStream> lobbySubscribers = new HashSet<>();
+
+    /** Last TEAM_STATUS pushed to the lobby subscribers (guarded by lobbySubscribers) */
+    private String lastTeamStatus;
+
+    /** Runs the connection handlers and the proxy pumps */
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    /**
+     * Starts a gateway.
+     *
+     * @param args Listen port followed by one host:port per room
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: MatchmakingGateway <listen port> <host:port> [<host:port> ...]");
+            return;
+        }
+        MatchmakingGateway gateway = new MatchmakingGateway();
+        for (int i = 1; i < args.length; i++) {
+            int colon = args[i].lastIndexOf(':');
+            gateway.backends.add(new Backend(args[i].substring(0, colon), Integer.parseInt(args[i].substring(colon + 1))));
+        }
+        gateway.run(Integer.parseInt(args[0]));
+    }
+
+    /**
+     * Starts watching the rooms and accepts players.
+     *
+     * @param port The port players connect to
+     */
+    private void run(int port) {
+        Thread monitor = new Thread(this::monitorBackends, "backend-monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            System.out.println("Matchmaking gateway on port " + port + " for " + backends.size() + " rooms");
+            while (true) {
+                Socket client = serverSocket.accept();
+                executorService.execute(() -> handle(client));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Keeps a lobby subscription open to every room, reconnecting rooms that went away.
+     */
+    private void monitorBackends() {
+        while (true) {
+            for (Backend backend : backends) {
+                LobbyConnection lobby = backend.lobby;
+                if (lobby != null && lobby.isOpen()) {
+                    continue;
+                }
+                if (lobby != null) {
+                    System.out.println("Room " + backend + " is down");
+                    backend.lobby = null;
+                    publishTeamStatus();
+                }
+                try {
+                    lobby = LobbyConnection.open(backend.host, backend.port);
+                } catch (IOException e) {
+                    // Not running yet; try again on the next check
+                    continue;
+                }
+                if (lobby != null) {
+                    lobby.setOnChange(this::publishTeamStatus);
+                    backend.lobby = lobby;
+                    System.out.println("Room " + backend + " is up");
+                    publishTeamStatus();
+                }
+            }
+            try {
+                Thread.sleep(BACKEND_CHECK_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serves one connection: answers status requests and the lobby, then places or resumes the player.
+     *
+     * @param client The player's connection
+     */
+    private void handle(Socket client) {
+        try {
+            client.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            DataInputStream in = new DataInputStream(client.getInputStream());
+            DataOutputStream out = new DataOutputStream(client.getOutputStream());
+            String message = in.readUTF();
+
+            if (message.equals("CHECK_CAPACITY")) {
+                out.writeUTF(hasFreeSlot() ? "OK" : "SERVER_FULL");
+                client.close();
+                return;
+            } else if (message.equals("TEAM_STATUS_REQUEST")) {
+                out.writeUTF(encodeTeamStatus());
+                client.close();
+                return;
+            } else if (message.equals("LOBBY_SUBSCRIBE")) {
+                client.setSoTimeout(0);
+                watchLobby(in, out);
+                client.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                message = in.readUTF();
+            }
+
+            if (message.startsWith("PLAYER_INFO")) {
+                place(client, out, message);
+            } else if (message.startsWith("RESUME ")) {
+                resume(client, out, message);
+            } else {
+                client.close();
+            }
+        } catch (IOException e) {
+            closeQuietly(client);
+        }
+    }
+
+    /**
+     * Pushes the combined occupancy to a launcher until it sends LOBBY_UPGRADE while some room has
+     * space. A full gateway answers SERVER_FULL and keeps the launcher subscribed, like a room does.
+     *
+     * @param in Input stream of the launcher
+     * @param out Output stream of the launcher
+     * @throws IOException If the launcher goes away
+     */
+    private void watchLobby(DataInputStream in, DataOutputStream out) throws IOException {
+        synchronized (lobbySubscribers) {
+            lobbySubscribers.add(out);
+            send(out, encodeTeamStatus());
+        }
+        try {
+            while (true) {
+                if (!in.readUTF().equals("LOBBY_UPGRADE")) {
+                    continue;
+                }
+                synchronized (lobbySubscribers) {
+                    if (!hasFreeSlot()) {
+                        send(out, "SERVER_FULL");
+                        continue;
+                    }
+                    lobbySubscribers.remove(out);
+                    send(out, "LOBBY_CLOSED");
+                    return;
+                }
+            }
+        } finally {
+            synchronized (lobbySubscribers) {
+                lobbySubscribers.remove(out);
+            }
+        }
+    }
+
+    /**
+     * Places a player in a room and proxies the connection there.
+     * Rooms are tried fullest first; a room that turns the player away (it filled up since its
+     * last TEAM_STATUS) is skipped for the next one.
+     *
+     * @param client The player's connection
+     * @param out Output stream of the player
+     * @param message The PLAYER_INFO message
+     * @throws IOException If the player cannot be answered
+     */
+    private void place(Socket client, DataOutputStream out, String message) throws IOException {
+        String[] parts = message.split(" ");
+        String team = parts.length > 2 ? parts[2] : "";
+        for (Backend backend : candidates(team)) {
+            if (connect(backend, client, out, message)) {
+                return;
+            }
+        }
+        out.writeUTF("TEAM_FULL");
+        client.close();
+    }
+
+    /**
+     * Routes a RESUME to the room that issued the token.
+     *
+     * @param client The player's connection
+     * @param out Output stream of the player
+     * @param message The RESUME message
+     * @throws IOException If the player cannot be answered
+     */
+    private void resume(Socket client, DataOutputStream out, String message) throws IOException {
+        Backend backend;
+        synchronized (sessions) {
+            backend = sessions.get(message.split(" ")[1]);
+        }
+        if (backend == null || !connect(backend, client, out, message)) {
+            out.writeUTF("RESUME_FAILED");
+            client.close();
+        }
+    }
+
+    /**
+     * Sends a player's handshake to a room and, if the room accepts, forwards its answer and
+     * proxies the connection from then on.
+     *
+     * @param backend The room
+     * @param client The player's connection
+     * @param out Output stream of the player
+     * @param handshake The PLAYER_INFO or RESUME message
+     * @return true if the room accepted the player, false if it turned the player away or is unreachable
+     */
+    private boolean connect(Backend backend, Socket client, DataOutputStream out, String handshake) {
+        Socket server = new Socket();
+        String reply;
+        try {
+            server.connect(new InetSocketAddress(backend.host, backend.port), HANDSHAKE_TIMEOUT_MS);
+            server.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            DataOutputStream serverOut = new DataOutputStream(server.getOutputStream());
+            serverOut.writeUTF(handshake);
+            serverOut.flush();
+            // Unbuffered, so nothing after the answer is read ahead of the proxy
+            reply = new DataInputStream(server.getInputStream()).readUTF();
+        } catch (IOException e) {
+            closeQuietly(server);
+            return false;
+        }
+        if (!reply.startsWith("TEAM_ASSIGNMENT") && !reply.startsWith("RESUMED")) {
+            // TEAM_FULL, NAME_IN_USE, SERVER_FULL or RESUME_FAILED
+            closeQuietly(server);
+            return false;
+        }
+
+        // Remember where the session lives, so a RESUME after a dropped connection finds it
+        String[] parts = reply.split(" ");
+        if (parts.length > 3) {
+            synchronized (sessions) {
+                sessions.put(parts[3], backend);
+            }
+        }
+        try {
+            out.writeUTF(reply);
+            out.flush();
+            client.setSoTimeout(0);
+            server.setSoTimeout(0);
+        } catch (IOException e) {
+            // The room notices the closed socket and holds the slot for a RESUME
+            closeQuietly(server);
+            closeQuietly(client);
+            return true;
+        }
+        System.out.println((reply.startsWith("RESUMED") ? "Resumed " : "Placed ") + parts[2] + " on " + parts[1] + " in room " + backend);
+        executorService.execute(() -> pump(client, server));
+        executorService.execute(() -> pump(server, client));
+        return true;
+    }
+
+    /**
+     * Copies bytes from one socket to the other until either side closes, then closes both.
+     *
+     * @param from The socket to read from
+     * @param to The socket to write to
+     */
+    private static void pump(Socket from, Socket to) {
+        try {
+            from.getInputStream().transferTo(to.getOutputStream());
+        } catch (IOException e) {
+            // Either side went away
+        } finally {
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+    }
+
+    /**
+     * Lists the rooms that can take a player on a team, fullest first.
+     *
+     * @param team The requested team
+     * @return The rooms to try, in order
+     */
+    private List<Backend> candidates(String team) {
+        List<Backend> result = new ArrayList<>();
+        for (Backend backend : backends) {
+            if (backend.freeSlots(Teams.ordinal(team)) > 0) {
+                result.add(backend);
+            }
+        }
+        result.sort(Comparator.comparingInt(Backend::total).reversed());
+        return result;
+    }
+
+    /**
+     * Checks whether any room has space.
+     *
+     * @return true if some room can take a player
+     */
+    private boolean hasFreeSlot() {
+        for (Backend backend : backends) {
+            LobbyConnection current = backend.lobby;
+            if (current != null && current.getTotalPlayers() < current.getTeamCount() * current.getTeamCapacity()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encodes the combined occupancy as a TEAM_STATUS message. Rooms may differ in team count and
+     * size, so each team is reported as the largest team size less the most free slots it has in
+     * any one room; a team with no space anywhere shows as full.
+     *
+     * @return The TEAM_STATUS message
+     */
+    private String encodeTeamStatus() {
+        int capacity = 0;
+        int teams = 0;
+        for (Backend backend : backends) {
+            LobbyConnection current = backend.lobby;
+            if (current != null) {
+                capacity = Math.max(capacity, current.getTeamCapacity());
+                teams = Math.max(teams, current.getTeamCount());
+            }
+        }
+        StringBuilder sb = new StringBuilder("TEAM_STATUS ").append(capacity);
+        for (int team = 0; team < teams; team++) {
+            int free = 0;
+            for (Backend backend : backends) {
+                free = Math.max(free, backend.freeSlots(team));
+            }
+            sb.append(' ').append(capacity - free);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Pushes the combined occupancy to every lobby subscriber if it changed since the last push.
+     */
+    private void publishTeamStatus() {
+        synchronized (lobbySubscribers) {
+            String status = encodeTeamStatus();
+            if (status.equals(lastTeamStatus)) {
+                return;
+            }
+            lastTeamStatus = status;
+            for (DataOutputStream subscriber : lobbySubscribers) {
+                try {
+                    send(subscriber, status);
+                } catch (IOException e) {
+                    // The subscriber's own thread sees the closed connection and unsubscribes
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a message to a launcher.
+     *
+     * @param out Output stream of the launcher
+     * @param message The message to send
+     * @throws IOException If sending fails
+     */
+    private static void send(DataOutputStream out, String message) throws IOException {
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    /**
+     * Closes a socket, ignoring errors.
+     *
+     * @param socket The socket to close
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    /**
+     * A room the gateway places players in.
+     */
+    private static class Backend {
+        /** Host of the room's GameServer */
+        private final String host;
+
+        /** Port of the room's GameServer */
+        private final int port;
+
+        /** Subscription to the room's occupancy, or null while the room is unreachable */
+        private volatile LobbyConnection lobby;
+
+        /**
+         * Creates a room entry.
+         *
+         * @param host Server host
+         * @param port Server port
+         */
+        Backend(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Gets the number of players a team can still take in this room.
+         *
+         * @param team The team ordinal
+         * @return The latest free slots, or 0 while the room is unreachable or has no such team
+         */
+        int freeSlots(int team) {
+            LobbyConnection current = lobby;
+            if (current == null || team < 0) {
+                return 0;
+            }
+            return Math.max(0, current.getTeamCapacity() - current.getPlayerCount(team));
+        }
+
+        /**
+         * Gets the number of players in the room.
+         *
+         * @return The latest total, or 0 while the room is unreachable
+         */
+        int total() {
+            LobbyConnection current = lobby;
+            return current == null ? 0 : current.getTotalPlayers();
+        }
+
+        /**
+         * Formats the room as host:port.
+         *
+         * @return The room address
+         */
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * The OutboundQueue class buffers the messages sent to one client and writes them on the
+ * client's own writer thread, so a slow connection never blocks a broadcast.
+ * <p>
+ * Messages travel in two lanes. CHAT and TEAM_LISTS go in the low-priority lane; everything
+ * else is a game event. Each batch writes all queued game events before at most a few
+ * low-priority messages, so a chat flood cannot delay gameplay. Low-priority messages are not
+ * numbered, since they are written out of order with the game events. The lane keeps only the
+ * latest TEAM_LISTS, which supersedes older ones, and when full it drops its oldest chat message,
+ * so the rosters a client ends up with are always current.
+ * <p>
+ * A client lagging on game events is handled in three steps, by queue depth:
+ * <ol>
+ *   <li>Above the coalesce depth, each batch drops messages that newer ones supersede: older
+ *       GAME_STATE and TEAM_SCORES, and HOLD_START/HOLD_END for squares a newer
+ *       GAME_STATE shows as claimed.</li>
+ *   <li>At the snapshot depth the queue is discarded and replaced by a fresh state snapshot.
+ *       Round boundaries (GAME_OVER, NEW_ROUND, BOARD_CONFIG) are kept and written before the
+ *       snapshot, since the snapshot shows the board but not how the last game ended.</li>
+ *   <li>If the queue fills up again while the writer has not managed to write anything for the
+ *       stall timeout, the client is disconnected.</li>
+ * </ol>
+ * Healthy clients never reach the first step, so they pay nothing for it.
+ * <p>
+ * Socket clients are written to their connection's stream. In-process clients use a
+ * {@link Sink} backed by their bounded {@link LoopbackConnection} queue, so they get the same
+ * lanes and slow-consumer policy.
+ */
+public class OutboundQueue implements Runnable {
+    /** Maximum number of low-priority messages written per batch */
+    private static final int LOW_PRIORITY_BATCH = 8;
+
+    /** Queue depth above which a batch is coalesced before writing */
+    private final int coalesceDepth;
+
+    /** Queue depth at which the queue is replaced by a snapshot */
+    private final int snapshotDepth;
+
+    /** Maximum number of queued low-priority messages */
+    private final int lowPriorityDepth;
+
+    /** How long the writer may make no progress before an overflowing client is disconnected (nanoseconds) */
+    private final long stallNanos;
+
+    /** Number of columns on the game grid, used to locate squares in GAME_STATE */
+    private final int columns;
+
+    /** Destination the messages are written to (only used on the writer thread) */
+    private final Sink out;
+
+    /** Held while writing a batch, so a direct write after close waits for it */
+    private final Object writeLock;
+
+    /** Builds the messages that bring a client fully up to date */
+    private final Supplier<List<String>> snapshot;
+
+    /** Called when the client must be disconnected: too slow to keep, or its writer failed */
+    private final Runnable onSlowConsumer;
+
+    /** Server metrics for queue depth and policy counters */
+    private final ServerMetrics metrics;
+
+    /** Game events waiting to be written (guarded by itself; also guards the other queue state) */
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+
+    /** Chat and roster messages waiting to be written (guarded by queue) */
+    private final ArrayDeque<String> lowPriorityQueue = new ArrayDeque<>();
+
+    /** True when a snapshot must be written before the queued messages (guarded by queue) */
+    private boolean snapshotPending;
+
+    /** Round boundaries kept from discarded queues, written before the snapshot (guarded by queue) */
+    private final List<String> boundaries = new ArrayList<>();
+
+    /** Time the writer last finished a batch, or the queue was created */
+    private volatile long lastFlushNanos = System.nanoTime();
+
+    /** True once the queue is closed and the writer should exit (guarded by queue) */
+    private boolean closed;
+
+    /**
+     * Creates a queue for one client.
+     *
+     * @param out Stream to write to
+     * @param coalesceDepth Queue depth above which batches are coalesced
+     * @param snapshotDepth Queue depth at which the queue is replaced by a snapshot
+     * @param lowPriorityDepth Maximum number of queued chat and roster messages
+     * @param stallMillis How long the writer may make no progress before an overflowing client is dropped
+     * @param columns Number of columns on the game grid
+     * @param snapshot Builds the messages of a full state snapshot
+     * @param onSlowConsumer Called when the client must be disconnected
+     * @param metrics Server metrics
+     */
+    public OutboundQueue(DataOutputStream out, int coalesceDepth, int snapshotDepth, int lowPriorityDepth,
+                         int stallMillis, int columns, Supplier<List<String>> snapshot, Runnable onSlowConsumer,
+                         ServerMetrics metrics) {
+        this(new Sink() {
+            @Override
+            public void write(String message) throws IOException {
+                out.writeUTF(message);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        }, out, coalesceDepth, snapshotDepth, lowPriorityDepth, stallMillis, columns, snapshot, onSlowConsumer, metrics);
+    }
+
+    /**
+     * Creates a queue for a client that is not written through a stream.
+     *
+     * @param sink Destination to write to
+     * @param coalesceDepth Queue depth above which batches are coalesced
+     * @param snapshotDepth Queue depth at which the queue is replaced by a snapshot
+     * @param lowPriorityDepth Maximum number of queued chat and roster messages
+     * @param stallMillis How long the writer may make no progress before an overflowing client is dropped
+     * @param columns Number of columns on the game grid
+     * @param snapshot Builds the messages of a full state snapshot
+     * @param onSlowConsumer Called when the client must be disconnected
+     * @param metrics Server metrics
+     */
+    OutboundQueue(Sink sink, int coalesceDepth, int snapshotDepth, int lowPriorityDepth, int stallMillis,
+                  int columns, Supplier<List<String>> snapshot, Runnable onSlowConsumer, ServerMetrics metrics) {
+        this(sink, sink, coalesceDepth, snapshotDepth, lowPriorityDepth, stallMillis, columns, snapshot,
+                onSlowConsumer, metrics);
+    }
+
+    /**
+     * Creates a queue writing to a sink under the given lock.
+     *
+     * @param out Destination to write to
+     * @param writeLock Lock held while writing a batch
+     * @param coalesceDepth Queue depth above which batches are coalesced
+     * @param snapshotDepth Queue depth at which the queue is replaced by a snapshot
+     * @param lowPriorityDepth Maximum number of queued chat and roster messages
+     * @param stallMillis How long the writer may make no progress before an overflowing client is dropped
+     * @param columns Number of columns on the game grid
+     * @param snapshot Builds the messages of a full state snapshot
+     * @param onSlowConsumer Called when the client must be disconnected
+     * @param metrics Server metrics
+     */
+    private OutboundQueue(Sink out, Object writeLock, int coalesceDepth, int snapshotDepth, int lowPriorityDepth,
+                          int stallMillis, int columns, Supplier<List<String>> snapshot, Runnable onSlowConsumer,
+                          ServerMetrics metrics) {
+        this.out = out;
+        this.writeLock = writeLock;
+        this.coalesceDepth = coalesceDepth;
+        this.snapshotDepth = snapshotDepth;
+        this.lowPriorityDepth = lowPriorityDepth;
+        this.stallNanos = stallMillis * 1_000_000L;
+        this.columns = columns;
+        this.snapshot = snapshot;
+        this.onSlowConsumer = onSlowConsumer;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queues a message without blocking, applying the slow-consumer policy if the queue is full.
+     *
+     * @param message The message to send
+     */
+    public void send(String message) {
+        boolean tooSlow = false;
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            if (isLowPriority(message)) {
+                if (message.startsWith("TEAM_LISTS") && lowPriorityQueue.removeIf(queued -> queued.startsWith("TEAM_LISTS"))) {
+                    // The new roster replaces the unsent one
+                    metrics.outboundDequeued(1);
+                } else if (lowPriorityQueue.size() >= lowPriorityDepth) {
+                    // Best effort: the oldest chat message makes room (the lane holds at most one roster)
+                    Iterator<String> queued = lowPriorityQueue.iterator();
+                    while (queued.hasNext()) {
+                        if (queued.next().startsWith("CHAT")) {
+                            queued.remove();
+                            metrics.outboundDequeued(1);
+                            metrics.lowPriorityDropped();
+                            break;
+                        }
+                    }
+                }
+                lowPriorityQueue.add(message);
+                metrics.outboundEnqueued();
+                queue.notify();
+                return;
+            }
+            if (queue.size() >= snapshotDepth) {
+                int discarded = queue.size();
+                for (String queued : queue) {
+                    if (isRoundBoundary(unframe(queued))) {
+                        boundaries.add(queued);
+                        discarded--;
+                    }
+                }
+                metrics.outboundDequeued(discarded);
+                queue.clear();
+                if (snapshotPending && System.nanoTime() - lastFlushNanos > stallNanos) {
+                    // The writer is stuck, not just behind - give up on this client
+                    closed = true;
+                    tooSlow = true;
+                } else if (!snapshotPending) {
+                    snapshotPending = true;
+                    metrics.snapshotFallback();
+                }
+            }
+            if (!closed) {
+                queue.add(message);
+                metrics.outboundEnqueued();
+                queue.notify();
+            }
+        }
+        if (tooSlow) {
+            metrics.slowConsumerDisconnected();
+            onSlowConsumer.run();
+        }
+    }
+
+    /**
+     * Stops the writer, dropping any unsent messages.
+     */
+    public void close() {
+        synchronized (queue) {
+            closed = true;
+            metrics.outboundDequeued(queue.size() + lowPriorityQueue.size() + boundaries.size());
+            queue.clear();
+            lowPriorityQueue.clear();
+            boundaries.clear();
+            queue.notify();
+        }
+    }
+
+    /**
+     * Writer loop: waits for messages and writes each batch with a single flush,
+     * game events first.
+     */
+    @Override
+    public void run() {
+        List<String> batch = new ArrayList<>();
+        List<String> lowPriorityBatch = new ArrayList<>();
+        List<String> boundaryBatch = new ArrayList<>();
+        int queued = 0;
+        try {
+            while (true) {
+                boolean writeSnapshot;
+                synchronized (queue) {
+                    while (queue.isEmpty() && lowPriorityQueue.isEmpty() && !closed) {
+                        queue.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    batch.addAll(queue);
+                    queue.clear();
+                    for (int i = 0; i < LOW_PRIORITY_BATCH && !lowPriorityQueue.isEmpty(); i++) {
+                        lowPriorityBatch.add(lowPriorityQueue.poll());
+                    }
+                    writeSnapshot = snapshotPending;
+                    if (writeSnapshot) {
+                        boundaryBatch.addAll(boundaries);
+                        boundaries.clear();
+                    }
+                }
+                queued = batch.size() + lowPriorityBatch.size() + boundaryBatch.size();
+
+                if (batch.size() > coalesceDepth) {
+                    int before = batch.size();
+                    batch = coalesce(batch);
+                    metrics.outboundCoalesced(before - batch.size());
+                }
+                // Built before taking the write lock, which must not be held while taking server locks
+                List<String> snapshotMessages = writeSnapshot ? snapshot.get() : List.of();
+                // Locked so a direct write after close (a handshake rejection) waits for this batch
+                synchronized (writeLock) {
+                    for (String message : boundaryBatch) {
+                        out.write(message);
+                    }
+                    for (String message : snapshotMessages) {
+                        out.write(message);
+                    }
+                    if (writeSnapshot) {
+                        synchronized (queue) {
+                            snapshotPending = false;
+                        }
+                    }
+                    for (String message : batch) {
+                        out.write(message);
+                    }
+                    for (String message : lowPriorityBatch) {
+                        out.write(message);
+                    }
+                    out.flush();
+                }
+                lastFlushNanos = System.nanoTime();
+                metrics.outboundDequeued(queued);
+                queued = 0;
+                batch.clear();
+                lowPriorityBatch.clear();
+                boundaryBatch.clear();
+            }
+        } catch (IOException e) {
+            // Connection closed - the reader thread handles the disconnect
+            metrics.outboundDequeued(queued);
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // A failed snapshot or write must not leave the client connected with no writer
+            e.printStackTrace();
+            metrics.outboundDequeued(queued);
+            close();
+            onSlowConsumer.run();
+        }
+    }
+
+    /**
+     * Drops messages in a batch that newer messages in the same batch supersede.
+     * Round boundaries are barriers: nothing before one is dropped because of something after it.
+     *
+     * @param batch The messages in send order
+     * @return The remaining messages in send order
+     */
+    private List<String> coalesce(List<String> batch) {
+        List<String> kept = new ArrayList<>(batch.size());
+        boolean seenState = false;
+        boolean seenScores = false;
+        String[] newestBoard = null;
+
+        // Walk from newest to oldest so the first message of each kind seen is the latest one
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            String frame = batch.get(i);
+            String message = unframe(frame);
+            if (isRoundBoundary(message)) {
+                seenState = false;
+                seenScores = false;
+                newestBoard = null;
+            } else if (message.startsWith("GAME_STATE")) {
+                if (seenState) {
+                    continue;
+                }
+                seenState = true;
+                newestBoard = message.split(" ");
+            } else if (message.startsWith("TEAM_SCORES")) {
+                if (seenScores) {
+                    continue;
+                }
+                seenScores = true;
+            } else if (newestBoard != null && (message.startsWith("HOLD_START") || message.startsWith("HOLD_END"))) {
+                // A hold on a square that has since been claimed no longer matters
+                String[] parts = message.split(" ");
+                int cell = Integer.parseInt(parts[1]) * columns + Integer.parseInt(parts[2]);
+                if (!"UNCLAIMED".equals(newestBoard[1 + cell])) {
+                    continue;
+                }
+            }
+            kept.add(frame);
+        }
+        Collections.reverse(kept);
+        return kept;
+    }
+
+    /**
+     * Checks whether a message belongs in the low-priority lane (CHAT and TEAM_LISTS).
+     * Such messages are never numbered.
+     *
+     * @param message The message
+     * @return true for chat and roster messages
+     */
+    static boolean isLowPriority(String message) {
+        return message.startsWith("CHAT") || message.startsWith("TEAM_LISTS");
+    }
+
+    /**
+     * Checks whether a message starts a new game or board (GAME_OVER, NEW_ROUND, BOARD_CONFIG).
+     * These are never coalesced away or discarded by the snapshot fallback.
+     *
+     * @param message The message without its sequence number
+     * @return true for round boundaries
+     */
+    static boolean isRoundBoundary(String message) {
+        return message.startsWith("GAME_OVER") || message.startsWith("NEW_ROUND") || message.startsWith("BOARD_CONFIG");
+    }
+
+    /**
+     * Removes the "SEQ n " prefix of a numbered broadcast.
+     *
+     * @param frame The queued message
+     * @return The message without its sequence number
+     */
+    private static String unframe(String frame) {
+        return frame.startsWith("SEQ ") ? frame.substring(frame.indexOf(' ', 4) + 1) : frame;
+    }
+
+    /**
+     * Destination of the messages written by a queue's writer thread.
+     */
+    interface Sink {
+        /**
+         * Writes one message, blocking while the client is not keeping up.
+         *
+         * @param message The message
+         * @throws IOException If the client is gone
+         */
+        void write(String message) throws IOException;
+
+        /**
+         * Delivers the messages written so far.
+         *
+         * @throws IOException If the client is gone
+         */
+        void flush() throws IOException;
+    }
+}
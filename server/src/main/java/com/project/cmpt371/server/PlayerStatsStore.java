@@ -0,0 +1,295 @@
+package com.project.cmpt371.server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The PlayerStatsStore class keeps persistent per-player statistics, keyed by player name.
+ * <p>
+ * Game threads only add to in-memory deltas ({@link #recordClaim}, {@link #recordHold},
+ * {@link #recordGameEnd}), which never touch the disk. A flusher thread periodically merges
+ * all pending deltas into the stored records in one batch (write-behind). Stored records
+ * live in one small file per player and the most recently used ones are kept in an LRU cache.
+ */
+public class PlayerStatsStore implements Closeable {
+    /** Maximum number of player records kept in memory */
+    private static final int CACHE_SIZE = 1024;
+
+    /** Interval between write-behind flushes (milliseconds) */
+    private static final int FLUSH_INTERVAL_MS = 1000;
+
+    /** Version written at the start of each record file */
+    private static final int RECORD_VERSION = 1;
+
+    /**
+     * Statistics for one player, used both for stored totals and for pending deltas.
+     */
+    public static class PlayerStats {
+        /** Games played to the end */
+        long games;
+
+        /** Games won */
+        long wins;
+
+        /** Squares claimed */
+        long claims;
+
+        /** Claimed squares that had been contested by another team */
+        long contestedWins;
+
+        /** Number of completed holds */
+        long holds;
+
+        /** Total time spent holding squares (milliseconds) */
+        long holdMillis;
+
+        /**
+         * Adds another set of statistics to this one.
+         *
+         * @param other The statistics to add
+         */
+        void add(PlayerStats other) {
+            games += other.games;
+            wins += other.wins;
+            claims += other.claims;
+            contestedWins += other.contestedWins;
+            holds += other.holds;
+            holdMillis += other.holdMillis;
+        }
+
+        /**
+         * Gets the average hold time.
+         *
+         * @return The average hold time in milliseconds, or 0 if the player has no holds
+         */
+        public long getAverageHoldMillis() {
+            return holds == 0 ? 0 : holdMillis / holds;
+        }
+
+        /**
+         * Formats the statistics as "name=value" pairs.
+         *
+         * @return The formatted statistics
+         */
+        @Override
+        public String toString() {
+            return "games=" + games + " wins=" + wins + " claims=" + claims + " contested_wins=" + contestedWins +
+                    " avg_hold_ms=" + getAverageHoldMillis();
+        }
+    }
+
+    /** Directory holding one record file per player */
+    private final Path directory;
+
+    /** Changes not yet written to disk, by player name */
+    private final ConcurrentHashMap<String, PlayerStats> pending = new ConcurrentHashMap<>();
+
+    /** Recently used stored records, by player name (guarded by itself) */
+    private final Map<String, PlayerStats> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PlayerStats> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** Thread that runs the write-behind flushes */
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "player-stats-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Opens (creating if needed) a stats store in the given directory and starts the flusher.
+     *
+     * @param directory Directory for player record files
+     * @throws IOException If the directory cannot be created
+     */
+    public PlayerStatsStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a square claimed by a player. Never blocks on I/O.
+     *
+     * @param playerName The player's name
+     * @param contested true if another team had contested the square
+     */
+    public void recordClaim(String playerName, boolean contested) {
+        pending.compute(playerName, (name, delta) -> {
+            delta = delta == null ? new PlayerStats() : delta;
+            delta.claims++;
+            if (contested) {
+                delta.contestedWins++;
+            }
+            return delta;
+        });
+    }
+
+    /**
+     * Records a completed hold. Never blocks on I/O.
+     *
+     * @param playerName The player's name
+     * @param holdMillis How long the square was held (milliseconds)
+     */
+    public void recordHold(String playerName, long holdMillis) {
+        pending.compute(playerName, (name, delta) -> {
+            delta = delta == null ? new PlayerStats() : delta;
+            delta.holds++;
+            delta.holdMillis += holdMillis;
+            return delta;
+        });
+    }
+
+    /**
+     * Records the end of a game for a player. Never blocks on I/O.
+     *
+     * @param playerName The player's name
+     * @param won true if the player's team won
+     */
+    public void recordGameEnd(String playerName, boolean won) {
+        pending.compute(playerName, (name, delta) -> {
+            delta = delta == null ? new PlayerStats() : delta;
+            delta.games++;
+            if (won) {
+                delta.wins++;
+            }
+            return delta;
+        });
+    }
+
+    /**
+     * Gets a player's statistics including changes not yet flushed.
+     * May read from disk, so it must not be called on the game hot paths.
+     *
+     * @param playerName The player's name
+     * @return The player's statistics (all zero for an unknown player)
+     * @throws IOException If the player's record cannot be read
+     */
+    public PlayerStats get(String playerName) throws IOException {
+        PlayerStats result = new PlayerStats();
+        result.add(load(playerName));
+        pending.computeIfPresent(playerName, (name, delta) -> {
+            result.add(delta);
+            return delta;
+        });
+        return result;
+    }
+
+    /**
+     * Merges every pending delta into the stored records and writes them out as one batch.
+     */
+    private void flush() {
+        for (String playerName : new ArrayList<>(pending.keySet())) {
+            PlayerStats delta = pending.remove(playerName);
+            if (delta == null) {
+                continue;
+            }
+            try {
+                PlayerStats stored = load(playerName);
+                synchronized (cache) {
+                    stored.add(delta);
+                }
+                write(playerName, stored);
+            } catch (IOException e) {
+                // Keep the delta so the next flush retries it
+                pending.merge(playerName, delta, (current, failed) -> {
+                    current.add(failed);
+                    return current;
+                });
+                System.out.println("Failed to save stats for " + playerName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets a player's stored record from the cache, reading it from disk on a miss.
+     *
+     * @param playerName The player's name
+     * @return The cached record (mutated only by the flusher)
+     * @throws IOException If the record cannot be read
+     */
+    private PlayerStats load(String playerName) throws IOException {
+        synchronized (cache) {
+            PlayerStats cached = cache.get(playerName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        PlayerStats stored = new PlayerStats();
+        Path file = recordPath(playerName);
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == RECORD_VERSION) {
+                    stored.games = in.readLong();
+                    stored.wins = in.readLong();
+                    stored.claims = in.readLong();
+                    stored.contestedWins = in.readLong();
+                    stored.holds = in.readLong();
+                    stored.holdMillis = in.readLong();
+                }
+            }
+        }
+        synchronized (cache) {
+            PlayerStats raced = cache.putIfAbsent(playerName, stored);
+            return raced != null ? raced : stored;
+        }
+    }
+
+    /**
+     * Writes a player's record atomically.
+     *
+     * @param playerName The player's name
+     * @param stats The record to write
+     * @throws IOException If the record cannot be written
+     */
+    private void write(String playerName, PlayerStats stats) throws IOException {
+        Path file = recordPath(playerName);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(RECORD_VERSION);
+            synchronized (cache) {
+                out.writeLong(stats.games);
+                out.writeLong(stats.wins);
+                out.writeLong(stats.claims);
+                out.writeLong(stats.contestedWins);
+                out.writeLong(stats.holds);
+                out.writeLong(stats.holdMillis);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Gets the record file of a player. Names are hex-encoded so any name is a safe file name.
+     *
+     * @param playerName The player's name
+     * @return The record file path
+     */
+    private Path recordPath(String playerName) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : playerName.getBytes(StandardCharsets.UTF_8)) {
+            sb.append(String.format("%02x", b));
+        }
+        return directory.resolve(sb.append(".stats").toString());
+    }
+
+    /**
+     * Flushes all pending changes and stops the flusher thread.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
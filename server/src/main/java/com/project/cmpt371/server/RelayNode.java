@@ -0,0 +1,77 @@
+package com.project.cmpt371.server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * The RelayNode class is a standalone process that re-serves a match stream to its own spectators.
+ * It subscribes once to an upstream spectator port and publishes every event it receives to a
+ * local SpectatorHub. The upstream therefore sends each event once per relay, however many
+ * viewers the relay has.
+ * <p>
+ * The upstream can be a GameServer's spectator port or another relay, so relays can be chained
+ * into a tree. The upstream's keyframe arrives as ordinary events, so the relay's hub rebuilds
+ * its own keyframe for late joiners. If the upstream connection drops, the relay reconnects and
+ * the fresh keyframe brings its spectators back in sync. Any delay is applied once, at the
+ * game server.
+ * <p>
+ * Usage: {@code java com.project.cmpt371.server.RelayNode <upstream host> <upstream port> <listen port>}
+ */
+public class RelayNode {
+    /** Delay before reconnecting to the upstream after the connection drops (milliseconds) */
+    private static final int RECONNECT_DELAY_MS = 1000;
+
+    /** How long the upstream may send nothing before the connection is treated as lost (milliseconds) */
+    private static final int UPSTREAM_TIMEOUT_MS = 10000;
+
+    /**
+     * Starts a relay.
+     *
+     * @param args Upstream host, upstream port and the port to serve spectators on
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: RelayNode <upstream host> <upstream port> <listen port>");
+            return;
+        }
+        String upstreamHost = args[0];
+        int upstreamPort = Integer.parseInt(args[1]);
+        int listenPort = Integer.parseInt(args[2]);
+
+        SpectatorHub hub;
+        try {
+            hub = new SpectatorHub(listenPort, 0, List.of());
+        } catch (IOException e) {
+            System.out.println("Cannot listen on port " + listenPort + ": " + e.getMessage());
+            return;
+        }
+        new Thread(hub, "spectator-hub").start();
+        System.out.println("Relay serving spectators on port " + listenPort + " from " + upstreamHost + ":" + upstreamPort);
+
+        // Forward the upstream stream for as long as the relay runs
+        while (true) {
+            try (Socket upstream = new Socket(upstreamHost, upstreamPort)) {
+                upstream.setSoTimeout(UPSTREAM_TIMEOUT_MS);
+                System.out.println("Relay connected to upstream " + upstreamHost + ":" + upstreamPort);
+                DataInputStream in = new DataInputStream(upstream.getInputStream());
+                while (true) {
+                    String message = in.readUTF();
+                    // Keepalives are per hop; the local hub sends its own
+                    if (!message.startsWith("PING")) {
+                        hub.publish(message);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Relay lost upstream: " + e.getMessage() + "; reconnecting");
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
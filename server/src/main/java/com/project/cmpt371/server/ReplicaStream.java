@@ -0,0 +1,133 @@
+package com.project.cmpt371.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ReplicaStream class sends the match log to one standby server on its own thread, so a slow
+ * or stalled standby never holds up the log writer. When nothing has been sent for a heartbeat
+ * interval it sends a HEARTBEAT record, which lets the standby tell an idle match from a dead
+ * primary. A standby that falls too far behind is disconnected; it can reconnect and start again
+ * from a fresh snapshot.
+ */
+public class ReplicaStream implements Runnable {
+    /** Unsent bytes above which the standby is disconnected */
+    private static final int MAX_BACKLOG_BYTES = 4 * 1024 * 1024;
+
+    /** Connection to the standby */
+    private final Socket socket;
+
+    /** Output to the standby (only used on the sender thread) */
+    private final DataOutputStream out;
+
+    /** Encoded snapshot and record batches waiting to be sent, in log order */
+    private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+
+    /** Total size of the queued batches */
+    private final AtomicInteger backlogBytes = new AtomicInteger();
+
+    /** Interval of the heartbeats sent while nothing is appended (milliseconds) */
+    private final int heartbeatMillis;
+
+    /** True once the stream has stopped */
+    private volatile boolean closed;
+
+    /**
+     * Creates a stream to a standby. Run it on its own thread.
+     *
+     * @param socket Connection to the standby
+     * @param heartbeatMillis Heartbeat interval (milliseconds)
+     */
+    public ReplicaStream(Socket socket, int heartbeatMillis) {
+        this.socket = socket;
+        this.heartbeatMillis = heartbeatMillis;
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            closed = true;
+        }
+        this.out = output;
+    }
+
+    /**
+     * Queues bytes for the standby without blocking.
+     *
+     * @param bytes A snapshot or a batch of log records
+     * @return false if the stream is closed, or was closed because the standby fell too far behind
+     */
+    public boolean send(byte[] bytes) {
+        if (closed) {
+            return false;
+        }
+        if (backlogBytes.addAndGet(bytes.length) > MAX_BACKLOG_BYTES) {
+            System.out.println("Standby " + socket.getRemoteSocketAddress() + " fell too far behind, disconnecting");
+            close();
+            return false;
+        }
+        queue.add(bytes);
+        return true;
+    }
+
+    /**
+     * Sender loop: writes everything queued, or a heartbeat when the queue stays empty.
+     */
+    @Override
+    public void run() {
+        List<byte[]> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                byte[] first = queue.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    out.writeByte(MatchLog.HEARTBEAT);
+                } else {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    for (byte[] bytes : batch) {
+                        out.write(bytes);
+                        backlogBytes.addAndGet(-bytes.length);
+                    }
+                    batch.clear();
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("Standby " + socket.getRemoteSocketAddress() + " disconnected: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Checks whether the stream has stopped.
+     *
+     * @return true once the standby disconnected or was dropped
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stops the stream and closes the connection.
+     */
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
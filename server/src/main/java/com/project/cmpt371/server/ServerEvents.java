@@ -0,0 +1,152 @@
+package com.project.cmpt371.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The ServerEvents class groups the Java Flight Recorder events emitted by the game server.
+ * Events are only committed while a recording has them enabled, so the cost when recording
+ * is off is a single enabled check per event.
+ * Fields that do not apply to an event (for example the client of a timer-driven claim)
+ * are left at -1 or null.
+ */
+final class ServerEvents {
+    /** Category shared by all game server events */
+    private static final String CATEGORY = "Team Box Conquest";
+
+    /**
+     * Prevents instantiation of this holder class.
+     */
+    private ServerEvents() {
+    }
+
+    /**
+     * Base class for events that concern a single grid cell.
+     */
+    @StackTrace(false)
+    abstract static class CellEvent extends Event {
+        /** Row of the cell */
+        @Label("Row")
+        int row = -1;
+
+        /** Column of the cell */
+        @Label("Column")
+        int col = -1;
+
+        /** Team involved in the event */
+        @Label("Team")
+        String team;
+
+        /** ID of the client involved in the event */
+        @Label("Client ID")
+        String clientId;
+    }
+
+    /**
+     * Emitted for every HOLD_START processed by the server; its duration covers lock wait and broadcast.
+     */
+    @Name("com.project.cmpt371.HoldRequest")
+    @Label("Hold Request")
+    @Category(CATEGORY)
+    static class HoldRequest extends CellEvent {
+    }
+
+    /**
+     * Emitted for every HOLD_END processed by the server; its duration covers lock wait and broadcast.
+     */
+    @Name("com.project.cmpt371.ReleaseRequest")
+    @Label("Release Request")
+    @Category(CATEGORY)
+    static class ReleaseRequest extends CellEvent {
+    }
+
+    /**
+     * Emitted when a square is awarded to a team, either by the claim timer or by winning a tug-of-war.
+     */
+    @Name("com.project.cmpt371.ClaimAwarded")
+    @Label("Claim Awarded")
+    @Category(CATEGORY)
+    @Description("Client ID is the player whose release resolved a contest, or null for timer claims")
+    static class ClaimAwarded extends CellEvent {
+        /** How the claim was decided ("TIMER" or "CONTEST") */
+        @Label("Reason")
+        String reason;
+    }
+
+    /**
+     * Emitted for every win condition check; the cell is the claim that triggered it.
+     */
+    @Name("com.project.cmpt371.WinCheck")
+    @Label("Win Check")
+    @Category(CATEGORY)
+    static class WinCheck extends CellEvent {
+        /** Winning team, "TIE", or null if the game continues */
+        @Label("Winner")
+        String winner;
+    }
+
+    /**
+     * Emitted for every broadcast; its duration covers the whole fan-out.
+     */
+    @Name("com.project.cmpt371.Broadcast")
+    @Label("Broadcast")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class Broadcast extends Event {
+        /** Message type (first word of the message) */
+        @Label("Message Type")
+        String messageType;
+
+        /** Number of clients the message was sent to */
+        @Label("Recipients")
+        int recipients;
+
+        /** Size of one encoded message in bytes */
+        @Label("Bytes")
+        int bytes;
+    }
+
+    /**
+     * Base class for connection lifecycle events.
+     */
+    @StackTrace(false)
+    abstract static class ClientEvent extends Event {
+        /** ID of the client */
+        @Label("Client ID")
+        String clientId;
+
+        /** Remote address of the client */
+        @Label("Address")
+        String address;
+
+        /** Team the client was assigned to, if any */
+        @Label("Team")
+        String team;
+
+        /** Player name, if the handshake completed */
+        @Label("Player Name")
+        String playerName;
+    }
+
+    /**
+     * Emitted when a client connection is accepted.
+     */
+    @Name("com.project.cmpt371.ClientConnect")
+    @Label("Client Connect")
+    @Category(CATEGORY)
+    static class ClientConnect extends ClientEvent {
+    }
+
+    /**
+     * Emitted when a client connection ends.
+     */
+    @Name("com.project.cmpt371.ClientDisconnect")
+    @Label("Client Disconnect")
+    @Category(CATEGORY)
+    static class ClientDisconnect extends ClientEvent {
+    }
+}
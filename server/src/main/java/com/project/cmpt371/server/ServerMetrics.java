@@ -0,0 +1,375 @@
+package com.project.cmpt371.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ServerMetrics class holds the in-process counters and histograms for the game server.
+ * All recording methods are lock-free so they can be called from the hot paths, and
+ * {@link #format()} renders a plain "name value" text report for the admin request and the metrics file.
+ */
+public class ServerMetrics {
+    /** Message types tracked individually; anything else is counted as OTHER */
+    private static final String[] MESSAGE_TYPES = {
+            "HOLD_START", "HOLD_END", "CHAT", "PING", "PONG", "OTHER"
+    };
+
+    /** Number of accepted TCP connections */
+    private final LongAdder connections = new LongAdder();
+
+    /** Number of completed PLAYER_INFO handshakes */
+    private final LongAdder handshakes = new LongAdder();
+
+    /** Number of connections rejected because the server was full */
+    private final LongAdder serverFullRejections = new LongAdder();
+
+    /** Number of handshakes rejected because the requested team was full */
+    private final LongAdder teamFullRejections = new LongAdder();
+
+    /** Number of connections closed for not completing the first message in time */
+    private final LongAdder handshakeTimeouts = new LongAdder();
+
+    /** Number of players evicted for sending nothing within the idle timeout */
+    private final LongAdder idleEvictions = new LongAdder();
+
+    /** Number of dropped players whose session was kept for resumption */
+    private final LongAdder sessionSuspensions = new LongAdder();
+
+    /** Number of sessions resumed with a RESUME token */
+    private final LongAdder sessionResumes = new LongAdder();
+
+    /** Number of resumptions that were replayed from the event history rather than a full snapshot */
+    private final LongAdder sessionDeltaResumes = new LongAdder();
+
+    /** Number of suspended sessions that expired without being resumed */
+    private final LongAdder sessionExpiries = new LongAdder();
+
+    /** Received message counts, indexed like MESSAGE_TYPES */
+    private final LongAdder[] messageCounts = new LongAdder[MESSAGE_TYPES.length];
+
+    /** Message counts at the last rate calculation, indexed like MESSAGE_TYPES */
+    private final long[] lastMessageCounts = new long[MESSAGE_TYPES.length];
+
+    /** Messages per second over the last rate interval, indexed like MESSAGE_TYPES */
+    private final double[] messageRates = new double[MESSAGE_TYPES.length];
+
+    /** Time of the last rate calculation */
+    private long lastRateNanos = System.nanoTime();
+
+    /** Time spent waiting to acquire the boardState lock */
+    private final LatencyHistogram boardLockWait = new LatencyHistogram();
+
+    /** Time spent waiting to acquire the clients lock */
+    private final LatencyHistogram clientsLockWait = new LatencyHistogram();
+
+    /** Time taken to send one broadcast to every client */
+    private final LatencyHistogram broadcastDuration = new LatencyHistogram();
+
+    /** Delay between a claim timer's due time and when it actually ran */
+    private final LatencyHistogram claimTimerLag = new LatencyHistogram();
+
+    /** Number of outbound messages currently waiting to be written */
+    private final AtomicLong outboundQueueDepth = new AtomicLong();
+
+    /** Largest outbound queue depth observed */
+    private final AtomicLong outboundQueuePeak = new AtomicLong();
+
+    /** Number of outbound messages dropped by coalescing */
+    private final LongAdder coalescedMessages = new LongAdder();
+
+    /** Number of times a lagging client's queue was replaced by a snapshot */
+    private final LongAdder snapshotFallbacks = new LongAdder();
+
+    /** Number of chat and roster messages dropped from full low-priority lanes */
+    private final LongAdder lowPriorityDrops = new LongAdder();
+
+    /** Number of chat messages rejected by the per-client chat rate limit */
+    private final LongAdder chatRateLimits = new LongAdder();
+
+    /** Number of HOLD_START messages dropped by the per-client hold rate limit */
+    private final LongAdder holdRateLimits = new LongAdder();
+
+    /** Number of HOLD_END messages dropped because the player was not holding the square */
+    private final LongAdder unmatchedReleases = new LongAdder();
+
+    /** Number of messages ignored or handshakes rejected because they were malformed */
+    private final LongAdder malformedMessages = new LongAdder();
+
+    /** Number of clients disconnected for falling too far behind */
+    private final LongAdder slowConsumerDisconnects = new LongAdder();
+
+    /**
+     * Creates an empty set of metrics.
+     */
+    public ServerMetrics() {
+        for (int i = 0; i < messageCounts.length; i++) {
+            messageCounts[i] = new LongAdder();
+        }
+    }
+
+    /** Records an accepted TCP connection. */
+    public void connectionAccepted() {
+        connections.increment();
+    }
+
+    /** Records a completed PLAYER_INFO handshake. */
+    public void handshakeCompleted() {
+        handshakes.increment();
+    }
+
+    /** Records a connection rejected with SERVER_FULL. */
+    public void serverFullRejected() {
+        serverFullRejections.increment();
+    }
+
+    /** Records a handshake rejected with TEAM_FULL. */
+    public void teamFullRejected() {
+        teamFullRejections.increment();
+    }
+
+    /** Records a connection closed because its first message did not arrive in time. */
+    public void handshakeTimedOut() {
+        handshakeTimeouts.increment();
+    }
+
+    /** Records a player evicted for being idle. */
+    public void idleEvicted() {
+        idleEvictions.increment();
+    }
+
+    /** Records a dropped player whose session is kept for resumption. */
+    public void sessionSuspended() {
+        sessionSuspensions.increment();
+    }
+
+    /**
+     * Records a resumed session.
+     *
+     * @param fromHistory true if the missed events were replayed, false if a full snapshot was sent
+     */
+    public void sessionResumed(boolean fromHistory) {
+        sessionResumes.increment();
+        if (fromHistory) {
+            sessionDeltaResumes.increment();
+        }
+    }
+
+    /** Records a suspended session that expired. */
+    public void sessionExpired() {
+        sessionExpiries.increment();
+    }
+
+    /**
+     * Records a received client message by its type.
+     *
+     * @param message The raw message
+     */
+    public void messageReceived(String message) {
+        int index = MESSAGE_TYPES.length - 1;
+        for (int i = 0; i < MESSAGE_TYPES.length - 1; i++) {
+            if (message.startsWith(MESSAGE_TYPES[i])) {
+                index = i;
+                break;
+            }
+        }
+        messageCounts[index].increment();
+    }
+
+    /**
+     * Records a received client message by its type, reading the type straight from the frame bytes.
+     *
+     * @param buffer Buffer holding the message
+     * @param offset Start of the message in the buffer
+     * @param length Length of the message in bytes
+     */
+    public void messageReceived(byte[] buffer, int offset, int length) {
+        int index = MESSAGE_TYPES.length - 1;
+        for (int i = 0; i < MESSAGE_TYPES.length - 1 && index == MESSAGE_TYPES.length - 1; i++) {
+            String type = MESSAGE_TYPES[i];
+            if (type.length() <= length) {
+                index = i;
+                for (int j = 0; j < type.length(); j++) {
+                    if (buffer[offset + j] != type.charAt(j)) {
+                        index = MESSAGE_TYPES.length - 1;
+                        break;
+                    }
+                }
+            }
+        }
+        messageCounts[index].increment();
+    }
+
+    /**
+     * Records the time spent waiting for the boardState lock.
+     *
+     * @param nanos The wait time in nanoseconds
+     */
+    public void boardLockWaited(long nanos) {
+        boardLockWait.record(nanos);
+    }
+
+    /**
+     * Records the time spent waiting for the clients lock.
+     *
+     * @param nanos The wait time in nanoseconds
+     */
+    public void clientsLockWaited(long nanos) {
+        clientsLockWait.record(nanos);
+    }
+
+    /**
+     * Records how long a broadcast took to reach every client.
+     *
+     * @param nanos The fan-out duration in nanoseconds
+     */
+    public void broadcastCompleted(long nanos) {
+        broadcastDuration.record(nanos);
+    }
+
+    /**
+     * Records how late a claim timer ran compared to its due time.
+     *
+     * @param nanos The lag in nanoseconds
+     */
+    public void claimTimerFired(long nanos) {
+        claimTimerLag.record(nanos);
+    }
+
+    /** Records that an outbound message is waiting to be written. */
+    public void outboundEnqueued() {
+        outboundQueuePeak.accumulateAndGet(outboundQueueDepth.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * Records that waiting outbound messages have been written or dropped.
+     *
+     * @param count The number of messages
+     */
+    public void outboundDequeued(int count) {
+        outboundQueueDepth.addAndGet(-count);
+    }
+
+    /**
+     * Records outbound messages dropped because a newer message superseded them.
+     *
+     * @param count The number of messages dropped
+     */
+    public void outboundCoalesced(int count) {
+        coalescedMessages.add(count);
+    }
+
+    /** Records a lagging client whose queue was replaced by a fresh state snapshot. */
+    public void snapshotFallback() {
+        snapshotFallbacks.increment();
+    }
+
+    /** Records a chat or roster message dropped from a full low-priority lane. */
+    public void lowPriorityDropped() {
+        lowPriorityDrops.increment();
+    }
+
+    /** Records a chat message rejected by the chat rate limit. */
+    public void chatRateLimited() {
+        chatRateLimits.increment();
+    }
+
+    /** Records a HOLD_START dropped by the hold rate limit. */
+    public void holdRateLimited() {
+        holdRateLimits.increment();
+    }
+
+    /** Records a HOLD_END dropped because the player was not holding the square. */
+    public void unmatchedRelease() {
+        unmatchedReleases.increment();
+    }
+
+    /** Records a message ignored, or a handshake rejected, because it was malformed. */
+    public void malformedMessage() {
+        malformedMessages.increment();
+    }
+
+    /** Records a client disconnected for falling too far behind. */
+    public void slowConsumerDisconnected() {
+        slowConsumerDisconnects.increment();
+    }
+
+    /**
+     * Recalculates the per-type message rates from the counts since the last call.
+     * Called periodically by the metrics dump so the rates cover one dump interval.
+     */
+    public synchronized void updateRates() {
+        long now = System.nanoTime();
+        double seconds = Math.max((now - lastRateNanos) / 1_000_000_000.0, 0.001);
+        for (int i = 0; i < MESSAGE_TYPES.length; i++) {
+            long current = messageCounts[i].sum();
+            messageRates[i] = (current - lastMessageCounts[i]) / seconds;
+            lastMessageCounts[i] = current;
+        }
+        lastRateNanos = now;
+    }
+
+    /**
+     * Renders all metrics as "name value" lines.
+     *
+     * @return The metrics report
+     */
+    public synchronized String format() {
+        StringBuilder sb = new StringBuilder();
+        appendLine(sb, "connections_total", connections.sum());
+        appendLine(sb, "handshakes_total", handshakes.sum());
+        appendLine(sb, "rejections_server_full_total", serverFullRejections.sum());
+        appendLine(sb, "rejections_team_full_total", teamFullRejections.sum());
+        appendLine(sb, "handshake_timeouts_total", handshakeTimeouts.sum());
+        appendLine(sb, "idle_evictions_total", idleEvictions.sum());
+        appendLine(sb, "sessions_suspended_total", sessionSuspensions.sum());
+        appendLine(sb, "sessions_resumed_total", sessionResumes.sum());
+        appendLine(sb, "sessions_resumed_from_history_total", sessionDeltaResumes.sum());
+        appendLine(sb, "sessions_expired_total", sessionExpiries.sum());
+        for (int i = 0; i < MESSAGE_TYPES.length; i++) {
+            String type = MESSAGE_TYPES[i].toLowerCase();
+            appendLine(sb, "messages_" + type + "_total", messageCounts[i].sum());
+            appendLine(sb, "messages_" + type + "_per_second", String.format("%.2f", messageRates[i]));
+        }
+        appendHistogram(sb, "board_lock_wait", boardLockWait);
+        appendHistogram(sb, "clients_lock_wait", clientsLockWait);
+        appendHistogram(sb, "broadcast_duration", broadcastDuration);
+        appendHistogram(sb, "claim_timer_lag", claimTimerLag);
+        appendLine(sb, "outbound_queue_depth", outboundQueueDepth.get());
+        appendLine(sb, "outbound_queue_peak", outboundQueuePeak.get());
+        appendLine(sb, "outbound_coalesced_total", coalescedMessages.sum());
+        appendLine(sb, "outbound_snapshot_fallbacks_total", snapshotFallbacks.sum());
+        appendLine(sb, "outbound_slow_consumer_disconnects_total", slowConsumerDisconnects.sum());
+        appendLine(sb, "outbound_low_priority_dropped_total", lowPriorityDrops.sum());
+        appendLine(sb, "chat_rate_limited_total", chatRateLimits.sum());
+        appendLine(sb, "hold_rate_limited_total", holdRateLimits.sum());
+        appendLine(sb, "hold_unmatched_releases_total", unmatchedReleases.sum());
+        appendLine(sb, "messages_malformed_total", malformedMessages.sum());
+        return sb.toString();
+    }
+
+    /**
+     * Appends a histogram as count, mean, p50, p99 and max lines.
+     *
+     * @param sb The report being built
+     * @param name The metric name prefix
+     * @param histogram The histogram to append
+     */
+    static void appendHistogram(StringBuilder sb, String name, LatencyHistogram histogram) {
+        appendLine(sb, name + "_count", histogram.getCount());
+        appendLine(sb, name + "_mean_ms", String.format("%.3f", histogram.getMeanMillis()));
+        appendLine(sb, name + "_p50_ms", String.format("%.3f", histogram.getPercentileMillis(50)));
+        appendLine(sb, name + "_p99_ms", String.format("%.3f", histogram.getPercentileMillis(99)));
+        appendLine(sb, name + "_max_ms", String.format("%.3f", histogram.getMaxMillis()));
+    }
+
+    /**
+     * Appends a single "name value" line.
+     *
+     * @param sb The report being built
+     * @param name The metric name
+     * @param value The metric value
+     */
+    static void appendLine(StringBuilder sb, String name, Object value) {
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+}
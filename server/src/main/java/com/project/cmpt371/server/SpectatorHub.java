@@ -0,0 +1,472 @@
+package com.project.cmpt371.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The SpectatorHub class streams a match to read-only viewers on its own port.
+ * Spectators do not take a player slot, a handler thread or an outbound queue: one hub thread
+ * serves all of them with non-blocking sockets.
+ * <p>
+ * The server publishes each broadcast to the hub. The hub thread encodes each event once,
+ * optionally after a fixed delay, and writes the same bytes to every spectator.
+ * The hub also folds the released events into a keyframe: the latest BOARD_CONFIG, GAME_STATE,
+ * TEAM_SCORES and TEAM_LISTS, plus the current holds. That keyframe is sent to new spectators, and to spectators
+ * that fall too far behind, without touching the game state or its locks. Messages from
+ * spectators are read and discarded.
+ */
+public class SpectatorHub implements Runnable {
+    /** Bytes a spectator may have waiting to be written before it is resynchronized with a keyframe */
+    private static final int MAX_PENDING_BYTES = 256 * 1024;
+
+    /** Interval between keepalive PINGs, so an idle match does not look like a dropped connection (milliseconds) */
+    private static final int KEEPALIVE_INTERVAL_MS = 2000;
+
+    /** Number of columns on the game grid, from the latest BOARD_CONFIG */
+    private int columns;
+
+    /** How long events are held back before spectators see them (nanoseconds) */
+    private final long delayNanos;
+
+    /** Socket accepting spectators */
+    private final ServerSocketChannel serverChannel;
+
+    /** Selector for the listening socket and all spectators */
+    private final Selector selector;
+
+    /** Published events waiting for their release time */
+    private final Queue<PendingEvent> published = new ConcurrentLinkedQueue<>();
+
+    /** True while the hub thread has been woken up but has not run yet, so publishing wakes it only once */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    /** Connected spectators (only used on the hub thread) */
+    private final List<Spectator> spectators = new ArrayList<>();
+
+    /** Latest released BOARD_CONFIG */
+    private String keyframeConfig;
+
+    /** Latest released GAME_STATE */
+    private String keyframeState;
+
+    /** Latest released TEAM_SCORES */
+    private String keyframeScores;
+
+    /** Latest released TEAM_LISTS */
+    private String keyframeLists;
+
+    /** Teams holding each square according to the released events, indexed by row * columns + col */
+    private final List<Set<String>> keyframeHolds = new ArrayList<>();
+
+    /** Number of spectators currently connected */
+    private volatile int spectatorCount;
+
+    /** Number of times a lagging spectator was resynchronized with a keyframe */
+    private volatile long resyncCount;
+
+    /** Time the last keepalive was sent (nanos) */
+    private long lastKeepaliveNanos = System.nanoTime();
+
+    /**
+     * Opens the spectator port. Call {@link #run()} on a thread of its own to start serving.
+     *
+     * @param port The port spectators connect to
+     * @param delayMillis How long events are held back before spectators see them
+     * @param snapshot The match state when the hub starts: BOARD_CONFIG, GAME_STATE, INITIAL_HELD_STATE,
+     *                 TEAM_SCORES, TEAM_LISTS
+     * @throws IOException If the port cannot be opened
+     */
+    public SpectatorHub(int port, int delayMillis, List<String> snapshot) throws IOException {
+        this.delayNanos = delayMillis * 1_000_000L;
+        for (String message : snapshot) {
+            apply(message);
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Publishes a broadcast event to the spectators. Cheap enough to call under the clients lock,
+     * which keeps the events in broadcast order.
+     *
+     * @param message The event
+     */
+    public void publish(String message) {
+        published.add(new PendingEvent(message, System.nanoTime() + delayNanos));
+        if (delayNanos == 0 && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Gets the number of connected spectators.
+     *
+     * @return The spectator count
+     */
+    public int getSpectatorCount() {
+        return spectatorCount;
+    }
+
+    /**
+     * Gets the number of keyframe resynchronizations of lagging spectators.
+     *
+     * @return The resync count
+     */
+    public long getResyncCount() {
+        return resyncCount;
+    }
+
+    /**
+     * Hub loop: accepts spectators, releases due events and writes whatever the sockets accept.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                selector.select(nextTimeoutMillis());
+                wakeupPending.set(false);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Spectator spectator = (Spectator) key.attachment();
+                        if (key.isReadable()) {
+                            discardInput(spectator);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(spectator);
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+                releaseDueEvents();
+                sendKeepalive();
+            }
+        } catch (IOException e) {
+            System.out.println("Spectator hub stopped: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Works out how long the hub can sleep before the next event is due or a keepalive is needed.
+     *
+     * @return The select timeout in milliseconds (at least 1)
+     */
+    private long nextTimeoutMillis() {
+        long now = System.nanoTime();
+        long wakeAt = lastKeepaliveNanos + KEEPALIVE_INTERVAL_MS * 1_000_000L;
+        PendingEvent next = published.peek();
+        if (next != null) {
+            wakeAt = Math.min(wakeAt, next.dueNanos);
+        }
+        return Math.max(1, (wakeAt - now + 999_999) / 1_000_000);
+    }
+
+    /**
+     * Accepts a new spectator and queues the current keyframe for it.
+     *
+     * @throws IOException If accepting fails
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Spectator spectator = new Spectator(channel);
+        spectator.key = channel.register(selector, SelectionKey.OP_READ, spectator);
+        spectators.add(spectator);
+        spectatorCount = spectators.size();
+        System.out.println("Spectator connected: " + channel.getRemoteAddress() + " (" + spectatorCount + " watching)");
+        queueKeyframe(spectator);
+        flush(spectator);
+    }
+
+    /**
+     * Reads and drops whatever a spectator sent, closing it at end of stream.
+     *
+     * @param spectator The spectator
+     */
+    private void discardInput(Spectator spectator) {
+        ByteBuffer scratch = ByteBuffer.allocate(512);
+        try {
+            while (spectator.channel.read(scratch) > 0) {
+                scratch.clear();
+            }
+            if (spectator.channel.read(scratch) < 0) {
+                close(spectator);
+            }
+        } catch (IOException e) {
+            close(spectator);
+        }
+    }
+
+    /**
+     * Releases the events whose delay has passed: folds each into the keyframe, encodes it once
+     * and queues the encoded bytes for every spectator.
+     */
+    private void releaseDueEvents() {
+        long now = System.nanoTime();
+        boolean released = false;
+        PendingEvent event;
+        while ((event = published.peek()) != null && event.dueNanos - now <= 0) {
+            published.poll();
+            apply(event.message);
+            byte[] frame = encode(event.message);
+            for (Spectator spectator : spectators) {
+                spectator.queue(frame);
+            }
+            released = true;
+        }
+        if (released) {
+            flushAll();
+        }
+    }
+
+    /**
+     * Sends a PING to every spectator if the keepalive interval has passed.
+     */
+    private void sendKeepalive() {
+        long now = System.nanoTime();
+        if (now - lastKeepaliveNanos < KEEPALIVE_INTERVAL_MS * 1_000_000L) {
+            return;
+        }
+        lastKeepaliveNanos = now;
+        byte[] frame = encode("PING " + now);
+        for (Spectator spectator : spectators) {
+            spectator.queue(frame);
+        }
+        flushAll();
+    }
+
+    /**
+     * Writes pending bytes to every spectator, resynchronizing the ones that fell too far behind.
+     */
+    private void flushAll() {
+        for (Spectator spectator : new ArrayList<>(spectators)) {
+            if (spectator.pendingBytes > MAX_PENDING_BYTES) {
+                // Everything it is waiting for is summed up by the keyframe, except a frame already
+                // partly written: its rest must still go out or the stream's framing breaks
+                ByteBuffer head = spectator.pending.peek();
+                spectator.pending.clear();
+                spectator.pendingBytes = 0;
+                if (head != null && head.position() > 0) {
+                    spectator.pending.add(head);
+                    spectator.pendingBytes = head.remaining();
+                }
+                queueKeyframe(spectator);
+                resyncCount++;
+            }
+            flush(spectator);
+        }
+    }
+
+    /**
+     * Writes as much of a spectator's pending bytes as its socket accepts without blocking.
+     *
+     * @param spectator The spectator
+     */
+    private void flush(Spectator spectator) {
+        try {
+            while (!spectator.pending.isEmpty()) {
+                ByteBuffer buffer = spectator.pending.peek();
+                int written = spectator.channel.write(buffer);
+                spectator.pendingBytes -= written;
+                if (buffer.hasRemaining()) {
+                    // Socket buffer full - continue when it drains
+                    spectator.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                spectator.pending.poll();
+            }
+            spectator.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException | CancelledKeyException e) {
+            close(spectator);
+        }
+    }
+
+    /**
+     * Disconnects a spectator.
+     *
+     * @param spectator The spectator
+     */
+    private void close(Spectator spectator) {
+        if (!spectators.remove(spectator)) {
+            return;
+        }
+        spectatorCount = spectators.size();
+        spectator.key.cancel();
+        try {
+            spectator.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Queues the keyframe messages for a spectator.
+     *
+     * @param spectator The spectator
+     */
+    private void queueKeyframe(Spectator spectator) {
+        StringBuilder held = new StringBuilder("INITIAL_HELD_STATE");
+        for (Set<String> teams : keyframeHolds) {
+            held.append(' ').append(teams.isEmpty() ? "NONE" : String.join(",", teams));
+        }
+        for (String message : new String[]{keyframeConfig, keyframeState, held.toString(), keyframeScores, keyframeLists}) {
+            if (message != null) {
+                spectator.queue(encode(message));
+            }
+        }
+    }
+
+    /**
+     * Folds a released event into the keyframe.
+     *
+     * @param message The event
+     */
+    private void apply(String message) {
+        if (message.startsWith("BOARD_CONFIG")) {
+            keyframeConfig = message;
+            // Holds are kept per square, so a new board size starts them over
+            String[] parts = message.split(" ");
+            int rows = Integer.parseInt(parts[1]);
+            columns = Integer.parseInt(parts[2]);
+            if (keyframeHolds.size() != rows * columns) {
+                keyframeHolds.clear();
+                for (int cell = 0; cell < rows * columns; cell++) {
+                    keyframeHolds.add(new LinkedHashSet<>());
+                }
+            }
+        } else if (message.startsWith("GAME_STATE")) {
+            keyframeState = message;
+            // Claiming a square ends its holds without a HOLD_END
+            String[] cells = message.split(" ");
+            for (int cell = 0; cell < keyframeHolds.size(); cell++) {
+                if (!"UNCLAIMED".equals(cells[1 + cell])) {
+                    keyframeHolds.get(cell).clear();
+                }
+            }
+        } else if (message.startsWith("TEAM_SCORES")) {
+            keyframeScores = message;
+        } else if (message.startsWith("TEAM_LISTS")) {
+            keyframeLists = message;
+        } else if (message.startsWith("INITIAL_HELD_STATE")) {
+            String[] parts = message.split(" ");
+            for (int cell = 0; cell < keyframeHolds.size(); cell++) {
+                keyframeHolds.get(cell).clear();
+                if (!"NONE".equals(parts[1 + cell])) {
+                    keyframeHolds.get(cell).addAll(Arrays.asList(parts[1 + cell].split(",")));
+                }
+            }
+        } else if (message.startsWith("HOLD_START") || message.startsWith("HOLD_END")) {
+            String[] parts = message.split(" ");
+            Set<String> teams = keyframeHolds.get(Integer.parseInt(parts[1]) * columns + Integer.parseInt(parts[2]));
+            if (message.startsWith("HOLD_START")) {
+                teams.add(parts[3]);
+            } else {
+                teams.remove(parts[3]);
+            }
+        } else if (message.equals("NEW_ROUND")) {
+            // The next game starts on a fresh board with the same players
+            StringBuilder empty = new StringBuilder("GAME_STATE");
+            for (Set<String> teams : keyframeHolds) {
+                teams.clear();
+                empty.append(" UNCLAIMED");
+            }
+            keyframeState = empty.toString();
+            if (keyframeScores != null) {
+                keyframeScores = keyframeScores.replaceAll(" \\d+", " 0");
+            }
+        }
+    }
+
+    /**
+     * Encodes a message the way DataOutputStream.writeUTF does, so spectators read it with readUTF.
+     *
+     * @param message The message
+     * @return The length-prefixed modified UTF-8 bytes
+     */
+    private static byte[] encode(String message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.length() + 2);
+        try {
+            new DataOutputStream(bytes).writeUTF(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * An event waiting for its release time.
+     */
+    private static class PendingEvent {
+        /** The event */
+        private final String message;
+
+        /** Time the event may be sent to spectators (nanos) */
+        private final long dueNanos;
+
+        /**
+         * Creates a pending event.
+         *
+         * @param message The event
+         * @param dueNanos Release time
+         */
+        PendingEvent(String message, long dueNanos) {
+            this.message = message;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    /**
+     * One connected spectator and the bytes still to be written to it.
+     */
+    private static class Spectator {
+        /** The spectator's socket */
+        private final SocketChannel channel;
+
+        /** Selection key of the socket */
+        private SelectionKey key;
+
+        /** Encoded messages not yet fully written; each wraps a frame shared by all spectators */
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+
+        /** Bytes waiting in pending */
+        private int pendingBytes;
+
+        /**
+         * Creates a spectator.
+         *
+         * @param channel The spectator's socket
+         */
+        Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Queues an encoded message.
+         *
+         * @param frame The encoded message, shared and never modified
+         */
+        void queue(byte[] frame) {
+            pending.add(ByteBuffer.wrap(frame));
+            pendingBytes += frame.length;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.project.cmpt371.server;
+
+/**
+ * The Teams class maps team ordinals to the identifiers used on the wire and to display names.
+ * Ordinal 0 is TEAM_A, 1 is TEAM_B, and so on through TEAM_Z, TEAM_AA, TEAM_AB, ..., so the
+ * identifiers of a two-team match are unchanged. Converting in either direction is arithmetic on
+ * the letters, so no lookup table has to be kept in step with the configured team count.
+ */
+public final class Teams {
+    /** Display names of the first teams; later teams are named after their letters */
+    private static final String[] DISPLAY_NAMES = {
+            "Red", "Blue", "Green", "Yellow", "Purple", "Orange", "Cyan", "Pink"
+    };
+
+    /** Prefix of every team identifier */
+    private static final String PREFIX = "TEAM_";
+
+    private Teams() {
+    }
+
+    /**
+     * Gets the identifier of a team.
+     *
+     * @param ordinal The team ordinal, from 0
+     * @return The identifier, e.g. "TEAM_A" for 0 or "TEAM_AA" for 26
+     */
+    public static String name(int ordinal) {
+        StringBuilder letters = new StringBuilder();
+        for (int n = ordinal + 1; n > 0; n = (n - 1) / 26) {
+            letters.append((char) ('A' + (n - 1) % 26));
+        }
+        return PREFIX + letters.reverse();
+    }
+
+    /**
+     * Gets the ordinal of a team identifier.
+     *
+     * @param name The identifier, e.g. "TEAM_B"
+     * @return The ordinal, or -1 if the text is not a team identifier (such as "UNCLAIMED" or "TIE")
+     */
+    public static int ordinal(String name) {
+        if (name == null || !name.startsWith(PREFIX) || name.length() == PREFIX.length() || name.length() > PREFIX.length() + 4) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = PREFIX.length(); i < name.length(); i++) {
+            char letter = name.charAt(i);
+            if (letter < 'A' || letter > 'Z') {
+                return -1;
+            }
+            n = n * 26 + (letter - 'A' + 1);
+        }
+        return n - 1;
+    }
+
+    /**
+     * Gets the name shown to players for a team.
+     *
+     * @param ordinal The team ordinal
+     * @return "Red", "Blue", ... for the first teams, then "Team AA" and so on
+     */
+    public static String displayName(int ordinal) {
+        if (ordinal >= 0 && ordinal < DISPLAY_NAMES.length) {
+            return DISPLAY_NAMES[ordinal];
+        }
+        return "Team " + name(ordinal).substring(PREFIX.length());
+    }
+}
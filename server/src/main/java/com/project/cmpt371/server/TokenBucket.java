@@ -0,0 +1,64 @@
+package com.project.cmpt371.server;
+
+/**
+ * The TokenBucket class is a simple token-bucket rate limiter.
+ * The bucket starts full, refills continuously at a fixed rate and each allowed action takes one token,
+ * so short bursts up to the capacity pass while the long-run rate is capped.
+ * <p>
+ * Not thread-safe: each bucket belongs to one client and is only used by that client's reader thread.
+ */
+public class TokenBucket {
+    /** Maximum number of tokens (the largest burst allowed) */
+    private final double capacity;
+
+    /** Tokens added per nanosecond */
+    private final double tokensPerNano;
+
+    /** Tokens currently available */
+    private double tokens;
+
+    /** Time of the last refill (nanos) */
+    private long lastRefillNanos;
+
+    /** Number of actions rejected so far */
+    private long rejectedCount;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param capacity Maximum burst size
+     * @param tokensPerSecond Sustained rate
+     */
+    public TokenBucket(int capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @return true if the action is allowed, false if it exceeds the rate
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+        if (tokens < 1) {
+            rejectedCount++;
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Gets the number of rejected actions.
+     *
+     * @return The number of times tryAcquire returned false
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+}
@@ -0,0 +1,367 @@
+package com.project.cmpt371.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The WinRules class decides when a team has won, for any board size and any set of winning shapes.
+ * <p>
+ * A shape is a set of cell offsets: a straight line of the configured run length (row, column,
+ * diagonal, antidiagonal) or an explicit pattern such as a 2x2 block. Every placement of every
+ * shape that fits on the board is enumerated once, together with the placements that cover each
+ * cell. Each placement keeps a counter per team. A claim increments the counters of the
+ * placements through its cell, and the claim wins when one of them reaches the shape's size. A
+ * win check therefore costs O(K) per shape, however large the board is.
+ * <p>
+ * The team score, shown to players and deciding a full board, is the longest straight run when the
+ * shapes include a line. It is kept up to date the same way: only the lines through the claimed
+ * cell are walked, at most K - 1 cells in each direction. With only patterns, the score is the
+ * most cells a team holds in any one placement, i.e. how close it came to completing a shape.
+ * <p>
+ * Not thread-safe; the game server uses it under the board lock.
+ */
+public class WinRules {
+    /** Owner of an unclaimed cell */
+    private static final int NO_TEAM = -1;
+
+    /** Number of rows on the board */
+    private final int rows;
+
+    /** Number of columns on the board */
+    private final int cols;
+
+    /** Length of a winning straight line */
+    private final int runLength;
+
+    /** Row and column steps of the straight-line shapes, used for the longest runs */
+    private final List<int[]> lineSteps = new ArrayList<>();
+
+    /** Cells covered by each placement, as row * cols + col */
+    private final int[][] placementCells;
+
+    /** Number of cells of each placement's shape */
+    private final int[] placementSize;
+
+    /** First index into cellPlacements for each cell; the cell's placements end at the next cell's start */
+    private final int[] cellStart;
+
+    /** Placements covering each cell, grouped by cell */
+    private final int[] cellPlacements;
+
+    /** Claimed cells of each team in each placement, indexed [team][placement] */
+    private final int[][] counts;
+
+    /** Owning team of each cell, or NO_TEAM */
+    private final int[] owners;
+
+    /** Longest straight run of each team */
+    private final int[] longestRuns;
+
+    /** Most claimed cells of each team in any one placement */
+    private final int[] bestPlacements;
+
+    /** Number of claimed cells */
+    private int claimedCells;
+
+    /**
+     * Builds the placement index for a board.
+     *
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * @param runLength Length of a winning straight line
+     * @param shapes Comma-separated shapes: "row", "column", "diagonal", "antidiagonal", or a
+     *               pattern of "row.col" offsets joined by "/", e.g. "0.0/0.1/1.0/1.1" for a 2x2 block
+     * @param teams Number of teams
+     * @throws IllegalArgumentException If a shape is not recognized or does not fit on the board
+     */
+    public WinRules(int rows, int cols, int runLength, String shapes, int teams) {
+        if (rows < 1 || cols < 1 || runLength < 1) {
+            throw new IllegalArgumentException("Invalid board " + rows + "x" + cols + " with win length " + runLength);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.runLength = runLength;
+
+        // Enumerate every placement of every shape that fits on the board
+        List<int[]> placements = new ArrayList<>();
+        for (String name : shapes.split(",")) {
+            int[][] offsets = parseShape(name.trim());
+            int before = placements.size();
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int[] cells = place(offsets, row, col);
+                    if (cells != null) {
+                        placements.add(cells);
+                    }
+                }
+            }
+            // A shape that never fits could not be won, e.g. a win length longer than the board
+            if (placements.size() == before) {
+                throw new IllegalArgumentException("Win shape " + name.trim() + " does not fit on a " +
+                        rows + "x" + cols + " board with win length " + runLength);
+            }
+        }
+
+        // Invert into the placements covering each cell (compressed rows, so one int per cover)
+        int cellCount = rows * cols;
+        placementCells = placements.toArray(new int[0][]);
+        placementSize = new int[placements.size()];
+        cellStart = new int[cellCount + 1];
+        for (int[] cells : placements) {
+            for (int cell : cells) {
+                cellStart[cell + 1]++;
+            }
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellPlacements = new int[cellStart[cellCount]];
+        int[] next = Arrays.copyOf(cellStart, cellCount);
+        for (int placement = 0; placement < placements.size(); placement++) {
+            int[] cells = placements.get(placement);
+            placementSize[placement] = cells.length;
+            for (int cell : cells) {
+                cellPlacements[next[cell]++] = placement;
+            }
+        }
+
+        counts = new int[teams][placements.size()];
+        owners = new int[cellCount];
+        longestRuns = new int[teams];
+        bestPlacements = new int[teams];
+        reset();
+    }
+
+    /**
+     * Parses one shape into cell offsets.
+     *
+     * @param name A line name or an offset pattern
+     * @return The (row, col) offsets of the shape's cells
+     */
+    private int[][] parseShape(String name) {
+        int[] step;
+        switch (name) {
+            case "row":
+                step = new int[]{0, 1};
+                break;
+            case "column":
+                step = new int[]{1, 0};
+                break;
+            case "diagonal":
+                step = new int[]{1, 1};
+                break;
+            case "antidiagonal":
+                step = new int[]{1, -1};
+                break;
+            default:
+                return parsePattern(name);
+        }
+        lineSteps.add(step);
+        int[][] offsets = new int[runLength][];
+        for (int i = 0; i < runLength; i++) {
+            offsets[i] = new int[]{i * step[0], i * step[1]};
+        }
+        return offsets;
+    }
+
+    /**
+     * Parses an explicit shape such as "0.0/0.1/1.0/1.1".
+     *
+     * @param pattern Offsets as "row.col" joined by "/"
+     * @return The (row, col) offsets
+     * @throws IllegalArgumentException If the pattern is malformed
+     */
+    private static int[][] parsePattern(String pattern) {
+        String[] cells = pattern.split("/");
+        int[][] offsets = new int[cells.length][];
+        try {
+            for (int i = 0; i < cells.length; i++) {
+                String[] parts = cells[i].split("\\.");
+                offsets[i] = new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Unknown win shape: " + pattern);
+        }
+        return offsets;
+    }
+
+    /**
+     * Places a shape with its first offset at a cell.
+     *
+     * @param offsets The shape's offsets
+     * @param row Anchor row
+     * @param col Anchor column
+     * @return The covered cells (row * cols + col), or null if the shape does not fit there
+     */
+    private int[] place(int[][] offsets, int row, int col) {
+        int[] cells = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            int r = row + offsets[i][0];
+            int c = col + offsets[i][1];
+            if (r < 0 || r >= rows || c < 0 || c >= cols) {
+                return null;
+            }
+            cells[i] = r * cols + c;
+        }
+        return cells;
+    }
+
+    /**
+     * Clears the board for a new game.
+     */
+    public void reset() {
+        for (int[] teamCounts : counts) {
+            Arrays.fill(teamCounts, 0);
+        }
+        Arrays.fill(owners, NO_TEAM);
+        Arrays.fill(longestRuns, 0);
+        Arrays.fill(bestPlacements, 0);
+        claimedCells = 0;
+    }
+
+    /**
+     * Records a claimed cell.
+     *
+     * @param row The row of the cell
+     * @param col The column of the cell
+     * @param team The claiming team's index
+     * @return true if the claim completes a winning shape for the team
+     */
+    public boolean claim(int row, int col, int team) {
+        int cell = row * cols + col;
+        if (owners[cell] != NO_TEAM) {
+            return false;
+        }
+        owners[cell] = team;
+        claimedCells++;
+
+        boolean won = false;
+        int[] teamCounts = counts[team];
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+            int placement = cellPlacements[i];
+            int count = ++teamCounts[placement];
+            if (count == placementSize[placement]) {
+                won = true;
+            }
+            bestPlacements[team] = Math.max(bestPlacements[team], count);
+        }
+
+        // Extend the team's longest straight run through this cell
+        for (int[] step : lineSteps) {
+            int run = 1 + countOwned(row, col, step[0], step[1], team) + countOwned(row, col, -step[0], -step[1], team);
+            longestRuns[team] = Math.max(longestRuns[team], run);
+        }
+        return won;
+    }
+
+    /**
+     * Counts the team's cells next to a cell in one direction, up to runLength - 1.
+     *
+     * @param row Start row
+     * @param col Start column
+     * @param rowStep Row step
+     * @param colStep Column step
+     * @param team The team index
+     * @return The number of consecutive cells owned by the team
+     */
+    private int countOwned(int row, int col, int rowStep, int colStep, int team) {
+        int count = 0;
+        int r = row + rowStep;
+        int c = col + colStep;
+        while (count < runLength - 1 && r >= 0 && r < rows && c >= 0 && c < cols && owners[r * cols + c] == team) {
+            count++;
+            r += rowStep;
+            c += colStep;
+        }
+        return count;
+    }
+
+    /**
+     * Gets a team's longest straight run.
+     *
+     * @param team The team index
+     * @return The run length
+     */
+    public int getLongestRun(int team) {
+        return longestRuns[team];
+    }
+
+    /**
+     * Gets a team's score: its longest straight run, or with only pattern shapes, the most cells
+     * it holds in any one placement.
+     *
+     * @param team The team index
+     * @return The score
+     */
+    public int getScore(int team) {
+        return lineSteps.isEmpty() ? bestPlacements[team] : longestRuns[team];
+    }
+
+    /**
+     * Gets the team that wins a full board: the one with the highest score.
+     *
+     * @return The team index, or -1 if more than one team has the highest score
+     */
+    public int getLeader() {
+        int leader = -1;
+        int best = -1;
+        for (int team = 0; team < longestRuns.length; team++) {
+            int score = getScore(team);
+            if (score > best) {
+                best = score;
+                leader = team;
+            } else if (score == best) {
+                leader = -1;
+            }
+        }
+        return leader;
+    }
+
+    /**
+     * Checks whether every cell is claimed.
+     *
+     * @return true if the board is full
+     */
+    public boolean isFull() {
+        return claimedCells == owners.length;
+    }
+
+    /**
+     * Gets the number of placements in the index.
+     * The placements never change after construction, so they can be read without the board lock.
+     *
+     * @return The number of shape placements on the board
+     */
+    public int getPlacementCount() {
+        return placementSize.length;
+    }
+
+    /**
+     * Gets the cells of one placement. The array is shared and must not be modified.
+     *
+     * @param placement The placement index
+     * @return The covered cells, as row * cols + col
+     */
+    int[] getPlacementCells(int placement) {
+        return placementCells[placement];
+    }
+
+    /**
+     * Gets the number of rows on the board.
+     *
+     * @return The row count
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns on the board.
+     *
+     * @return The column count
+     */
+    public int getCols() {
+        return cols;
+    }
+}
@@ -0,0 +1,6 @@
+module com.project.cmpt371.server {
+    requires jdk.jfr;
+
+
+    exports com.project.cmpt371.server;
+}
@@ -0,0 +1,55 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the numbering and resume lookups of {@link EventHistory}.
+ */
+class EventHistoryTest {
+    @Test
+    void numbersEventsFromOne() {
+        EventHistory history = new EventHistory(4);
+        assertEquals("SEQ 1 GAME_STATE", history.append("GAME_STATE"));
+        assertEquals("SEQ 2 HOLD_START 0 1", history.append("HOLD_START 0 1"));
+    }
+
+    @Test
+    void sinceReturnsOnlyTheMissedEvents() {
+        EventHistory history = new EventHistory(4);
+        history.append("A");
+        history.append("B");
+        history.append("C");
+        assertEquals(List.of("SEQ 2 B", "SEQ 3 C"), history.since(1));
+        assertEquals(List.of("SEQ 1 A", "SEQ 2 B", "SEQ 3 C"), history.since(0));
+        // A client that saw everything has nothing to catch up on
+        assertEquals(List.of(), history.since(3));
+    }
+
+    @Test
+    void sinceKeepsWorkingAcrossTheRingBufferWrap() {
+        EventHistory history = new EventHistory(3);
+        for (char event = 'A'; event <= 'E'; event++) {
+            history.append(String.valueOf(event));
+        }
+        assertEquals(List.of("SEQ 3 C", "SEQ 4 D", "SEQ 5 E"), history.since(2));
+        assertEquals(List.of("SEQ 5 E"), history.since(4));
+    }
+
+    @Test
+    void sinceFallsBackWhenEventsAreLostOrUnknown() {
+        EventHistory history = new EventHistory(3);
+        for (char event = 'A'; event <= 'E'; event++) {
+            history.append(String.valueOf(event));
+        }
+        // Event 2 has been overwritten, so the client needs a full state instead
+        assertNull(history.since(1));
+        // A sequence ahead of the history comes from before a server restart
+        assertNull(history.since(6));
+        assertNull(history.since(-1));
+    }
+}
@@ -0,0 +1,58 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests how the game server treats player input, driven through replay handlers.
+ */
+class GameServerTest {
+    @Test
+    void inputBeforeJoiningIsIgnored() throws IOException {
+        GameServer.startReplay();
+        GameServer.ClientHandler stranger = new GameServer.ClientHandler("stranger");
+        GameServer.addReplayClient(stranger);
+        stranger.handleMessage("HOLD_START 0 0");
+        stranger.handleMessage("CHAT hello");
+        assertTrue(GameServer.encodeHeldState().startsWith("INITIAL_HELD_STATE NONE "));
+
+        // The same hold from a player on a team is accepted
+        GameServer.ClientHandler player = new GameServer.ClientHandler("player");
+        GameServer.addReplayClient(player);
+        assertTrue(player.handlePlayerInfo("PLAYER_INFO alice " + Teams.name(0)));
+        player.handleMessage("HOLD_START 0 0");
+        assertTrue(GameServer.encodeHeldState().startsWith("INITIAL_HELD_STATE " + Teams.name(0) + " "));
+    }
+
+    @Test
+    void parseCellAcceptsOnlyTwoInBoundNumbers() {
+        // The default board is 10x10
+        assertEquals(0, GameServer.ClientHandler.parseCell("HOLD_START 0 0", 11));
+        assertEquals(3 * 10 + 7, GameServer.ClientHandler.parseCell("HOLD_START 3 7", 11));
+        assertEquals(9 * 10 + 9, GameServer.ClientHandler.parseCell("HOLD_END 9 9", 9));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START 10 0", 11));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START 0 10", 11));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START 0", 11));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START 0 ", 11));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START  0 0", 11));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START -1 0", 11));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START 1 2 3", 11));
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START 1x 2", 11));
+        // Long digit runs stop at the board size instead of overflowing
+        assertEquals(-1, GameServer.ClientHandler.parseCell("HOLD_START 99999999999999999999 0", 11));
+    }
+
+    @Test
+    void parseCellReadsTheSameFromFrameBytes() {
+        byte[] frame = "..HOLD_START 4 5".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(4 * 10 + 5, GameServer.ClientHandler.parseCell(frame, 13, frame.length));
+        // The end bound is respected, so trailing bytes of a larger buffer are ignored
+        byte[] buffer = "..HOLD_START 4 5 junk".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(4 * 10 + 5, GameServer.ClientHandler.parseCell(buffer, 13, 16));
+    }
+}
@@ -0,0 +1,58 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the in-process connection, as the sink of an {@link OutboundQueue} and as a bounded buffer.
+ */
+class LoopbackConnectionTest {
+    @Test
+    void deliversOutboundMessagesInLaneOrder() throws IOException {
+        LoopbackConnection connection = new LoopbackConnection();
+        OutboundQueue queue = new OutboundQueue(connection, 100, 100, 4, 60000, 2, List::of, () -> { },
+                new ServerMetrics());
+        queue.send("CHAT TEAM_A alice hi");
+        queue.send("SEQ 1 HOLD_START 0 0 TEAM_A");
+        new Thread(queue).start();
+
+        assertEquals("SEQ 1 HOLD_START 0 0 TEAM_A", connection.takeFromServer());
+        assertEquals("CHAT TEAM_A alice hi", connection.takeFromServer());
+        queue.close();
+        connection.close();
+        assertThrows(EOFException.class, connection::takeFromServer);
+    }
+
+    @Test
+    void fullClientQueueBlocksTheWriterUntilClosed() throws Exception {
+        LoopbackConnection connection = new LoopbackConnection();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 1000; i++) {
+                    connection.sendToClient("SEQ " + i + " HOLD_END 0 0");
+                }
+            } catch (IOException e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        writer.join(500);
+        // The client never read, so the writer is stuck on the full queue
+        assertTrue(writer.isAlive());
+
+        connection.close();
+        writer.join(5000);
+        assertTrue(failure.get() instanceof EOFException);
+        // A client that stopped reading loses its backlog
+        assertThrows(EOFException.class, connection::takeFromServer);
+    }
+}
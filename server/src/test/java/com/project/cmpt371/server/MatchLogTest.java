@@ -0,0 +1,186 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests recovery of the {@link MatchLog} from the states a crash can leave on disk.
+ */
+class MatchLogTest {
+    /** Directory holding the log and snapshot of each test */
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverDropsTornTailAndAppendsAfterLastRecord() throws IOException {
+        MatchLog log = new MatchLog(directory);
+        log.recover(new RecordingListener());
+        log.logJoin("alice", 0);
+        log.logClaim(1, 2, 0);
+        log.close();
+        long validLength = Files.size(directory.resolve("match.log"));
+
+        // A crash in the middle of the next claim leaves its type byte and half a coordinate
+        Files.write(directory.resolve("match.log"), new byte[]{MatchLog.CLAIM, 0},
+                StandardOpenOption.APPEND);
+
+        RecordingListener recovered = new RecordingListener();
+        log = new MatchLog(directory);
+        assertEquals(2, log.recover(recovered));
+        assertEquals(List.of("JOIN alice 0", "CLAIM 1 2 0"), recovered.events);
+        assertEquals(validLength, Files.size(directory.resolve("match.log")));
+
+        // New records continue after the last complete one
+        log.logClaim(3, 4, 1);
+        log.close();
+        recovered = new RecordingListener();
+        log = new MatchLog(directory);
+        assertEquals(3, log.recover(recovered));
+        log.close();
+        assertEquals(List.of("JOIN alice 0", "CLAIM 1 2 0", "CLAIM 3 4 1"), recovered.events);
+    }
+
+    @Test
+    void recoverReplaysSnapshotThenOnlyLaterRecords() throws IOException {
+        MatchLog log = new MatchLog(directory);
+        log.recover(new RecordingListener());
+        log.logJoin("alice", 0);
+        log.logClaim(0, 0, 0);
+        log.snapshot(snapshot(0, "alice"));
+        log.logJoin("bob", 1);
+        log.close();
+
+        RecordingListener recovered = new RecordingListener();
+        log = new MatchLog(directory);
+        assertEquals(1, log.recover(recovered));
+        log.close();
+        assertEquals(List.of("RESET", "CLAIM 0 0 0", "JOIN alice 0", "JOIN bob 1"), recovered.events);
+    }
+
+    @Test
+    void recoverAfterCrashBetweenSnapshotMoveAndTruncate() throws IOException {
+        MatchLog log = new MatchLog(directory);
+        log.recover(new RecordingListener());
+        log.logJoin("alice", 0);
+        log.logClaim(0, 0, 0);
+        log.close();
+        byte[] coveredRecords = Files.readAllBytes(directory.resolve("match.log"));
+
+        // Snapshot the same state, then put back the log the truncation would have removed
+        log = new MatchLog(directory);
+        log.recover(new RecordingListener());
+        log.snapshot(snapshot(0, "alice"));
+        log.close();
+        Files.write(directory.resolve("match.log"), coveredRecords);
+
+        RecordingListener recovered = new RecordingListener();
+        log = new MatchLog(directory);
+        assertEquals(2, log.recover(recovered));
+        log.close();
+        assertEquals(List.of("RESET", "CLAIM 0 0 0", "JOIN alice 0", "JOIN alice 0", "CLAIM 0 0 0"),
+                recovered.events);
+        // Applied idempotently, the repeated records leave the snapshot's state unchanged
+        assertEquals(Set.of("alice"), recovered.roster);
+    }
+
+    @Test
+    void failedWriteStopsTheLogAndCountsDroppedRecords() throws IOException, InterruptedException {
+        MatchLog log = new MatchLog(directory);
+        log.recover(new RecordingListener());
+        log.logClaim(0, 0, 0);
+        // A directory in the way of the snapshot's temporary file makes the snapshot write fail
+        Files.createDirectory(directory.resolve("match.snapshot.tmp"));
+        log.snapshot(snapshot(0, "alice"));
+        log.logClaim(1, 1, 0);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (log.getDroppedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, log.getDroppedCount());
+
+        // Records after the failure are counted instead of queued
+        log.logJoin("bob", 1);
+        assertEquals(2, log.getDroppedCount());
+        log.close();
+
+        RecordingListener recovered = new RecordingListener();
+        log = new MatchLog(directory);
+        assertEquals(1, log.recover(recovered));
+        log.close();
+        assertEquals(List.of("CLAIM 0 0 0"), recovered.events);
+    }
+
+    /**
+     * Builds a 2x2 snapshot with one claimed square and one player.
+     *
+     * @param team The team owning square (0, 0) and the player's team
+     * @param playerName The player
+     * @return The snapshot
+     */
+    private static MatchLog.Snapshot snapshot(int team, String playerName) {
+        int[][] board = {{team, MatchLog.NO_TEAM}, {MatchLog.NO_TEAM, MatchLog.NO_TEAM}};
+        MatchLog.Snapshot snapshot = new MatchLog.Snapshot(board);
+        snapshot.addPlayer(playerName, team);
+        return snapshot;
+    }
+
+    /**
+     * Records the recovered transitions as text, and the roster as a recovering server keeps it.
+     */
+    private static class RecordingListener implements MatchLog.Listener {
+        /** Every transition in the order it was replayed */
+        final List<String> events = new ArrayList<>();
+
+        /** Players currently on a team */
+        final Set<String> roster = new LinkedHashSet<>();
+
+        @Override
+        public void onReset() {
+            events.add("RESET");
+            roster.clear();
+        }
+
+        @Override
+        public void onNewRound() {
+            events.add("NEW_ROUND");
+        }
+
+        @Override
+        public void onClaim(int row, int col, int team) {
+            events.add("CLAIM " + row + " " + col + " " + team);
+        }
+
+        @Override
+        public void onHold(int row, int col, int team) {
+            events.add("HOLD " + row + " " + col + " " + team);
+        }
+
+        @Override
+        public void onRelease(int row, int col, int team) {
+            events.add("RELEASE " + row + " " + col + " " + team);
+        }
+
+        @Override
+        public void onJoin(String playerName, int team) {
+            events.add("JOIN " + playerName + " " + team);
+            roster.add(playerName);
+        }
+
+        @Override
+        public void onLeave(String playerName, int team) {
+            events.add("LEAVE " + playerName + " " + team);
+            roster.remove(playerName);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the lanes, coalescing and snapshot fallback of {@link OutboundQueue}, by queueing messages
+ * before its writer starts and reading back what the writer sends.
+ */
+class OutboundQueueTest {
+    /** How long to wait for the writer before failing (milliseconds) */
+    private static final long TIMEOUT_MS = 5000;
+
+    /** Bytes written by the queue under test */
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+    @Test
+    void classifiesChatAndRostersAsLowPriority() {
+        assertTrue(OutboundQueue.isLowPriority("CHAT 0 alice hi"));
+        assertTrue(OutboundQueue.isLowPriority("TEAM_LISTS RED alice BLUE bob"));
+        assertFalse(OutboundQueue.isLowPriority("SEQ 4 GAME_STATE UNCLAIMED"));
+        assertFalse(OutboundQueue.isLowPriority("HOLD_START 0 0 RED"));
+    }
+
+    @Test
+    void classifiesRoundBoundaries() {
+        assertTrue(OutboundQueue.isRoundBoundary("GAME_OVER TIE"));
+        assertTrue(OutboundQueue.isRoundBoundary("NEW_ROUND"));
+        assertTrue(OutboundQueue.isRoundBoundary("BOARD_CONFIG 10 10"));
+        assertFalse(OutboundQueue.isRoundBoundary("GAME_STATE UNCLAIMED"));
+    }
+
+    @Test
+    void writesGameEventsBeforeChatAndKeepsOnlyTheLatestRoster() throws Exception {
+        OutboundQueue queue = queue(100, 100, 4, List::of);
+        queue.send("SEQ 1 HOLD_START 0 0 RED");
+        queue.send("CHAT RED alice a");
+        queue.send("CHAT RED alice b");
+        queue.send("TEAM_LISTS old");
+        queue.send("CHAT RED alice c");
+        // The lane is full: the oldest chat message makes room
+        queue.send("CHAT RED alice d");
+        // The newer roster replaces the queued one instead of taking a slot
+        queue.send("TEAM_LISTS new");
+        queue.send("SEQ 2 HOLD_END 0 0");
+
+        assertEquals(List.of("SEQ 1 HOLD_START 0 0 RED", "SEQ 2 HOLD_END 0 0",
+                "CHAT RED alice b", "CHAT RED alice c", "CHAT RED alice d", "TEAM_LISTS new"), drain(queue, 6));
+    }
+
+    @Test
+    void coalescingDropsSupersededStateScoresAndHolds() throws Exception {
+        // Two columns, so GAME_STATE lists the squares (0,0) (0,1) (1,0) (1,1)
+        OutboundQueue queue = queue(2, 100, 4, List::of);
+        queue.send("SEQ 1 GAME_STATE UNCLAIMED UNCLAIMED UNCLAIMED UNCLAIMED");
+        queue.send("SEQ 2 HOLD_START 0 0 TEAM_A");
+        queue.send("SEQ 3 TEAM_SCORES 0 0");
+        queue.send("SEQ 4 GAME_STATE TEAM_A UNCLAIMED UNCLAIMED UNCLAIMED");
+        queue.send("SEQ 5 TEAM_SCORES 1 0");
+        queue.send("SEQ 6 HOLD_START 0 1 TEAM_B");
+
+        // The hold on (0,0) is dropped because the newer state shows it claimed; (0,1) is still open
+        assertEquals(List.of("SEQ 4 GAME_STATE TEAM_A UNCLAIMED UNCLAIMED UNCLAIMED", "SEQ 5 TEAM_SCORES 1 0",
+                "SEQ 6 HOLD_START 0 1 TEAM_B"), drain(queue, 3));
+    }
+
+    @Test
+    void coalescingKeepsTheStateOfEachRound() throws Exception {
+        OutboundQueue queue = queue(2, 100, 4, List::of);
+        queue.send("SEQ 1 GAME_STATE TEAM_A TEAM_A TEAM_B UNCLAIMED");
+        queue.send("SEQ 2 TEAM_SCORES 2 1");
+        queue.send("SEQ 3 NEW_ROUND");
+        queue.send("SEQ 4 GAME_STATE UNCLAIMED UNCLAIMED UNCLAIMED UNCLAIMED");
+        queue.send("SEQ 5 TEAM_SCORES 0 0");
+
+        // NEW_ROUND is a barrier: the old round's state is not superseded by the new round's
+        assertEquals(List.of("SEQ 1 GAME_STATE TEAM_A TEAM_A TEAM_B UNCLAIMED", "SEQ 2 TEAM_SCORES 2 1",
+                "SEQ 3 NEW_ROUND", "SEQ 4 GAME_STATE UNCLAIMED UNCLAIMED UNCLAIMED UNCLAIMED",
+                "SEQ 5 TEAM_SCORES 0 0"), drain(queue, 5));
+    }
+
+    @Test
+    void snapshotFallbackKeepsRoundBoundariesBeforeTheSnapshot() throws Exception {
+        OutboundQueue queue = queue(100, 3, 4,
+                () -> List.of("BOARD_CONFIG 2 2", "GAME_STATE UNCLAIMED UNCLAIMED UNCLAIMED UNCLAIMED"));
+        queue.send("SEQ 1 HOLD_START 0 0 TEAM_A");
+        queue.send("SEQ 2 GAME_OVER TEAM_A");
+        queue.send("SEQ 3 NEW_ROUND");
+        // The queue is full: it is discarded, apart from the end of the game and the new round
+        queue.send("SEQ 4 HOLD_START 1 1 TEAM_B");
+        queue.send("CHAT TEAM_B bob hi");
+
+        assertEquals(List.of("SEQ 2 GAME_OVER TEAM_A", "SEQ 3 NEW_ROUND",
+                "BOARD_CONFIG 2 2", "GAME_STATE UNCLAIMED UNCLAIMED UNCLAIMED UNCLAIMED",
+                "SEQ 4 HOLD_START 1 1 TEAM_B", "CHAT TEAM_B bob hi"), drain(queue, 6));
+    }
+
+    /**
+     * Creates a queue writing to {@link #written}, with a stall timeout long enough never to trigger.
+     *
+     * @param coalesceDepth Queue depth above which batches are coalesced
+     * @param snapshotDepth Queue depth at which the queue is replaced by a snapshot
+     * @param lowPriorityDepth Maximum number of queued chat and roster messages
+     * @param snapshot Builds the snapshot messages
+     * @return The queue, with its writer not yet started
+     */
+    private OutboundQueue queue(int coalesceDepth, int snapshotDepth, int lowPriorityDepth,
+                                Supplier<List<String>> snapshot) {
+        return new OutboundQueue(new DataOutputStream(written), coalesceDepth, snapshotDepth, lowPriorityDepth,
+                60000, 2, snapshot, () -> { }, new ServerMetrics());
+    }
+
+    /**
+     * Starts the writer and waits until it has written a number of messages.
+     *
+     * @param queue The queue to drain
+     * @param count Number of messages expected
+     * @return The written messages in order
+     */
+    private List<String> drain(OutboundQueue queue, int count) throws IOException, InterruptedException {
+        Thread writer = new Thread(queue);
+        writer.start();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        List<String> messages = read();
+        while (messages.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            messages = read();
+        }
+        queue.close();
+        writer.join(TIMEOUT_MS);
+        return read();
+    }
+
+    /**
+     * Decodes the messages written so far.
+     *
+     * @return The messages in order
+     */
+    private List<String> read() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(written.toByteArray()));
+        List<String> messages = new ArrayList<>();
+        while (in.available() > 0) {
+            messages.add(in.readUTF());
+        }
+        return messages;
+    }
+}
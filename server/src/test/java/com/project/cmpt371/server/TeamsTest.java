@@ -0,0 +1,39 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the team identifiers and display names of {@link Teams}.
+ */
+class TeamsTest {
+    @Test
+    void identifiersContinuePastTheAlphabet() {
+        assertEquals("TEAM_A", Teams.name(0));
+        assertEquals("TEAM_Z", Teams.name(25));
+        assertEquals("TEAM_AA", Teams.name(26));
+        assertEquals("TEAM_AZ", Teams.name(51));
+        assertEquals("TEAM_BA", Teams.name(52));
+        for (int ordinal = 0; ordinal < 1000; ordinal++) {
+            assertEquals(ordinal, Teams.ordinal(Teams.name(ordinal)));
+        }
+    }
+
+    @Test
+    void ordinalRejectsOtherOwners() {
+        assertEquals(-1, Teams.ordinal("UNCLAIMED"));
+        assertEquals(-1, Teams.ordinal("TIE"));
+        assertEquals(-1, Teams.ordinal("TEAM_"));
+        assertEquals(-1, Teams.ordinal("TEAM_a"));
+        assertEquals(-1, Teams.ordinal(null));
+    }
+
+    @Test
+    void displayNamesFallBackToLetters() {
+        assertEquals("Red", Teams.displayName(0));
+        assertEquals("Pink", Teams.displayName(7));
+        assertEquals("Team I", Teams.displayName(8));
+        assertEquals("Team AA", Teams.displayName(26));
+    }
+}
@@ -0,0 +1,38 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the burst and refill behaviour of {@link TokenBucket}.
+ */
+class TokenBucketTest {
+    @Test
+    void allowsABurstUpToCapacityThenRejects() {
+        // A rate slow enough that no token refills during the test
+        TokenBucket bucket = new TokenBucket(3, 0.001);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(2, bucket.getRejectedCount());
+    }
+
+    @Test
+    void refillsOverTimeButNeverBeyondCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(2, 50);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+
+        // 200 ms at 50 tokens per second would be 10 tokens, but the bucket holds only 2
+        Thread.sleep(200);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(1, bucket.getRejectedCount());
+    }
+}
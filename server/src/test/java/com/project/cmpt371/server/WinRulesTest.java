@@ -0,0 +1,119 @@
+package com.project.cmpt371.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the placement index and claim-time win detection of {@link WinRules}.
+ */
+class WinRulesTest {
+    @Test
+    void enumeratesEveryPlacementThatFits() {
+        // 3 rows + 3 columns + 1 diagonal + 1 antidiagonal of length 3
+        assertEquals(8, new WinRules(3, 3, 3, "row,column,diagonal,antidiagonal", 2).getPlacementCount());
+        // Rows of 2 on a 3x4 board: 3 per row; a 2x2 block fits at 2x3 anchors
+        assertEquals(9 + 6, new WinRules(3, 4, 2, "row,0.0/0.1/1.0/1.1", 2).getPlacementCount());
+    }
+
+    @Test
+    void claimCompletingALineWins() {
+        WinRules rules = new WinRules(4, 4, 3, "row,column,diagonal,antidiagonal", 2);
+        assertFalse(rules.claim(1, 1, 0));
+        assertFalse(rules.claim(2, 2, 0));
+        assertFalse(rules.claim(0, 3, 1));
+        assertEquals(2, rules.getLongestRun(0));
+        assertTrue(rules.claim(3, 3, 0));
+        assertEquals(3, rules.getLongestRun(0));
+        assertEquals(1, rules.getLongestRun(1));
+    }
+
+    @Test
+    void claimCompletingAPatternWins() {
+        WinRules rules = new WinRules(3, 3, 3, "row,0.0/0.1/1.0/1.1", 2);
+        assertFalse(rules.claim(1, 1, 0));
+        assertFalse(rules.claim(1, 2, 0));
+        assertFalse(rules.claim(2, 1, 0));
+        assertTrue(rules.claim(2, 2, 0));
+    }
+
+    @Test
+    void claimsOfAnotherTeamDoNotCountAndResetClears() {
+        WinRules rules = new WinRules(1, 3, 3, "row", 2);
+        assertFalse(rules.claim(0, 0, 0));
+        assertFalse(rules.claim(0, 1, 1));
+        assertFalse(rules.claim(0, 1, 0));
+        assertFalse(rules.claim(0, 2, 0));
+        assertTrue(rules.isFull());
+
+        rules.reset();
+        assertFalse(rules.isFull());
+        assertEquals(0, rules.getLongestRun(0));
+        assertFalse(rules.claim(0, 0, 0));
+        assertFalse(rules.claim(0, 1, 0));
+        assertTrue(rules.claim(0, 2, 0));
+    }
+
+    @Test
+    void fullBoardGoesToTheLongestRunAmongAnyNumberOfTeams() {
+        // Three teams on a 1x6 board where nobody completes a run of 4
+        WinRules rules = new WinRules(1, 6, 4, "row", 3);
+        assertFalse(rules.claim(0, 0, 0));
+        assertFalse(rules.claim(0, 1, 1));
+        assertFalse(rules.claim(0, 2, 2));
+        assertFalse(rules.claim(0, 3, 2));
+        assertFalse(rules.claim(0, 4, 2));
+        assertFalse(rules.claim(0, 5, 1));
+        assertTrue(rules.isFull());
+        assertEquals(1, rules.getLongestRun(0));
+        assertEquals(1, rules.getLongestRun(1));
+        assertEquals(3, rules.getLongestRun(2));
+        assertEquals(2, rules.getLeader());
+    }
+
+    @Test
+    void sharedLongestRunIsATie() {
+        WinRules rules = new WinRules(1, 6, 4, "row", 3);
+        rules.claim(0, 0, 0);
+        rules.claim(0, 1, 0);
+        rules.claim(0, 2, 2);
+        rules.claim(0, 3, 1);
+        rules.claim(0, 4, 1);
+        rules.claim(0, 5, 2);
+        assertEquals(-1, rules.getLeader());
+    }
+
+    @Test
+    void patternOnlyShapesScoreTheMostCellsInOnePlacement() {
+        // Only 2x2 blocks: four placements on a 3x3 board
+        WinRules rules = new WinRules(3, 3, 3, "0.0/0.1/1.0/1.1", 2);
+        assertEquals(4, rules.getPlacementCount());
+        rules.claim(0, 0, 0);
+        rules.claim(2, 2, 0);
+        // The two squares are in no common block
+        assertEquals(1, rules.getScore(0));
+        rules.claim(1, 1, 0);
+        assertEquals(2, rules.getScore(0));
+        rules.claim(0, 1, 1);
+        rules.claim(0, 2, 1);
+        rules.claim(1, 2, 1);
+        assertEquals(3, rules.getScore(1));
+        rules.claim(1, 0, 0);
+        rules.claim(2, 0, 1);
+        assertFalse(rules.claim(2, 1, 1));
+        assertTrue(rules.isFull());
+        // Team 0 holds 3 of the top-left block; team 1 holds 3 of the top-right one
+        assertEquals(3, rules.getScore(0));
+        assertEquals(-1, rules.getLeader());
+    }
+
+    @Test
+    void rejectsShapesThatCannotDecideAGame() {
+        assertThrows(IllegalArgumentException.class, () -> new WinRules(10, 10, 12, "row,column", 2));
+        assertThrows(IllegalArgumentException.class, () -> new WinRules(3, 3, 3, "row,0.0/4.0", 2));
+        assertThrows(IllegalArgumentException.class, () -> new WinRules(3, 3, 3, "zigzag", 2));
+    }
+}